@@ -2,6 +2,9 @@ package de.fraunhofer.isst.ids.framework.communication.broker;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.fraunhofer.iais.eis.ConnectorUnavailableMessage;
 import de.fraunhofer.iais.eis.ConnectorUnavailableMessageBuilder;
@@ -19,7 +22,8 @@ import de.fraunhofer.iais.eis.ResourceUnavailableMessageBuilder;
 import de.fraunhofer.iais.eis.ResourceUpdateMessage;
 import de.fraunhofer.iais.eis.ResourceUpdateMessageBuilder;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
-import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import de.fraunhofer.isst.ids.framework.configuration.SerializerProvider;
+import de.fraunhofer.isst.ids.framework.util.TimeService;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.UtilityClass;
@@ -32,7 +36,13 @@ import okhttp3.MultipartBody;
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 public class BrokerIDSMessageUtils {
 
-    static Serializer SERIALIZER = new Serializer();
+    static Serializer SERIALIZER = SerializerProvider.getSharedSerializer();
+
+    /**
+     * Compiled header templates per message type, connector, infomodel version and (for queries) query parameters.
+     * An empty Optional marks headers which cannot be represented by a template.
+     */
+    static Map<String, Optional<HeaderTemplate>> TEMPLATES = new ConcurrentHashMap<>();
 
     /**
      * Create a ResourceUnavailableMessage used for unregistering the given resource at a broker.
@@ -48,15 +58,16 @@ public class BrokerIDSMessageUtils {
                                                          final String infoModelVersion,
                                                          final URI connectorID,
                                                          final Resource resource) throws IOException {
-        final var msg = new ResourceUnavailableMessageBuilder()
-                ._affectedResource_(resource.getId())
-                ._securityToken_(securityToken)
-                ._issued_(IDSUtils.getGregorianNow())
-                ._senderAgent_(connectorID)
-                ._issuerConnector_(connectorID)
-                ._modelVersion_(infoModelVersion)
-                .build();
-        return SERIALIZER.serialize(msg);
+        return buildHeader(String.format("ResourceUnavailableMessage|%s|%s", connectorID, infoModelVersion),
+                (id, issued, token, affected) -> (id == null ? new ResourceUnavailableMessageBuilder() : new ResourceUnavailableMessageBuilder(id))
+                        ._affectedResource_(affected)
+                        ._securityToken_(token)
+                        ._issued_(issued)
+                        ._senderAgent_(connectorID)
+                        ._issuerConnector_(connectorID)
+                        ._modelVersion_(infoModelVersion)
+                        .build(),
+                securityToken, resource.getId());
     }
 
     /**
@@ -73,15 +84,16 @@ public class BrokerIDSMessageUtils {
                                                     final String infoModelVersion,
                                                     final URI connectorID,
                                                     final Resource resource) throws IOException {
-        final var msg = new ResourceUpdateMessageBuilder()
-                ._affectedResource_(resource.getId())
-                ._securityToken_(securityToken)
-                ._issued_(IDSUtils.getGregorianNow())
-                ._senderAgent_(connectorID)
-                ._issuerConnector_(connectorID)
-                ._modelVersion_(infoModelVersion)
-                .build();
-        return SERIALIZER.serialize(msg);
+        return buildHeader(String.format("ResourceUpdateMessage|%s|%s", connectorID, infoModelVersion),
+                (id, issued, token, affected) -> (id == null ? new ResourceUpdateMessageBuilder() : new ResourceUpdateMessageBuilder(id))
+                        ._affectedResource_(affected)
+                        ._securityToken_(token)
+                        ._issued_(issued)
+                        ._senderAgent_(connectorID)
+                        ._issuerConnector_(connectorID)
+                        ._modelVersion_(infoModelVersion)
+                        .build(),
+                securityToken, resource.getId());
     }
 
     /**
@@ -96,15 +108,16 @@ public class BrokerIDSMessageUtils {
     public static String buildUnavailableMessage(final DynamicAttributeToken securityToken,
                                                  final String infoModelVersion,
                                                  final URI connectorID) throws IOException {
-        final var msg = new ConnectorUnavailableMessageBuilder()
-                ._securityToken_(securityToken)
-                ._issued_(IDSUtils.getGregorianNow())
-                ._modelVersion_(infoModelVersion)
-                ._issuerConnector_(connectorID)
-                ._senderAgent_(connectorID)
-                ._affectedConnector_(connectorID)
-                .build();
-        return SERIALIZER.serialize(msg);
+        return buildHeader(String.format("ConnectorUnavailableMessage|%s|%s", connectorID, infoModelVersion),
+                (id, issued, token, affected) -> (id == null ? new ConnectorUnavailableMessageBuilder() : new ConnectorUnavailableMessageBuilder(id))
+                        ._securityToken_(token)
+                        ._issued_(issued)
+                        ._modelVersion_(infoModelVersion)
+                        ._issuerConnector_(connectorID)
+                        ._senderAgent_(connectorID)
+                        ._affectedConnector_(connectorID)
+                        .build(),
+                securityToken, null);
     }
 
     /**
@@ -119,15 +132,16 @@ public class BrokerIDSMessageUtils {
     public static String buildUpdateMessage(final DynamicAttributeToken securityToken,
                                             final String infoModelVersion,
                                             final URI connectorID) throws IOException {
-        final var msg = new ConnectorUpdateMessageBuilder()
-                ._securityToken_(securityToken)
-                ._issued_(IDSUtils.getGregorianNow())
-                ._modelVersion_(infoModelVersion)
-                ._issuerConnector_(connectorID)
-                ._senderAgent_(connectorID)
-                ._affectedConnector_(connectorID)
-                .build();
-        return SERIALIZER.serialize(msg);
+        return buildHeader(String.format("ConnectorUpdateMessage|%s|%s", connectorID, infoModelVersion),
+                (id, issued, token, affected) -> (id == null ? new ConnectorUpdateMessageBuilder() : new ConnectorUpdateMessageBuilder(id))
+                        ._securityToken_(token)
+                        ._issued_(issued)
+                        ._modelVersion_(infoModelVersion)
+                        ._issuerConnector_(connectorID)
+                        ._senderAgent_(connectorID)
+                        ._affectedConnector_(connectorID)
+                        .build(),
+                securityToken, null);
     }
 
     /**
@@ -148,17 +162,44 @@ public class BrokerIDSMessageUtils {
                                            final QueryLanguage queryLanguage,
                                            final QueryScope queryScope,
                                            final QueryTarget queryTarget) throws IOException {
-        final var msg = new QueryMessageBuilder()
-                ._securityToken_(securityToken)
-                ._issued_(IDSUtils.getGregorianNow())
-                ._modelVersion_(infoModelVersion)
-                ._issuerConnector_(connectorID)
-                ._senderAgent_(connectorID)
-                ._queryLanguage_(queryLanguage)
-                ._queryScope_(queryScope)
-                ._recipientScope_(queryTarget)
-                .build();
-        return SERIALIZER.serialize(msg);
+        return buildHeader(String.format("QueryMessage|%s|%s|%s|%s|%s", connectorID, infoModelVersion, queryLanguage, queryScope, queryTarget),
+                (id, issued, token, affected) -> (id == null ? new QueryMessageBuilder() : new QueryMessageBuilder(id))
+                        ._securityToken_(token)
+                        ._issued_(issued)
+                        ._modelVersion_(infoModelVersion)
+                        ._issuerConnector_(connectorID)
+                        ._senderAgent_(connectorID)
+                        ._queryLanguage_(queryLanguage)
+                        ._queryScope_(queryScope)
+                        ._recipientScope_(queryTarget)
+                        .build(),
+                securityToken, null);
+    }
+
+    /**
+     * Build a header from its pre-compiled template, compile the template on first use.
+     * Falls back to the infomodel builder and serializer if the header cannot be represented by a template.
+     *
+     * @param templateKey key of the template (message type and constant field values)
+     * @param factory factory building the header message from its dynamic fields
+     * @param securityToken the DAT Token used for this request
+     * @param affectedResource the affected resource (null if the message has none)
+     * @return the header as JSONLD
+     * @throws IOException when the message cannot be serialized properly
+     */
+    private static String buildHeader(final String templateKey,
+                                      final HeaderTemplate.HeaderFactory factory,
+                                      final DynamicAttributeToken securityToken,
+                                      final URI affectedResource) throws IOException {
+        if (HeaderTemplate.isSupported(securityToken)) {
+            final var key = String.format("%s|%s|%s", templateKey, securityToken.getTokenFormat(), affectedResource != null);
+            final var template = TEMPLATES.computeIfAbsent(key,
+                    k -> HeaderTemplate.compile(SERIALIZER, factory, securityToken, affectedResource != null));
+            if (template.isPresent()) {
+                return template.get().render(TimeService.now(), securityToken, affectedResource);
+            }
+        }
+        return SERIALIZER.serialize(factory.create(null, TimeService.now(), securityToken, affectedResource));
     }
 
     /**
@@ -0,0 +1,237 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.fraunhofer.iais.eis.QueryLanguage;
+import de.fraunhofer.iais.eis.QueryScope;
+import de.fraunhofer.iais.eis.QueryTarget;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Cache for the responses of broker queries, keyed by broker, query text, language, scope and target.
+ * Entries expire after a fixed time to live, the least recently used entry is evicted when the cache is full.
+ * Only successful responses are cached, every lookup returns a new {@link Response} with the cached body.
+ * A query sent before an invalidation must not be cached when its response arrives: read {@link #generation()} before
+ * sending the query and pass it to {@link #put(String, String, QueryLanguage, QueryScope, QueryTarget, Response, long)}.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class BrokerQueryCache {
+
+    int maxEntries;
+    Duration timeToLive;
+    Clock clock;
+    // access ordered, so the eldest entry is the least recently used one; guarded by this
+    LinkedHashMap<Key, CachedResponse> entries;
+    // incremented by every invalidation, changed under the lock of this
+    AtomicLong generation = new AtomicLong();
+
+    /**
+     * Create a cache.
+     *
+     * @param maxEntries maximum number of cached responses
+     * @param timeToLive time after which a cached response expires
+     */
+    public BrokerQueryCache(final int maxEntries, final Duration timeToLive) {
+        this(maxEntries, timeToLive, Clock.systemUTC());
+    }
+
+    /**
+     * Create a cache with the given clock for expiring entries.
+     *
+     * @param maxEntries maximum number of cached responses
+     * @param timeToLive time after which a cached response expires
+     * @param clock the clock used for expiration
+     */
+    public BrokerQueryCache(final int maxEntries, final Duration timeToLive, final Clock clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The cache needs space for at least one entry!");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, CachedResponse> eldest) {
+                return size() > BrokerQueryCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the cached response of a query.
+     *
+     * @param brokerURI URI of the broker
+     * @param query the query text
+     * @param queryLanguage the language of the query
+     * @param queryScope the scope of the query
+     * @param queryTarget the target of the query
+     * @return a new Response with the cached status, headers and body, Optional.empty if nothing (valid) is cached
+     */
+    public synchronized Optional<Response> get(final String brokerURI,
+                                               final String query,
+                                               final QueryLanguage queryLanguage,
+                                               final QueryScope queryScope,
+                                               final QueryTarget queryTarget) {
+        final var key = new Key(brokerURI, query, queryLanguage, queryScope, queryTarget);
+        final var cached = entries.get(key);
+        if (cached == null) {
+            return Optional.empty();
+        }
+        if (!clock.instant().isBefore(cached.expires)) {
+            entries.remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(cached.toResponse(brokerURI));
+    }
+
+    /**
+     * Get the current generation of the cache, which changes with every invalidation.
+     *
+     * @return the generation, to be passed to {@link #put(String, String, QueryLanguage, QueryScope, QueryTarget, Response, long)}
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Cache the response of a query. The body of the given response is consumed, the returned response
+     * has to be used instead.
+     * The response is cached even if the cache was invalidated while the query was sent, use
+     * {@link #put(String, String, QueryLanguage, QueryScope, QueryTarget, Response, long)} to prevent this.
+     *
+     * @param brokerURI URI of the broker
+     * @param query the query text
+     * @param queryLanguage the language of the query
+     * @param queryScope the scope of the query
+     * @param queryTarget the target of the query
+     * @param response the response of the broker
+     * @return a response with the same content as the given one
+     * @throws IOException if the body of the response cannot be read
+     */
+    public Response put(final String brokerURI,
+                        final String query,
+                        final QueryLanguage queryLanguage,
+                        final QueryScope queryScope,
+                        final QueryTarget queryTarget,
+                        final Response response) throws IOException {
+        return put(brokerURI, query, queryLanguage, queryScope, queryTarget, response, generation.get());
+    }
+
+    /**
+     * Cache the response of a query, unless the cache was invalidated since the given generation was read.
+     * The body of the given response is consumed, the returned response has to be used instead.
+     *
+     * @param brokerURI URI of the broker
+     * @param query the query text
+     * @param queryLanguage the language of the query
+     * @param queryScope the scope of the query
+     * @param queryTarget the target of the query
+     * @param response the response of the broker
+     * @param queryGeneration the {@link #generation()} read before the query was sent
+     * @return a response with the same content as the given one
+     * @throws IOException if the body of the response cannot be read
+     */
+    public Response put(final String brokerURI,
+                        final String query,
+                        final QueryLanguage queryLanguage,
+                        final QueryScope queryScope,
+                        final QueryTarget queryTarget,
+                        final Response response,
+                        final long queryGeneration) throws IOException {
+        if (!response.isSuccessful()) {
+            return response;
+        }
+        final var body = response.body();
+        final var cached = new CachedResponse(response.protocol(), response.code(), response.message(), response.headers(),
+                body == null ? new byte[0] : body.bytes(), body == null ? null : body.contentType(),
+                clock.instant().plus(timeToLive));
+        synchronized (this) {
+            if (generation.get() == queryGeneration) {
+                entries.put(new Key(brokerURI, query, queryLanguage, queryScope, queryTarget), cached);
+            }
+        }
+        return cached.toResponse(brokerURI);
+    }
+
+    /**
+     * Remove all cached responses of a broker. Responses of queries in flight are not cached afterwards,
+     * for any broker.
+     *
+     * @param brokerURI URI of the broker
+     */
+    public synchronized void invalidate(final String brokerURI) {
+        generation.incrementAndGet();
+        entries.keySet().removeIf(key -> key.brokerURI.equals(brokerURI));
+    }
+
+    /**
+     * Remove all cached responses.
+     */
+    public synchronized void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    /**
+     * Get the number of cached responses (including expired ones not removed yet).
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Parameters identifying a query.
+     */
+    @Data
+    private static final class Key {
+        private final String brokerURI;
+        private final String query;
+        private final QueryLanguage queryLanguage;
+        private final QueryScope queryScope;
+        private final QueryTarget queryTarget;
+    }
+
+    /**
+     * Materialized response of a query.
+     */
+    @AllArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static final class CachedResponse {
+        Protocol protocol;
+        int code;
+        String message;
+        Headers headers;
+        byte[] body;
+        MediaType contentType;
+        Instant expires;
+
+        Response toResponse(final String brokerURI) {
+            return new Response.Builder()
+                    .request(new Request.Builder().url(brokerURI).build())
+                    .protocol(protocol)
+                    .code(code)
+                    .message(message)
+                    .headers(headers)
+                    .body(ResponseBody.create(body, contentType))
+                    .build();
+        }
+    }
+}
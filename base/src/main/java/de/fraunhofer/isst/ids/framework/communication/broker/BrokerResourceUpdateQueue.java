@@ -0,0 +1,302 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.fraunhofer.iais.eis.Resource;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Queue for resource updates and removals at brokers, which coalesces bursts of changes.
+ * A change is sent once it waited for the coalescing window, changes of the same resource at the same broker
+ * within the window are merged: only the latest state is sent, an update followed by a removal only sends the removal
+ * and a removal followed by an update only sends the update (which replaces the resource at the broker).
+ * Every broker is served by at most one thread and receives at most the configured number of calls per second,
+ * failed calls are retried up to {@link #MAX_ATTEMPTS} times.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BrokerResourceUpdateQueue implements AutoCloseable {
+
+    static final int MAX_ATTEMPTS = 3;
+    static final long TICK_MILLIS = 100;
+    static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final AtomicInteger QUEUE_COUNT = new AtomicInteger();
+
+    /**
+     * Change of a resource at a broker.
+     */
+    enum Operation {
+        UPDATE, REMOVE
+    }
+
+    final IDSBrokerService brokerService;
+    final long windowNanos;
+    final long intervalNanos;
+    final ScheduledExecutorService scheduler;
+    final ExecutorService senders;
+
+    // pending changes per broker in order of their first change, guarded by this
+    final Map<String, LinkedHashMap<URI, PendingChange>> pending = new HashMap<>();
+    // brokers currently served by a sender thread, guarded by this
+    final Set<String> draining = new HashSet<>();
+    volatile boolean flushing;
+    volatile boolean closed;
+
+    /**
+     * Create a queue sending the changes with the given broker service.
+     *
+     * @param brokerService the service used for the broker calls
+     * @param window time a change waits for further changes of the same resource (zero to send changes right away)
+     * @param maxCallsPerBrokerPerSecond maximum number of calls per second to a single broker
+     * @throws IllegalArgumentException if the window is negative or less than one call per second is allowed
+     */
+    public BrokerResourceUpdateQueue(final IDSBrokerService brokerService,
+                                     final Duration window,
+                                     final int maxCallsPerBrokerPerSecond) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("The coalescing window must not be negative!");
+        }
+        if (maxCallsPerBrokerPerSecond < 1) {
+            throw new IllegalArgumentException("At least one call per second is needed!");
+        }
+        this.brokerService = brokerService;
+        this.windowNanos = window.toNanos();
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / maxCallsPerBrokerPerSecond;
+
+        final var queueNumber = QUEUE_COUNT.incrementAndGet();
+        final var senderCount = new AtomicInteger();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "ids-broker-queue-" + queueNumber));
+        this.senders = Executors.newCachedThreadPool(runnable ->
+                daemon(runnable, "ids-broker-queue-" + queueNumber + "-sender-" + senderCount.incrementAndGet()));
+        scheduler.scheduleWithFixedDelay(this::dispatchDue, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue an update of a resource at a broker.
+     *
+     * @param brokerUri URI of the broker
+     * @param resource the current state of the resource
+     * @throws IllegalStateException if the queue is closed
+     */
+    public void update(final String brokerUri, final Resource resource) {
+        enqueue(brokerUri, resource, Operation.UPDATE);
+    }
+
+    /**
+     * Queue the removal of a resource from a broker.
+     *
+     * @param brokerUri URI of the broker
+     * @param resource the resource to remove
+     * @throws IllegalStateException if the queue is closed
+     */
+    public void remove(final String brokerUri, final Resource resource) {
+        enqueue(brokerUri, resource, Operation.REMOVE);
+    }
+
+    /**
+     * Get the number of changes which were not sent yet.
+     *
+     * @return number of pending changes over all brokers
+     */
+    public synchronized int pendingCount() {
+        return pending.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Send all pending changes without waiting for the end of their coalescing window (the rate limit still applies)
+     * and wait until they are sent.
+     *
+     * @param timeout maximum time to wait
+     * @return true if all changes were sent within the timeout
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public boolean flush(final Duration timeout) throws InterruptedException {
+        flushing = true;
+        try {
+            dispatchDue();
+            final var deadline = System.nanoTime() + timeout.toNanos();
+            synchronized (this) {
+                while (!pending.isEmpty() || !draining.isEmpty()) {
+                    final var remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+            return true;
+        } finally {
+            flushing = false;
+        }
+    }
+
+    /**
+     * Flush the pending changes (waiting at most {@link #CLOSE_TIMEOUT}) and stop the threads of the queue.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            if (!flush(CLOSE_TIMEOUT) && log.isWarnEnabled()) {
+                log.warn(String.format("Broker update queue closed with %d unsent changes!", pendingCount()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            scheduler.shutdownNow();
+            senders.shutdown();
+        }
+    }
+
+    private synchronized void enqueue(final String brokerUri, final Resource resource, final Operation operation) {
+        if (closed) {
+            throw new IllegalStateException("Broker update queue is closed!");
+        }
+        final var changes = pending.computeIfAbsent(brokerUri, broker -> new LinkedHashMap<>());
+        final var previous = changes.get(resource.getId());
+        if (previous != null && log.isDebugEnabled()) {
+            log.debug(String.format("Coalescing %s of %s at %s with pending %s", operation, resource.getId(), brokerUri, previous.operation));
+        }
+        // a coalesced change keeps the position and start of the window of the first change
+        changes.put(resource.getId(), new PendingChange(operation, resource,
+                previous == null ? System.nanoTime() : previous.queuedAt, 0));
+    }
+
+    /**
+     * Hand every broker with due changes, which is not served yet, to a sender thread.
+     */
+    private synchronized void dispatchDue() {
+        final var now = System.nanoTime();
+        for (final var entry : pending.entrySet()) {
+            final var broker = entry.getKey();
+            if (!draining.contains(broker) && isDue(entry.getValue().values().iterator().next(), now)) {
+                draining.add(broker);
+                senders.execute(() -> drain(broker));
+            }
+        }
+    }
+
+    /**
+     * Send the due changes of a broker one after another, keeping the minimum interval between two calls.
+     */
+    private void drain(final String broker) {
+        var lastCall = System.nanoTime() - intervalNanos;
+        while (true) {
+            final PendingChange change;
+            synchronized (this) {
+                change = takeDue(broker);
+                if (change == null) {
+                    draining.remove(broker);
+                    notifyAll();
+                    return;
+                }
+            }
+            final var wait = lastCall + intervalNanos - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    requeue(broker, change);
+                    synchronized (this) {
+                        draining.remove(broker);
+                        notifyAll();
+                    }
+                    return;
+                }
+            }
+            lastCall = System.nanoTime();
+            send(broker, change);
+        }
+    }
+
+    /**
+     * Remove the oldest change of a broker if it is due (guarded by this).
+     */
+    private PendingChange takeDue(final String broker) {
+        final var changes = pending.get(broker);
+        if (changes == null) {
+            return null;
+        }
+        final var oldest = changes.entrySet().iterator().next();
+        if (!isDue(oldest.getValue(), System.nanoTime())) {
+            return null;
+        }
+        changes.remove(oldest.getKey());
+        if (changes.isEmpty()) {
+            pending.remove(broker);
+        }
+        return oldest.getValue();
+    }
+
+    private boolean isDue(final PendingChange change, final long now) {
+        return flushing || now - change.queuedAt >= windowNanos;
+    }
+
+    private void send(final String broker, final PendingChange change) {
+        String failure;
+        try (var response = change.operation == Operation.UPDATE
+                ? brokerService.updateResourceAtBroker(broker, change.resource)
+                : brokerService.removeResourceFromBroker(broker, change.resource)) {
+            // no response: the update was skipped, because the broker already has the current state
+            if (response == null || response.isSuccessful()) {
+                return;
+            }
+            failure = "status " + response.code();
+        } catch (IOException | RuntimeException e) {
+            failure = e.getMessage();
+        }
+        if (log.isWarnEnabled()) {
+            log.warn(String.format("%s of %s at %s failed (%s)!", change.operation, change.resource.getId(), broker, failure));
+        }
+        requeue(broker, change);
+    }
+
+    /**
+     * Queue a failed change again, unless a newer change of the resource is pending or it failed too often.
+     */
+    private synchronized void requeue(final String broker, final PendingChange change) {
+        if (change.attempts + 1 >= MAX_ATTEMPTS) {
+            if (log.isErrorEnabled()) {
+                log.error(String.format("Giving up %s of %s at %s after %d attempts!", change.operation, change.resource.getId(), broker, MAX_ATTEMPTS));
+            }
+            return;
+        }
+        pending.computeIfAbsent(broker, key -> new LinkedHashMap<>()).putIfAbsent(change.resource.getId(),
+                new PendingChange(change.operation, change.resource, System.nanoTime(), change.attempts + 1));
+    }
+
+    private static Thread daemon(final Runnable runnable, final String name) {
+        final var thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Latest change of a resource at a broker.
+     */
+    @AllArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static final class PendingChange {
+        Operation operation;
+        Resource resource;
+        long queuedAt;
+        int attempts;
+    }
+}
@@ -0,0 +1,91 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import java.time.Duration;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import okhttp3.Response;
+
+/**
+ * Result of sending a message to one broker of a fan-out: either the response of the broker, or the error
+ * which prevented the exchange (connection failure, timeout, ...), or neither if the message was not sent
+ * because the broker already has the current state (see {@link #isNotModified()}).
+ * The response body has to be closed by the receiver of the result.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class BrokerResult {
+
+    String brokerUri;
+    Response response;
+    Throwable error;
+    Duration duration;
+    boolean notModified;
+
+    /**
+     * Create the result for a broker which answered (successfully or not).
+     *
+     * @param brokerUri URI of the broker
+     * @param response the response of the broker
+     * @param duration time until the response was received
+     * @return the result
+     */
+    public static BrokerResult of(final String brokerUri, final Response response, final Duration duration) {
+        return new BrokerResult(brokerUri, response, null, duration, false);
+    }
+
+    /**
+     * Create the result for a broker which could not be reached.
+     *
+     * @param brokerUri URI of the broker
+     * @param error the reason of the failure
+     * @param duration time until the failure occurred
+     * @return the result
+     */
+    public static BrokerResult failed(final String brokerUri, final Throwable error, final Duration duration) {
+        return new BrokerResult(brokerUri, null, error, duration, false);
+    }
+
+    /**
+     * Create the result for a broker the message was not sent to, because the broker already has the current state.
+     *
+     * @param brokerUri URI of the broker
+     * @return the result, without response
+     */
+    public static BrokerResult notModified(final String brokerUri) {
+        return new BrokerResult(brokerUri, null, null, Duration.ZERO, true);
+    }
+
+    /**
+     * Check if the broker answered with a successful http status, or the message was skipped because the broker
+     * already has the current state.
+     *
+     * @return true if a response with status 2xx was received or the message was not sent
+     */
+    public boolean isSuccess() {
+        return notModified || response != null && response.isSuccessful();
+    }
+
+    /**
+     * Check if the message was skipped, because the broker already has the current state.
+     *
+     * @return true if the message was not sent (there is no response)
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    @Override
+    public String toString() {
+        if (notModified) {
+            return String.format("BrokerResult(%s, not modified)", brokerUri);
+        }
+        if (response != null) {
+            return String.format("BrokerResult(%s, status %d, %d ms)", brokerUri, response.code(), duration.toMillis());
+        }
+        return String.format("BrokerResult(%s, failed: %s, %d ms)", brokerUri, error, duration.toMillis());
+    }
+}
@@ -0,0 +1,208 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.MediaType;
+import okhttp3.MultipartReader;
+import okhttp3.ResponseBody;
+
+/**
+ * Merges the query responses of several brokers while they arrive. Payloads of type
+ * <code>text/tab-separated-values</code> or <code>text/csv</code> (SPARQL result formats) are merged row-wise:
+ * the leading line of variable names is skipped, rows are deduplicated by their first column, the id of the resource,
+ * and new rows are handed to the listener immediately. Payloads of other types are kept per broker without merging.
+ * Once the merged result was taken, later responses are discarded.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class FederatedQueryMerger {
+
+    static final String TSV = "text/tab-separated-values";
+    static final String CSV = "text/csv";
+
+    private static final Pattern PART_NAME = Pattern.compile("(?:^|;)\\s*name=\"([^\"]*)\"");
+
+    final Consumer<String> listener;
+    // guarded by this
+    final Map<String, String> rows = new LinkedHashMap<>();
+    final Map<String, String> unmergedPayloads = new LinkedHashMap<>();
+    final List<BrokerResult> brokerResults = new ArrayList<>();
+    final Set<String> answered = new HashSet<>();
+    boolean closed;
+
+    /**
+     * @param listener receives every new (deduplicated) row, called by the thread which received the response
+     */
+    FederatedQueryMerger(final Consumer<String> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Merge the response (or failure) of a broker, the body of the response is consumed.
+     *
+     * @param result the result of a broker
+     */
+    void accept(final BrokerResult result) {
+        final var response = result.getResponse();
+        var merged = result;
+        Payload payload = null;
+        if (response != null) {
+            try (var body = response.body()) {
+                if (response.isSuccessful() && body != null) {
+                    payload = readPayload(body);
+                }
+            } catch (IOException | RuntimeException e) {
+                if (log.isWarnEnabled()) {
+                    log.warn(String.format("Query response of %s could not be parsed!", result.getBrokerUri()));
+                }
+                merged = BrokerResult.failed(result.getBrokerUri(), e, result.getDuration());
+            }
+        }
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            answered.add(result.getBrokerUri());
+            brokerResults.add(merged);
+            if (payload == null) {
+                return;
+            }
+            final var separator = separator(payload.type);
+            if (separator == 0) {
+                unmergedPayloads.put(result.getBrokerUri(), payload.content);
+                return;
+            }
+            final var lines = payload.content.lines().filter(line -> !line.isBlank()).iterator();
+            if (lines.hasNext()) {
+                //the first line names the variables
+                lines.next();
+            }
+            while (lines.hasNext()) {
+                final var row = lines.next();
+                final var id = resultId(row, separator);
+                if (!rows.containsKey(id)) {
+                    rows.put(id, row);
+                    listener.accept(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the merged result, responses arriving later are ignored.
+     *
+     * @param brokerUris all queried brokers
+     * @return the merged result
+     */
+    synchronized FederatedQueryResult result(final List<String> brokerUris) {
+        closed = true;
+        final var missing = brokerUris.stream().filter(uri -> !answered.contains(uri)).distinct().collect(Collectors.toList());
+        return new FederatedQueryResult(List.copyOf(rows.values()), List.copyOf(brokerResults),
+                new LinkedHashMap<>(unmergedPayloads), missing);
+    }
+
+    /**
+     * Get the resource id of a result row: its first column without angle brackets. Quoted CSV columns are unquoted.
+     *
+     * @param row a result row
+     * @param separator the column separator, tab or comma
+     * @return the id used for deduplication
+     */
+    static String resultId(final String row, final char separator) {
+        final String column;
+        if (separator == ',' && row.startsWith("\"")) {
+            final var unquoted = new StringBuilder();
+            for (var i = 1; i < row.length(); i++) {
+                final var c = row.charAt(i);
+                if (c == '"') {
+                    //a doubled quote is an escaped quote, a single one ends the column
+                    if (i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                unquoted.append(c);
+            }
+            column = unquoted.toString();
+        } else {
+            final var end = row.indexOf(separator);
+            column = (end < 0 ? row : row.substring(0, end)).trim();
+        }
+        return column.startsWith("<") && column.endsWith(">") ? column.substring(1, column.length() - 1) : column;
+    }
+
+    /**
+     * Get the column separator of a tabular payload type.
+     *
+     * @param type the media type of the payload
+     * @return tab for TSV, comma for CSV, 0 for payloads which are not merged
+     */
+    static char separator(final MediaType type) {
+        if (type == null) {
+            return 0;
+        }
+        final var mediaType = type.type() + "/" + type.subtype();
+        if (TSV.equals(mediaType)) {
+            return '\t';
+        }
+        return CSV.equals(mediaType) ? ',' : 0;
+    }
+
+    /**
+     * Read the payload part of a multipart response (or the whole body of another response) with its media type.
+     *
+     * @param body the response body
+     * @return the payload, null if the response has no payload part
+     * @throws IOException if the body cannot be read
+     */
+    private static Payload readPayload(final ResponseBody body) throws IOException {
+        final var contentType = body.contentType();
+        if (contentType == null || !"multipart".equals(contentType.type())) {
+            return new Payload(contentType, body.string());
+        }
+        try (var reader = new MultipartReader(body)) {
+            MultipartReader.Part part;
+            while ((part = reader.nextPart()) != null) {
+                final var disposition = part.headers().get("Content-Disposition");
+                final var name = disposition == null ? null : PART_NAME.matcher(disposition);
+                if (name != null && name.find() && "payload".equals(name.group(1))) {
+                    final var partType = part.headers().get("Content-Type");
+                    final var type = partType == null ? null : MediaType.parse(partType);
+                    final var encoding = PayloadEncoding.fromContentEncoding(part.headers().get(PayloadEncoding.CONTENT_ENCODING));
+                    try (var stream = encoding.decompress(part.body().inputStream())) {
+                        return new Payload(type, new String(stream.readAllBytes(),
+                                type == null ? StandardCharsets.UTF_8 : type.charset(StandardCharsets.UTF_8)));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Payload of a query response.
+     */
+    @AllArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static final class Payload {
+        MediaType type;
+        String content;
+    }
+}
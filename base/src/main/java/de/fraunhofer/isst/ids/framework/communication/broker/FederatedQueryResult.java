@@ -0,0 +1,50 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Merged result of a query sent to several brokers, see {@link IDSBrokerService#queryBrokers}.
+ * The rows of all brokers answering with a tab or comma separated payload are deduplicated by resource id
+ * (the first column of a row), other payloads are kept per broker. Brokers which did not answer before the deadline
+ * are listed as missing.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class FederatedQueryResult {
+
+    /**
+     * Deduplicated result rows in the order they arrived, as sent by the brokers (tab or comma separated).
+     */
+    List<String> rows;
+
+    /**
+     * Results of the brokers which answered or failed before the deadline (the response bodies are already consumed).
+     */
+    List<BrokerResult> brokerResults;
+
+    /**
+     * Payloads which are neither <code>text/tab-separated-values</code> nor <code>text/csv</code>, by broker URI.
+     */
+    Map<String, String> unmergedPayloads;
+
+    /**
+     * URIs of the brokers which did not answer before the deadline.
+     */
+    List<String> missingBrokers;
+
+    /**
+     * Check if every broker answered before the deadline.
+     *
+     * @return true if no broker is missing
+     */
+    public boolean isComplete() {
+        return missingBrokers.isEmpty();
+    }
+}
@@ -0,0 +1,246 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import de.fraunhofer.iais.eis.DynamicAttributeToken;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.util.TimeService;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pre-compiled JSON-LD representation of a broker message header. The header is serialized once with sentinel values
+ * for the dynamic fields (id, issued, securityToken and affected resource), later headers are rendered by splicing the
+ * actual values into the constant parts.
+ * A template is only used if it reproduces the header built by the infomodel builder, this is checked once when it is compiled.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class HeaderTemplate {
+
+    /**
+     * Dynamic fields of a header.
+     */
+    enum Field {
+        ID, ISSUED, TOKEN_ID, TOKEN_VALUE, AFFECTED_RESOURCE
+    }
+
+    /**
+     * Creates a header message from its dynamic fields, a null id means that the builder generates one.
+     */
+    @FunctionalInterface
+    interface HeaderFactory {
+        /**
+         * @param id id of the message (null for generated id)
+         * @param issued issued timestamp
+         * @param securityToken the DAT
+         * @param affectedResource the affected resource (ignored by messages without affected resource)
+         * @return the built message
+         */
+        Message create(URI id, XMLGregorianCalendar issued, DynamicAttributeToken securityToken, URI affectedResource);
+    }
+
+    List<String> literals;
+    List<Field> fields;
+    String idPrefix;
+    int literalLength;
+
+    private HeaderTemplate(final List<String> literals, final List<Field> fields, final String idPrefix) {
+        this.literals = literals;
+        this.fields = fields;
+        this.idPrefix = idPrefix;
+        this.literalLength = literals.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * Compile a template for the header built by the given factory.
+     *
+     * @param serializer the serializer for building the template
+     * @param factory factory for the header message
+     * @param tokenPrototype a DAT with the token format the template is used for
+     * @param withAffectedResource true if the header has an affected resource
+     * @return the template, or Optional.empty if the header cannot be represented by a template
+     */
+    static Optional<HeaderTemplate> compile(final Serializer serializer,
+                                            final HeaderFactory factory,
+                                            final DynamicAttributeToken tokenPrototype,
+                                            final boolean withAffectedResource) {
+        try {
+            final var generated = factory.create(null, TimeService.now(), tokenPrototype, withAffectedResource ? sentinelUri() : null);
+            final var generatedId = generated.getId().toString();
+            final var idPrefix = generatedId.substring(0, generatedId.lastIndexOf('/') + 1);
+
+            final var sentinels = sentinelValues(withAffectedResource);
+            final var prototype = create(factory, sentinels, tokenPrototype);
+            final var json = serializer.serialize(prototype);
+
+            final var positions = new EnumMap<Field, Integer>(Field.class);
+            for (final var sentinel : sentinels.entrySet()) {
+                final var position = json.indexOf(sentinel.getValue());
+                if (position < 0 || json.indexOf(sentinel.getValue(), position + 1) >= 0) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(String.format("Field %s not found exactly once in header template, using builder", sentinel.getKey()));
+                    }
+                    return Optional.empty();
+                }
+                positions.put(sentinel.getKey(), position);
+            }
+
+            final var fields = new ArrayList<>(positions.keySet());
+            fields.sort(Comparator.comparing(positions::get));
+            final var literals = new ArrayList<String>(fields.size() + 1);
+            var start = 0;
+            for (final var field : fields) {
+                literals.add(json.substring(start, positions.get(field)));
+                start = positions.get(field) + sentinels.get(field).length();
+            }
+            literals.add(json.substring(start));
+
+            final var template = new HeaderTemplate(List.copyOf(literals), List.copyOf(fields), idPrefix);
+            return template.verify(serializer, prototype.getClass(), factory, tokenPrototype, withAffectedResource)
+                    ? Optional.of(template)
+                    : Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("Header template could not be compiled, using builder!");
+                log.warn(e.getMessage(), e);
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Check if a DAT can be spliced into the template (the template only contains id, format and value of the token).
+     *
+     * @param securityToken the DAT
+     * @return true if the token has no further properties
+     */
+    static boolean isSupported(final DynamicAttributeToken securityToken) {
+        return securityToken != null
+                && securityToken.getId() != null
+                && securityToken.getTokenValue() != null
+                && (securityToken.getProperties() == null || securityToken.getProperties().isEmpty());
+    }
+
+    /**
+     * Render a header with a new id and the given dynamic values.
+     *
+     * @param issued issued timestamp
+     * @param securityToken the DAT
+     * @param affectedResource the affected resource (null if the header has none)
+     * @return the header as JSON-LD
+     */
+    String render(final XMLGregorianCalendar issued, final DynamicAttributeToken securityToken, final URI affectedResource) {
+        final var values = new EnumMap<Field, String>(Field.class);
+        values.put(Field.ID, idPrefix + UUID.randomUUID());
+        values.put(Field.ISSUED, issued.toXMLFormat());
+        values.put(Field.TOKEN_ID, securityToken.getId().toString());
+        values.put(Field.TOKEN_VALUE, securityToken.getTokenValue());
+        if (affectedResource != null) {
+            values.put(Field.AFFECTED_RESOURCE, affectedResource.toString());
+        }
+        return render(values);
+    }
+
+    private String render(final Map<Field, String> values) {
+        final var builder = new StringBuilder(literalLength + 1024);
+        for (var i = 0; i < fields.size(); i++) {
+            builder.append(literals.get(i));
+            appendEscaped(builder, values.get(fields.get(i)));
+        }
+        return builder.append(literals.get(fields.size())).toString();
+    }
+
+    /**
+     * Render the template with a second set of values and check that the result is parsed to the same header
+     * the builder creates.
+     */
+    private boolean verify(final Serializer serializer,
+                           final Class<? extends Message> messageType,
+                           final HeaderFactory factory,
+                           final DynamicAttributeToken tokenPrototype,
+                           final boolean withAffectedResource) throws IOException {
+        final var values = sentinelValues(withAffectedResource);
+        final var rendered = render(values);
+        final var parsed = serializer.deserialize(rendered, Message.class);
+        final var expected = create(factory, values, tokenPrototype);
+
+        final var valid = messageType.isInstance(parsed)
+                && Objects.equals(parsed.getId(), expected.getId())
+                && parsed.getIssued() != null && parsed.getIssued().compare(expected.getIssued()) == 0
+                && parsed.getSecurityToken() != null
+                && Objects.equals(parsed.getSecurityToken().getId(), expected.getSecurityToken().getId())
+                && Objects.equals(parsed.getSecurityToken().getTokenValue(), expected.getSecurityToken().getTokenValue())
+                && Objects.equals(parsed.getSecurityToken().getTokenFormat(), expected.getSecurityToken().getTokenFormat())
+                && Objects.equals(parsed.getIssuerConnector(), expected.getIssuerConnector())
+                && Objects.equals(parsed.getModelVersion(), expected.getModelVersion());
+        if (!valid && log.isWarnEnabled()) {
+            log.warn(String.format("Header template for %s does not reproduce the header, using builder", messageType.getSimpleName()));
+        }
+        return valid;
+    }
+
+    private static Message create(final HeaderFactory factory,
+                                  final Map<Field, String> values,
+                                  final DynamicAttributeToken tokenPrototype) {
+        final var token = new DynamicAttributeTokenBuilder(URI.create(values.get(Field.TOKEN_ID)))
+                ._tokenFormat_(tokenPrototype.getTokenFormat())
+                ._tokenValue_(values.get(Field.TOKEN_VALUE))
+                .build();
+        final var affected = values.get(Field.AFFECTED_RESOURCE);
+        return factory.create(URI.create(values.get(Field.ID)),
+                TimeService.parse(values.get(Field.ISSUED)),
+                token,
+                affected == null ? null : URI.create(affected));
+    }
+
+    /**
+     * Create unique sentinel values which cannot occur in the constant parts of a header.
+     */
+    private static Map<Field, String> sentinelValues(final boolean withAffectedResource) {
+        final var values = new EnumMap<Field, String>(Field.class);
+        values.put(Field.ID, sentinelUri().toString());
+        final var random = ThreadLocalRandom.current();
+        values.put(Field.ISSUED, String.format("20%02d-01-01T00:00:00.%03dZ", random.nextInt(10, 60), random.nextInt(1000)));
+        values.put(Field.TOKEN_ID, sentinelUri().toString());
+        values.put(Field.TOKEN_VALUE, "template-" + UUID.randomUUID());
+        if (withAffectedResource) {
+            values.put(Field.AFFECTED_RESOURCE, sentinelUri().toString());
+        }
+        return values;
+    }
+
+    private static URI sentinelUri() {
+        return URI.create("https://template.invalid/" + UUID.randomUUID());
+    }
+
+    /**
+     * Append a value as content of a JSON string.
+     */
+    private static void appendEscaped(final StringBuilder builder, final String value) {
+        for (var i = 0; i < value.length(); i++) {
+            final var c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package de.fraunhofer.isst.ids.framework.communication.broker;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import de.fraunhofer.iais.eis.QueryLanguage;
 import de.fraunhofer.iais.eis.QueryScope;
@@ -28,10 +31,12 @@ public interface IDSBrokerService {
     /**
      * Builds and sends a {@link de.fraunhofer.iais.eis.ConnectorUpdateMessage} to the broker.
      * The Connector will be registered at the broker, or its selfdescription will be updated.
+     * If change detection is enabled and the resource did not change since it was last accepted by the broker,
+     * nothing is sent and null is returned.
      *
      * @param brokerURI URI of the broker the connector will try to unregister the resource at
      * @param resource the resource that will be unregistered at the broker
-     * @return the ResponseMessage of the Broker
+     * @return the ResponseMessage of the Broker, null if the update was skipped
      * @throws IOException if the built message could not be serialized
      */
     Response updateResourceAtBroker(String brokerURI, Resource resource) throws IOException;
@@ -50,24 +55,54 @@ public interface IDSBrokerService {
      * Builds and sends a {@link de.fraunhofer.iais.eis.ConnectorUpdateMessage} to the broker.
      * The currently available connector self declaration at the broker will be updated. In order to update the
      * connector uuid in the self declaration has to be the same as the registered one at the broker.
+     * The self declaration is taken from {@link de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer#getSerializedSelfDescription()},
+     * it reflects the current state of the Connector, also if the Connector was modified in place (e.g. resources
+     * added to its catalog) without updating the configuration.
+     * If change detection is enabled and the self declaration did not change since it was last accepted by the broker,
+     * nothing is sent and null is returned.
      *
      * @param brokerURI URI of the broker the connector will try to update its information at
-     * @return the ResponseMessage of the Broker (NotificationMessage if it worked, RejectionMessage if not)
+     * @return the ResponseMessage of the Broker (NotificationMessage if it worked, RejectionMessage if not),
+     * null if the update was skipped
      * @throws IOException if the built message could not be serialized
      */
     Response updateSelfDescriptionAtBroker(String brokerURI) throws IOException;
 
     /**
      * Builds and sends a {@link de.fraunhofer.iais.eis.ConnectorUpdateMessage} to a list of brokers.
+     * Blocks until every broker answered or timed out, see {@link #updateSelfDescriptionAtBrokersAsync(List, Duration)}
+     * to find out which updates failed.
      *
      * @param brokerUris URIs of the brokers the connector will try to update its information at
-     * @return a List of Responses from the Broker
+     * @return a List of Responses from the brokers which answered (brokers skipped by change detection are left out)
      * @throws IOException if the built message could not be serialized
      */
     List<Response> updateSelfDescriptionAtBrokers(List<String> brokerUris) throws IOException;
 
+    /**
+     * Builds a {@link de.fraunhofer.iais.eis.ConnectorUpdateMessage} and sends it to a list of brokers concurrently.
+     * The timeout is the OkHttp call timeout, it also covers reading the response body: the bodies of the results
+     * have to be read before the timeout of their call expires.
+     *
+     * @param brokerUris URIs of the brokers the connector will try to update its information at
+     * @param timeout timeout of the call to a single broker
+     * @return future of one {@link BrokerResult} per broker (in the order of brokerUris), completed when all calls finished,
+     * brokers skipped by change detection have a {@link BrokerResult#isNotModified()} result
+     * @throws IOException if the built message could not be serialized
+     */
+    CompletableFuture<List<BrokerResult>> updateSelfDescriptionAtBrokersAsync(List<String> brokerUris, Duration timeout) throws IOException;
+
+    /**
+     * Forget which resources and self-description were published at a broker, so the next updates are sent
+     * even if nothing changed (e.g. after the broker lost its data).
+     *
+     * @param brokerURI URI of the broker, null for all brokers
+     */
+    void forgetPublishedState(String brokerURI);
+
     /**
      * Builds and sends a {@link de.fraunhofer.iais.eis.QueryMessage} to the broker.
+     * Implementations may answer repeated queries from a cache (see {@link BrokerQueryCache}).
      *
      * @param brokerURI     the URI of the broker the message is sent to
      * @param query         the query as payload for the QueryMessage
@@ -78,4 +113,29 @@ public interface IDSBrokerService {
      * @throws IOException if the built message could not be serialized
      */
     Response queryBroker(String brokerURI, String query, QueryLanguage queryLanguage, QueryScope queryScope, QueryTarget queryTarget) throws IOException;
+
+    /**
+     * Builds a {@link de.fraunhofer.iais.eis.QueryMessage} and sends it to several brokers concurrently.
+     * Result payloads of type <code>text/tab-separated-values</code> or <code>text/csv</code> are merged while they arrive
+     * and deduplicated by resource id (first column of a row), every new row is handed to the given consumer right away.
+     * Payloads of other types are returned per broker ({@link FederatedQueryResult#getUnmergedPayloads()}). When the deadline expires, the returned future completes
+     * with the rows received so far and lists the brokers which did not answer.
+     *
+     * @param brokerURIs    the URIs of the brokers the message is sent to
+     * @param query         the query as payload for the QueryMessage
+     * @param queryLanguage the Language of the Query (e.g. SPARQL, SQL, XQUERY). See {@link QueryLanguage}
+     * @param queryScope the Scope of the Query (ALL connectors, ACTIVE connectors, INACTIVE connectors). See {@link QueryScope}
+     * @param queryTarget the type of IDS Components that are queried. See {@link QueryTarget}
+     * @param deadline maximum time to wait for the brokers
+     * @param onRow consumer of the deduplicated result rows, called on the thread which received a response
+     * @return future of the merged result, completed when all brokers answered or the deadline expired
+     * @throws IOException if the built message could not be serialized
+     */
+    CompletableFuture<FederatedQueryResult> queryBrokers(List<String> brokerURIs,
+                                                         String query,
+                                                         QueryLanguage queryLanguage,
+                                                         QueryScope queryScope,
+                                                         QueryTarget queryTarget,
+                                                         Duration deadline,
+                                                         Consumer<String> onRow) throws IOException;
 }
@@ -1,46 +1,162 @@
 package de.fraunhofer.isst.ids.framework.communication.broker;
 
 import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import de.fraunhofer.iais.eis.QueryLanguage;
 import de.fraunhofer.iais.eis.QueryScope;
 import de.fraunhofer.iais.eis.QueryTarget;
+import de.fraunhofer.iais.eis.RejectionMessage;
 import de.fraunhofer.iais.eis.Resource;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
 import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
+import de.fraunhofer.isst.ids.framework.configuration.SerializerProvider;
 import de.fraunhofer.isst.ids.framework.daps.DapsTokenProvider;
 import de.fraunhofer.isst.ids.framework.util.ClientProvider;
-import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import de.fraunhofer.isst.ids.framework.util.MessageDeserializer;
+import de.fraunhofer.isst.ids.framework.util.MultipartStringParser;
 import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import org.apache.commons.fileupload.FileUploadException;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
  * Broker Communication Controller. Generates appropriate ids multipart messages and send them to the broker
  * infrastructure api.
+ * Messages for several brokers are sent concurrently, with at most {@link #setMaxParallelRequests(int)} requests in flight.
+ * If change detection is enabled ({@link #setChangeDetection(boolean)}), the service remembers a hash of the resources
+ * and the self-description last accepted by each broker, updates which would not change anything are not sent.
+ * Query responses are cached if a {@link BrokerQueryCache} is set, the cached responses of a broker are invalidated
+ * when this connector changes its entries at the broker.
  **/
 @Slf4j
 @Service
-@AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class IDSBrokerServiceImpl implements IDSBrokerService {
 
     static final String     INFO_MODEL_VERSION = "4.0.0";
-    static final Serializer SERIALIZER         = new Serializer();
+    static final Serializer SERIALIZER         = SerializerProvider.getSharedSerializer();
+
+    /**
+     * Timeout per broker used by {@link #updateSelfDescriptionAtBrokers(List)}.
+     */
+    static final Duration DEFAULT_BROKER_TIMEOUT = Duration.ofSeconds(30);
+    static final int DEFAULT_MAX_PARALLEL_REQUESTS = 4;
+    /**
+     * Maximum number of bytes of a response read to check its header for a RejectionMessage.
+     */
+    static final long MAX_PEEKED_RESPONSE_SIZE = 1024 * 1024;
 
     ConfigurationContainer container;
     ClientProvider clientProvider;
     DapsTokenProvider tokenProvider;
+    volatile int maxParallelRequests = DEFAULT_MAX_PARALLEL_REQUESTS;
+    volatile boolean changeDetection;
+    volatile BrokerQueryCache queryCache;
+
+    // hash of the last serialization accepted per broker and resource (or connector) id
+    final Map<String, Map<URI, String>> publishedHashes = new ConcurrentHashMap<>();
+
+    /**
+     * Create an IDSBrokerService.
+     *
+     * @param container the connector configuration
+     * @param clientProvider provider of the http clients
+     * @param tokenProvider provider of the DAT
+     */
+    @Autowired
+    public IDSBrokerServiceImpl(final ConfigurationContainer container,
+                                final ClientProvider clientProvider,
+                                final DapsTokenProvider tokenProvider) {
+        this.container = container;
+        this.clientProvider = clientProvider;
+        this.tokenProvider = tokenProvider;
+    }
+
+    /**
+     * Set the maximum number of concurrent requests when a message is sent to several brokers.
+     *
+     * @param maxParallelRequests number of requests in flight (at least 1)
+     */
+    public void setMaxParallelRequests(final int maxParallelRequests) {
+        if (maxParallelRequests < 1) {
+            throw new IllegalArgumentException("At least one parallel request is needed!");
+        }
+        this.maxParallelRequests = maxParallelRequests;
+    }
+
+    /**
+     * Enable or disable skipping updates of resources and self-descriptions which did not change since they were
+     * last accepted by a broker (disabled by default). An update counts as accepted if the broker answered with
+     * a 2xx status and a header which is no RejectionMessage.
+     * Skipped updates return no response ({@link #updateResourceAtBroker(String, Resource)},
+     * {@link #updateSelfDescriptionAtBroker(String)}) or a {@link BrokerResult#isNotModified()} result.
+     *
+     * @param changeDetection true to skip unchanged updates
+     */
+    public void setChangeDetection(final boolean changeDetection) {
+        this.changeDetection = changeDetection;
+        if (!changeDetection) {
+            publishedHashes.clear();
+        }
+    }
+
+    /**
+     * Set the cache for query responses.
+     *
+     * @param queryCache the cache, null to disable caching
+     */
+    public void setQueryCache(final BrokerQueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    /**
+     * Get the cache for query responses, e.g. to invalidate it explicitly.
+     *
+     * @return the cache, null if caching is disabled
+     */
+    public BrokerQueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void forgetPublishedState(final String brokerURI) {
+        if (brokerURI == null) {
+            publishedHashes.clear();
+        } else {
+            publishedHashes.remove(brokerURI);
+        }
+    }
 
     /** {@inheritDoc} */
     @Override
@@ -64,12 +180,29 @@ public class IDSBrokerServiceImpl implements IDSBrokerService {
             log.debug(String.format("Sending message to %s", brokerURI));
         }
 
-        return sendBrokerMessage(brokerURI, body);
+        final var response = sendBrokerMessage(brokerURI, body);
+        if (response.isSuccessful()) {
+            final var hashes = publishedHashes.get(brokerURI);
+            if (hashes != null) {
+                hashes.remove(resource.getId());
+            }
+            invalidateQueries(brokerURI);
+        }
+        return response;
     }
 
     /** {@inheritDoc} */
     @Override
     public Response updateResourceAtBroker(final String brokerURI, final Resource resource) throws IOException {
+        final var payload = SERIALIZER.serialize(resource);
+        final var hash = hash(payload);
+        if (isPublished(brokerURI, resource.getId(), hash)) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Resource %s is unchanged at %s, skipping update", resource.getId(), brokerURI));
+            }
+            return null;
+        }
+
         final var securityToken = tokenProvider.getDAT();
 
         if (log.isDebugEnabled()) {
@@ -78,14 +211,17 @@ public class IDSBrokerServiceImpl implements IDSBrokerService {
 
         final var connectorID = container.getConnector().getId();
         final var header = BrokerIDSMessageUtils.buildResourceUpdateMessage(securityToken, INFO_MODEL_VERSION, connectorID, resource);
-        final var payload = SERIALIZER.serialize(resource);
         final var body = BrokerIDSMessageUtils.buildRequestBody(header, payload);
 
         if (log.isDebugEnabled()) {
             log.debug(String.format("Sending message to %s", brokerURI));
         }
 
-        return sendBrokerMessage(brokerURI, body);
+        final var response = sendBrokerMessage(brokerURI, body);
+        if (response.isSuccessful()) {
+            markPublished(brokerURI, resource.getId(), hash, response);
+        }
+        return response;
     }
 
     /** {@inheritDoc} */
@@ -99,73 +235,107 @@ public class IDSBrokerServiceImpl implements IDSBrokerService {
 
         final var connectorID = container.getConnector().getId();
         final var header = BrokerIDSMessageUtils.buildUnavailableMessage(securityToken, INFO_MODEL_VERSION, connectorID);
-        final var payload = IDSUtils.buildSelfDeclaration(container.getConnector());
+        final var payload = container.getSerializedSelfDescription();
         final var body = BrokerIDSMessageUtils.buildRequestBody(header, payload);
 
         if (log.isDebugEnabled()) {
             log.debug(String.format("Sending message to %s", brokerURI));
         }
 
-        return sendBrokerMessage(brokerURI, body);
+        final var response = sendBrokerMessage(brokerURI, body);
+        if (response.isSuccessful()) {
+            forgetPublishedState(brokerURI);
+            invalidateQueries(brokerURI);
+        }
+        return response;
     }
 
     /** {@inheritDoc} */
     @Override
     public Response updateSelfDescriptionAtBroker(final String brokerURI) throws IOException {
+        final var connectorID = container.getConnector().getId();
+        final var payload = container.getSerializedSelfDescription();
+        final var hash = hash(payload);
+        if (isPublished(brokerURI, connectorID, hash)) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Self-description is unchanged at %s, skipping update", brokerURI));
+            }
+            return null;
+        }
+
         final var securityToken = tokenProvider.getDAT();
 
         if (log.isDebugEnabled()) {
             log.debug("Building message header");
         }
 
-        final var connectorID = container.getConnector().getId();
         final var header = BrokerIDSMessageUtils.buildUpdateMessage(securityToken, INFO_MODEL_VERSION, connectorID);
-        final var payload = IDSUtils.buildSelfDeclaration(container.getConnector());
         final var body = BrokerIDSMessageUtils.buildRequestBody(header, payload);
 
         if (log.isDebugEnabled()) {
             log.debug(String.format("Sending message to %s", brokerURI));
         }
 
-        return sendBrokerMessage(brokerURI, body);
+        final var response = sendBrokerMessage(brokerURI, body);
+        if (response.isSuccessful()) {
+            markPublished(brokerURI, connectorID, hash, response);
+        }
+        return response;
     }
 
     /** {@inheritDoc} */
     @Override
     public List<Response> updateSelfDescriptionAtBrokers(final List<String> brokerUris) throws IOException {
-        final var securityToken = tokenProvider.getDAT();
-        final var result = new ArrayList<Response>();
-        final var connectorID = container.getConnector().getId();
-        final var header = BrokerIDSMessageUtils.buildUpdateMessage(securityToken, INFO_MODEL_VERSION, connectorID);
-        final var payload = IDSUtils.buildSelfDeclaration(container.getConnector());
-        final var body = BrokerIDSMessageUtils.buildRequestBody(header, payload);
+        return updateSelfDescriptionAtBrokersAsync(brokerUris, DEFAULT_BROKER_TIMEOUT).join().stream()
+                .map(BrokerResult::getResponse)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        for (final var uri : brokerUris) {
-            if (log.isDebugEnabled()) {
-                log.debug(String.format("Sending message to %s", uri));
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<List<BrokerResult>> updateSelfDescriptionAtBrokersAsync(final List<String> brokerUris,
+                                                                                     final Duration timeout) throws IOException {
+        final var connectorID = container.getConnector().getId();
+        final var payload = container.getSerializedSelfDescription();
+        final var hash = hash(payload);
+        final var skipped = new boolean[brokerUris.size()];
+        final var changed = new ArrayList<String>(brokerUris.size());
+        for (var i = 0; i < brokerUris.size(); i++) {
+            skipped[i] = isPublished(brokerUris.get(i), connectorID, hash);
+            if (!skipped[i]) {
+                changed.add(brokerUris.get(i));
             }
+        }
 
-            clientProvider.getClient().newCall(new Request.Builder().url(uri).post(body).build()).enqueue(
-                    new Callback() {
-                        @Override
-                        public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                            if (log.isWarnEnabled()) {
-                                log.warn(String.format("Connection to Broker %s failed!", uri));
-                                log.warn(e.getMessage(), e);
-                            }
-                        }
-
-                        @Override
-                        public void onResponse(@NotNull Call call, @NotNull Response response) {
-                            if (log.isInfoEnabled()) {
-                                log.info(String.format("Received response from %s", uri));
-                            }
-                            result.add(response);
-                        }
-                    }
-            );
+        final CompletableFuture<List<BrokerResult>> sent;
+        if (changed.isEmpty()) {
+            sent = CompletableFuture.completedFuture(List.of());
+        } else {
+            final var securityToken = tokenProvider.getDAT();
+            final var header = BrokerIDSMessageUtils.buildUpdateMessage(securityToken, INFO_MODEL_VERSION, connectorID);
+            final var body = BrokerIDSMessageUtils.buildRequestBody(header, payload);
+            sent = sendToBrokers(changed, body, timeout);
         }
-        return result;
+
+        return sent.thenApply(results -> {
+            // merge the sent and skipped brokers in the order of brokerUris
+            final var sentResults = results.iterator();
+            final var merged = new ArrayList<BrokerResult>(brokerUris.size());
+            for (var i = 0; i < brokerUris.size(); i++) {
+                final var uri = brokerUris.get(i);
+                if (!skipped[i]) {
+                    final var result = sentResults.next();
+                    if (result.isSuccess()) {
+                        markPublished(uri, connectorID, hash, result.getResponse());
+                    }
+                    merged.add(result);
+                } else {
+                    merged.add(BrokerResult.notModified(uri));
+                }
+            }
+            return merged;
+        });
     }
 
     /** {@inheritDoc} */
@@ -175,6 +345,18 @@ public class IDSBrokerServiceImpl implements IDSBrokerService {
                                 final QueryLanguage queryLanguage,
                                 final QueryScope queryScope,
                                 final QueryTarget queryTarget) throws IOException {
+        final var cache = queryCache;
+        final var cacheGeneration = cache == null ? 0 : cache.generation();
+        if (cache != null) {
+            final var cached = cache.get(brokerURI, query, queryLanguage, queryScope, queryTarget);
+            if (cached.isPresent()) {
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("Using cached response of %s", brokerURI));
+                }
+                return cached.get();
+            }
+        }
+
         final var securityToken = tokenProvider.getDAT();
 
         if (log.isDebugEnabled()) {
@@ -189,7 +371,84 @@ public class IDSBrokerServiceImpl implements IDSBrokerService {
             log.debug(String.format("Sending message to %s", brokerURI));
         }
 
-        return sendBrokerMessage(brokerURI, body);
+        final var response = sendBrokerMessage(brokerURI, body);
+        return cache == null ? response : cache.put(brokerURI, query, queryLanguage, queryScope, queryTarget, response, cacheGeneration);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompletableFuture<FederatedQueryResult> queryBrokers(final List<String> brokerURIs,
+                                                                final String query,
+                                                                final QueryLanguage queryLanguage,
+                                                                final QueryScope queryScope,
+                                                                final QueryTarget queryTarget,
+                                                                final Duration deadline,
+                                                                final Consumer<String> onRow) throws IOException {
+        final var merger = new FederatedQueryMerger(onRow);
+        final var cache = queryCache;
+        final var cacheGeneration = cache == null ? 0 : cache.generation();
+        final var uncached = new ArrayList<String>(brokerURIs.size());
+        for (final var uri : brokerURIs) {
+            final var cached = cache == null ? Optional.<Response>empty() : cache.get(uri, query, queryLanguage, queryScope, queryTarget);
+            if (cached.isPresent()) {
+                merger.accept(BrokerResult.of(uri, cached.get(), Duration.ZERO));
+            } else {
+                uncached.add(uri);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return CompletableFuture.completedFuture(merger.result(brokerURIs));
+        }
+
+        final var securityToken = tokenProvider.getDAT();
+        final var connectorID = container.getConnector().getId();
+        final var header = BrokerIDSMessageUtils.buildQueryMessage(securityToken, INFO_MODEL_VERSION, connectorID, queryLanguage, queryScope, queryTarget);
+        final var body = BrokerIDSMessageUtils.buildRequestBody(header, query);
+
+        final var fanOut = new FanOut(List.copyOf(uncached), body, deadline, clientProvider.getClient(), result -> {
+            var merged = result;
+            if (cache != null && result.getResponse() != null) {
+                try {
+                    merged = BrokerResult.of(result.getBrokerUri(),
+                            cache.put(result.getBrokerUri(), query, queryLanguage, queryScope, queryTarget, result.getResponse(), cacheGeneration),
+                            result.getDuration());
+                } catch (IOException e) {
+                    merged = BrokerResult.failed(result.getBrokerUri(), e, result.getDuration());
+                }
+            }
+            merger.accept(merged);
+        });
+        fanOut.start(maxParallelRequests);
+        return CompletableFuture.allOf(fanOut.results.toArray(CompletableFuture[]::new))
+                .completeOnTimeout(null, deadline.toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(done -> {
+                    //take the result before cancelling, so the failures of cancelled calls are not merged
+                    final var result = merger.result(brokerURIs);
+                    fanOut.cancel();
+                    if (!result.isComplete() && log.isWarnEnabled()) {
+                        log.warn(String.format("Brokers %s did not answer the query before the deadline!", result.getMissingBrokers()));
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Send the same RequestBody to several brokers concurrently, at most {@link #maxParallelRequests} at a time.
+     * The timeout also covers reading the response bodies.
+     * The returned future completes when every broker answered, failed or timed out, it never completes exceptionally.
+     *
+     * @param brokerUris URIs of the brokers
+     * @param requestBody requestBody that is sent (must be repeatable)
+     * @param timeout timeout of each single broker call
+     * @return future of the results, in the order of the brokerUris
+     */
+    CompletableFuture<List<BrokerResult>> sendToBrokers(final List<String> brokerUris,
+                                                        final RequestBody requestBody,
+                                                        final Duration timeout) {
+        final var fanOut = new FanOut(List.copyOf(brokerUris), requestBody, timeout, clientProvider.getClient(), result -> { });
+        fanOut.start(maxParallelRequests);
+        return CompletableFuture.allOf(fanOut.results.toArray(CompletableFuture[]::new))
+                .thenApply(done -> fanOut.results.stream().map(CompletableFuture::join).collect(Collectors.toList()));
     }
 
     /**
@@ -209,4 +468,178 @@ public class IDSBrokerServiceImpl implements IDSBrokerService {
         return response;
     }
 
+    /**
+     * Check if the given serialization was the last one successfully published at a broker.
+     *
+     * @param brokerURI URI of the broker
+     * @param id id of the resource or connector
+     * @param hash hash of the serialization
+     * @return true if the update can be skipped
+     */
+    private boolean isPublished(final String brokerURI, final URI id, final String hash) {
+        return changeDetection && hash.equals(publishedHashes.getOrDefault(brokerURI, Map.of()).get(id));
+    }
+
+    /**
+     * Remember the hash of a serialization sent to a broker, if the broker accepted it.
+     *
+     * @param brokerURI URI of the broker
+     * @param id id of the resource or connector
+     * @param hash hash of the serialization
+     * @param response successful response of the broker
+     */
+    private void markPublished(final String brokerURI, final URI id, final String hash, final Response response) {
+        invalidateQueries(brokerURI);
+        if (changeDetection && isAccepted(response)) {
+            publishedHashes.computeIfAbsent(brokerURI, broker -> new ConcurrentHashMap<>()).put(id, hash);
+        }
+    }
+
+    /**
+     * Check if the header of a successful broker response is no RejectionMessage (brokers reject messages with
+     * status 200). The body is peeked, so it can still be read by the receiver of the response.
+     *
+     * @param response successful response of the broker
+     * @return true if the header could be read and is no RejectionMessage
+     */
+    private static boolean isAccepted(final Response response) {
+        try {
+            final var header = MultipartStringParser.bytesToMultipart(response.peekBody(MAX_PEEKED_RESPONSE_SIZE).bytes()).get("header");
+            if (header == null) {
+                return false;
+            }
+            return !(MessageDeserializer.deserialize(SERIALIZER, header) instanceof RejectionMessage);
+        } catch (IOException | FileUploadException | RuntimeException e) {
+            if (log.isWarnEnabled()) {
+                log.warn(String.format("Could not read the response header of %s!", response.request().url()));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Invalidate the cached query responses of a broker, after this connector changed its entries at the broker.
+     */
+    private void invalidateQueries(final String brokerURI) {
+        final var cache = queryCache;
+        if (cache != null) {
+            cache.invalidate(brokerURI);
+        }
+    }
+
+    /**
+     * SHA-256 hash of a serialized resource or self-description.
+     */
+    private static String hash(final String serialized) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(serialized.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available!", e);
+        }
+    }
+
+    /**
+     * State of a fan-out: every finished call starts the next pending one, so the number of calls in flight
+     * stays bounded without blocking a thread. The listener receives every result as soon as it arrives.
+     */
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static final class FanOut {
+        List<String> brokerUris;
+        RequestBody requestBody;
+        Duration timeout;
+        OkHttpClient client;
+        Consumer<BrokerResult> listener;
+        List<CompletableFuture<BrokerResult>> results;
+        AtomicInteger next = new AtomicInteger();
+        Queue<Call> calls = new ConcurrentLinkedQueue<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        FanOut(final List<String> brokerUris,
+               final RequestBody requestBody,
+               final Duration timeout,
+               final OkHttpClient client,
+               final Consumer<BrokerResult> listener) {
+            this.brokerUris = brokerUris;
+            this.requestBody = requestBody;
+            this.timeout = timeout;
+            this.client = client;
+            this.listener = listener;
+            this.results = brokerUris.stream().map(uri -> new CompletableFuture<BrokerResult>()).collect(Collectors.toList());
+        }
+
+        void start(final int parallel) {
+            for (var i = 0; i < Math.min(parallel, brokerUris.size()); i++) {
+                sendNext();
+            }
+        }
+
+        /**
+         * Cancel the calls in flight and the pending calls, they complete with a failed result.
+         */
+        void cancel() {
+            if (!cancelled.getAndSet(true)) {
+                calls.forEach(Call::cancel);
+            }
+        }
+
+        private void sendNext() {
+            final var index = next.getAndIncrement();
+            if (index >= brokerUris.size()) {
+                return;
+            }
+            final var uri = brokerUris.get(index);
+            if (cancelled.get()) {
+                complete(index, BrokerResult.failed(uri, new CancellationException("Fan-out was cancelled!"), Duration.ZERO));
+                return;
+            }
+            final var started = System.nanoTime();
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Sending message to %s", uri));
+            }
+
+            final Call call;
+            try {
+                call = client.newCall(new Request.Builder().url(uri).post(requestBody).build());
+            } catch (IllegalArgumentException e) {
+                complete(index, BrokerResult.failed(uri, e, Duration.ZERO));
+                return;
+            }
+            call.timeout().timeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            calls.add(call);
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(@NotNull final Call failedCall, @NotNull final IOException e) {
+                    if (log.isWarnEnabled()) {
+                        log.warn(String.format("Connection to Broker %s failed!", uri));
+                        log.warn(e.getMessage(), e);
+                    }
+                    complete(index, BrokerResult.failed(uri, e, Duration.ofNanos(System.nanoTime() - started)));
+                }
+
+                @Override
+                public void onResponse(@NotNull final Call answeredCall, @NotNull final Response response) {
+                    if (log.isInfoEnabled()) {
+                        log.info(String.format("Received response from %s", uri));
+                    }
+                    if (!response.isSuccessful() && log.isWarnEnabled()) {
+                        log.warn(String.format("Response of the Broker %s wasn't successful!", uri));
+                    }
+                    complete(index, BrokerResult.of(uri, response, Duration.ofNanos(System.nanoTime() - started)));
+                }
+            });
+        }
+
+        private void complete(final int index, final BrokerResult result) {
+            try {
+                listener.accept(result);
+            } catch (RuntimeException e) {
+                if (log.isErrorEnabled()) {
+                    log.error(String.format("Handling the result of %s failed!", result.getBrokerUri()), e);
+                }
+            }
+            results.get(index).complete(result);
+            sendNext();
+        }
+    }
 }
@@ -2,8 +2,10 @@ package de.fraunhofer.isst.ids.framework.communication.http;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.List;
 import java.util.Map;
 
+import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.isst.ids.framework.daps.ClaimsException;
 import okhttp3.RequestBody;
 import org.apache.commons.fileupload.FileUploadException;
@@ -33,4 +35,37 @@ public interface IDSHttpService {
      * @throws ClaimsException if DAT of response is invalid or cannot be parsed
      */
     Map<String, String> sendWithHeadersAndCheckDat(RequestBody body, URI target, Map<String, String> headers) throws IOException, FileUploadException, ClaimsException;
+
+    /**
+     * Send a message given as infomodel object. If the target is served by this connector, the message is dispatched
+     * in-process without serializing the header.
+     *
+     * @param header header of the message
+     * @param payload payload of the message
+     * @param target targetURI of the request
+     * @return Multipart Map with header and payload part of response
+     * @throws IOException if request cannot be sent
+     * @throws FileUploadException if response cannot be parsed to multipart map
+     * @throws ClaimsException if DAT of response is invalid or cannot be parsed
+     */
+    default Map<String, String> sendMessageAndCheckDat(final Message header, final String payload, final URI target)
+            throws IOException, FileUploadException, ClaimsException {
+        return sendAndCheckDat(InfomodelMessageBuilder.messageWithString(header, payload), target);
+    }
+
+    /**
+     * Send several messages in one batch request to the batch route of the target connector.
+     * The messages are handled in parallel by the target, the responses are returned in the order of the messages.
+     *
+     * @param headers the headers of the messages
+     * @param payloads the (String) payloads of the messages, same size as headers (entries may be null)
+     * @param target targetURI of the batch route
+     * @return Multipart Maps with header and payload part of every response, in the order of the messages
+     * @throws IOException if request cannot be sent, the batch was rejected (e.g. status 413 if it contains too many
+     *                     messages) or the number of responses does not match
+     * @throws FileUploadException if response cannot be parsed to multipart map
+     * @throws ClaimsException if the DAT of one of the responses is invalid or cannot be parsed
+     */
+    List<Map<String, String>> sendBatch(List<? extends Message> headers, List<String> payloads, URI target)
+            throws IOException, FileUploadException, ClaimsException;
 }
@@ -1,43 +1,174 @@
 package de.fraunhofer.isst.ids.framework.communication.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import de.fraunhofer.iais.eis.ConnectorDeployMode;
+import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
 import de.fraunhofer.isst.ids.framework.daps.ClaimsException;
 import de.fraunhofer.isst.ids.framework.daps.DapsValidator;
+import de.fraunhofer.isst.ids.framework.util.HeaderEncoding;
 import de.fraunhofer.isst.ids.framework.util.MultipartStringParser;
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
 import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.Buffer;
 import org.apache.commons.fileupload.FileUploadException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 /**
  * Implementation Class of IDSHttpService.
+ * If enabled with {@link #setHeaderEncodingNegotiation(boolean)}, requests advertise the supported
+ * {@link HeaderEncoding}s, once a peer answered with its own supported encodings, headers of messages built by this
+ * service are sent to it in the negotiated encoding. The encodings of at most {@link #MAX_PEERS} peers are remembered.
+ * In the same way requests advertise the supported {@link PayloadEncoding}s if enabled with
+ * {@link #setPayloadCompression(boolean)}, payloads of messages built by this service are compressed for peers which
+ * advertised gzip support.
  */
 @Slf4j
 @Service
-@AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class IDSHttpServiceImpl implements IDSHttpService {
 
+    static final Pattern PART_NAME = Pattern.compile("name=\"([^\"]*)\"");
+    static final int MAX_PEERS = 1024;
+
     HttpService httpService;
     DapsValidator dapsValidator;
     ConfigurationContainer configurationContainer;
+    LoopbackDispatcher loopbackDispatcher;
+    volatile boolean headerEncodingNegotiation = false;
+    volatile List<HeaderEncoding> headerEncodings = List.of(HeaderEncoding.CBOR, HeaderEncoding.JSON_LD);
+    volatile boolean payloadCompression = false;
+
+    // least recently used peers are evicted, peers without an entry use JSON-LD
+    final Map<String, HeaderEncoding> peerEncodings = Collections.synchronizedMap(new LinkedHashMap<String, HeaderEncoding>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, HeaderEncoding> eldest) {
+            return size() > MAX_PEERS;
+        }
+    });
+    final Set<String> compressingPeers = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_PEERS;
+        }
+    }));
+
+    /**
+     * Create an IDSHttpService.
+     *
+     * @param httpService the HttpService used for sending requests
+     * @param dapsValidator validator for the DATs of responses
+     * @param configurationContainer the connector configuration
+     */
+    @Autowired
+    public IDSHttpServiceImpl(final HttpService httpService,
+                              final DapsValidator dapsValidator,
+                              final ConfigurationContainer configurationContainer) {
+        this.httpService = httpService;
+        this.dapsValidator = dapsValidator;
+        this.configurationContainer = configurationContainer;
+    }
+
+    /**
+     * Set the dispatcher used for messages addressed to this connector, messages for local targets
+     * are not sent over http if a dispatcher is set.
+     *
+     * @param loopbackDispatcher the dispatcher for local targets (null to always use http)
+     */
+    @Autowired(required = false)
+    public void setLoopbackDispatcher(final LoopbackDispatcher loopbackDispatcher) {
+        this.loopbackDispatcher = loopbackDispatcher;
+    }
+
+    /**
+     * Enable or disable the negotiation of binary header encodings, if disabled headers are always sent as JSON-LD.
+     * Binary encodings only reduce the size of the header part, consider enabling it for constrained links.
+     *
+     * @param headerEncodingNegotiation true if header encodings should be negotiated with peers (default false)
+     */
+    public void setHeaderEncodingNegotiation(final boolean headerEncodingNegotiation) {
+        this.headerEncodingNegotiation = headerEncodingNegotiation;
+        if (!headerEncodingNegotiation) {
+            peerEncodings.clear();
+        }
+    }
+
+    /**
+     * Set the header encodings used for peers in order of preference, e.g. put {@link HeaderEncoding#DEFLATE} first
+     * for constrained links. JSON-LD is always used as fallback.
+     *
+     * @param headerEncodings the encodings in order of preference
+     */
+    public void setHeaderEncodings(final List<HeaderEncoding> headerEncodings) {
+        final var encodings = new ArrayList<>(headerEncodings);
+        if (!encodings.contains(HeaderEncoding.JSON_LD)) {
+            encodings.add(HeaderEncoding.JSON_LD);
+        }
+        this.headerEncodings = List.copyOf(encodings);
+        peerEncodings.clear();
+    }
+
+    /**
+     * Get the header encoding negotiated with the connector at the given target.
+     *
+     * @param target target URI of a request
+     * @return the negotiated encoding, JSON_LD if nothing was negotiated yet
+     */
+    public HeaderEncoding getHeaderEncoding(final URI target) {
+        return peerEncodings.getOrDefault(peerKey(target), HeaderEncoding.JSON_LD);
+    }
+
+    /**
+     * Enable or disable the compression of payloads, if disabled compressed payloads are neither sent nor requested.
+     *
+     * @param payloadCompression true if payload compression should be negotiated with peers (default false)
+     */
+    public void setPayloadCompression(final boolean payloadCompression) {
+        this.payloadCompression = payloadCompression;
+        if (!payloadCompression) {
+            compressingPeers.clear();
+        }
+    }
+
+    /**
+     * Get the payload compression negotiated with the connector at the given target.
+     *
+     * @param target target URI of a request
+     * @return GZIP if the peer advertised gzip support, IDENTITY otherwise
+     */
+    public PayloadEncoding getPayloadEncoding(final URI target) {
+        return compressingPeers.contains(peerKey(target)) ? PayloadEncoding.GZIP : PayloadEncoding.IDENTITY;
+    }
 
     /** {@inheritDoc} */
     @Override
     public Map<String, String> sendAndCheckDat(final RequestBody body, final URI target)
             throws IOException, FileUploadException, ClaimsException {
+        if (isLoopback(body, target)) {
+            return dispatchLocally((MultipartBody) body);
+        }
         Response response;
         try {
-            response = httpService.send(body, target);
+            response = send(body, target, Map.of());
         } catch (IOException e) {
             if (log.isWarnEnabled()) {
                 log.warn("Message could not be sent!");
@@ -52,9 +183,13 @@ public class IDSHttpServiceImpl implements IDSHttpService {
     public Map<String, String> sendWithHeadersAndCheckDat(final RequestBody body,
                                                           final URI target,
                                                           final Map<String, String> headers) throws IOException, FileUploadException, ClaimsException {
+        //http headers (e.g. IDS-Payload-Range) are only evaluated by the IDSController, so such messages use http
+        if ((headers == null || headers.isEmpty()) && isLoopback(body, target)) {
+            return dispatchLocally((MultipartBody) body);
+        }
         Response response;
         try {
-            response = httpService.sendWithHeaders(body, target, headers);
+            response = send(body, target, headers);
         } catch (IOException e) {
             if (log.isWarnEnabled()) {
                 log.warn("Message could not be sent!");
@@ -64,6 +199,196 @@ public class IDSHttpServiceImpl implements IDSHttpService {
         return checkDatFromResponse(response);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, String> sendMessageAndCheckDat(final Message header, final String payload, final URI target)
+            throws IOException, FileUploadException, ClaimsException {
+        final var dispatcher = loopbackDispatcher;
+        if (dispatcher != null && dispatcher.isLocalTarget(target)) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Dispatching message for %s in-process", target));
+            }
+            final var payloadStream = payload == null ? null : new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+            return dispatcher.dispatch(header, payloadStream);
+        }
+        return sendAndCheckDat(InfomodelMessageBuilder.messageWithString(header, payload, getHeaderEncoding(target), getPayloadEncoding(target)), target);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Map<String, String>> sendBatch(final List<? extends Message> headers,
+                                               final List<String> payloads,
+                                               final URI target) throws IOException, FileUploadException, ClaimsException {
+        final var body = InfomodelMessageBuilder.batchMessage(headers, payloads, getHeaderEncoding(target));
+        Response response;
+        try {
+            response = send(body, target, Map.of());
+        } catch (IOException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("Batch could not be sent!");
+            }
+            throw e;
+        }
+
+        final Map<String, String> parts;
+        try (var responseBody = response.body()) {
+            if (!response.isSuccessful()) {
+                if (log.isWarnEnabled()) {
+                    log.warn(String.format("Batch was rejected with status %d!", response.code()));
+                }
+                throw new IOException(String.format("Batch was rejected with status %d!", response.code()));
+            }
+            parts = MultipartStringParser.bytesToMultipart(responseBody.bytes());
+        } catch (FileUploadException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("Could not parse incoming batch response to multipart map!");
+            }
+            throw e;
+        }
+
+        //if connector is set to test deployment: ignore DAT Tokens
+        final var ignoreDAT = configurationContainer.getConfigModel().getConnectorDeployMode() == ConnectorDeployMode.TEST_DEPLOYMENT;
+        final var responses = new ArrayList<Map<String, String>>(headers.size());
+        for (var i = 0; i < headers.size(); i++) {
+            final var header = parts.get(InfomodelMessageBuilder.batchHeaderPart(i));
+            if (header == null) {
+                throw new IOException(String.format("Batch response contains no response for message %d!", i));
+            }
+
+            final var responseMap = new HashMap<String, String>();
+            responseMap.put("header", header);
+            final var payload = parts.get(InfomodelMessageBuilder.batchPayloadPart(i));
+            if (payload != null) {
+                responseMap.put("payload", payload);
+            }
+
+            if (!ignoreDAT && !dapsValidator.checkDat(responseMap)) {
+                if (log.isWarnEnabled()) {
+                    log.warn("DAT of incoming batch response is not valid!");
+                }
+                throw new ClaimsException("DAT of incoming batch response is not valid!");
+            }
+            responses.add(responseMap);
+        }
+        return responses;
+    }
+
+    /**
+     * Send a request with the given http headers, advertising the supported header encodings and payload codings
+     * if negotiation is enabled and remembering the encodings supported by the peer.
+     *
+     * @param body requestBody to be sent
+     * @param target targetURI of the request
+     * @param headers additional http headers
+     * @return the response of the peer
+     * @throws IOException if the request cannot be sent
+     */
+    private Response send(final RequestBody body, final URI target, final Map<String, String> headers) throws IOException {
+        final var negotiateHeader = headerEncodingNegotiation;
+        final var negotiatePayload = payloadCompression;
+        if (!negotiateHeader && !negotiatePayload) {
+            return headers.isEmpty() ? httpService.send(body, target) : httpService.sendWithHeaders(body, target, headers);
+        }
+
+        final var withAccept = new HashMap<>(headers);
+        final var encodings = headerEncodings;
+        if (negotiateHeader) {
+            withAccept.put(HeaderEncoding.ACCEPT_HEADER, HeaderEncoding.toAcceptHeader(encodings));
+        }
+        if (negotiatePayload) {
+            withAccept.put(PayloadEncoding.ACCEPT_HEADER, PayloadEncoding.supportedCodings());
+        }
+        final var response = httpService.sendWithHeaders(body, target, withAccept);
+
+        if (negotiatePayload) {
+            if (PayloadEncoding.isAccepted(response.header(PayloadEncoding.ACCEPT_HEADER), PayloadEncoding.GZIP)) {
+                compressingPeers.add(peerKey(target));
+            } else {
+                compressingPeers.remove(peerKey(target));
+            }
+        }
+        if (!negotiateHeader) {
+            return response;
+        }
+
+        final var accepted = response.header(HeaderEncoding.ACCEPT_HEADER);
+        final var encoding = accepted == null ? HeaderEncoding.JSON_LD : HeaderEncoding.negotiate(accepted, encodings);
+        if (log.isDebugEnabled() && encoding != getHeaderEncoding(target)) {
+            log.debug(String.format("Using %s header encoding for %s", encoding, peerKey(target)));
+        }
+        if (encoding == HeaderEncoding.JSON_LD) {
+            peerEncodings.remove(peerKey(target));
+        } else {
+            peerEncodings.put(peerKey(target), encoding);
+        }
+        return response;
+    }
+
+    /**
+     * Key identifying a peer connector.
+     *
+     * @param target target URI of a request
+     * @return scheme and authority of the target
+     */
+    private static String peerKey(final URI target) {
+        return target.getScheme() + "://" + target.getRawAuthority();
+    }
+
+    /**
+     * Check if a request can be dispatched in-process.
+     *
+     * @param body requestBody to be sent
+     * @param target targetURI of the request
+     * @return true if a LoopbackDispatcher is set, the target is local and the body is a multipart body
+     */
+    private boolean isLoopback(final RequestBody body, final URI target) {
+        final var dispatcher = loopbackDispatcher;
+        return dispatcher != null && body instanceof MultipartBody && dispatcher.isLocalTarget(target);
+    }
+
+    /**
+     * Hand the parts of a multipart request to the LoopbackDispatcher. The response is produced by this
+     * connector itself, so its DAT is not checked.
+     *
+     * @param body multipart requestBody with header and payload part
+     * @return Multipart Map with header and payload part of response
+     * @throws IOException if the parts cannot be read or the header cannot be parsed
+     */
+    private Map<String, String> dispatchLocally(final MultipartBody body) throws IOException {
+        if (log.isDebugEnabled()) {
+            log.debug("Dispatching message for local target in-process");
+        }
+
+        String header = null;
+        InputStream payload = null;
+        for (final var part : body.parts()) {
+            final var disposition = part.headers() == null ? null : part.headers().get("Content-Disposition");
+            if (disposition == null) {
+                continue;
+            }
+            final var matcher = PART_NAME.matcher(disposition);
+            if (!matcher.find()) {
+                continue;
+            }
+
+            final var buffer = new Buffer();
+            part.body().writeTo(buffer);
+            if ("header".equals(matcher.group(1))) {
+                final var contentType = part.body().contentType();
+                header = HeaderEncoding.fromContentType(contentType == null ? null : contentType.toString())
+                        .decode(buffer.readByteArray());
+            } else if ("payload".equals(matcher.group(1))) {
+                payload = PayloadEncoding.fromContentEncoding(part.headers().get(PayloadEncoding.CONTENT_ENCODING))
+                        .decompress(buffer.inputStream());
+            }
+        }
+
+        if (header == null) {
+            throw new IOException("Multipart request has no header part!");
+        }
+        return loopbackDispatcher.dispatch(header, payload);
+    }
+
     /**
      * @param response {@link Response} from an IDS Http request
      * @return Multipart Map with header and payload part of response
@@ -75,22 +400,34 @@ public class IDSHttpServiceImpl implements IDSHttpService {
             throws IOException, ClaimsException, FileUploadException {
         //if connector is set to test deployment: ignore DAT Tokens
         final var ignoreDAT = configurationContainer.getConfigModel().getConnectorDeployMode() == ConnectorDeployMode.TEST_DEPLOYMENT;
-        final var responseString = response.body().string();
-        final var valid = ignoreDAT || dapsValidator.checkDat(responseString);
-
-        if(!valid){
-            if (log.isWarnEnabled()) {
-                log.warn("DAT of incoming response is not valid!");
-            }
-            throw new ClaimsException("DAT of incoming response is not valid!");
+        final byte[] responseBytes;
+        try (var responseBody = response.body()) {
+            responseBytes = responseBody.bytes();
         }
+
+        final Map<String, String> responseMap;
         try {
-            return MultipartStringParser.stringToMultipart(responseString);
+            responseMap = MultipartStringParser.bytesToMultipart(responseBytes);
         } catch (FileUploadException e) {
+            if (!ignoreDAT) {
+                if (log.isWarnEnabled()) {
+                    log.warn("DAT of incoming response is not valid!");
+                }
+                throw new ClaimsException("DAT of incoming response is not valid!");
+            }
             if (log.isWarnEnabled()) {
                 log.warn("Could not parse incoming response to multipart map!");
             }
             throw e;
         }
+
+        final var valid = ignoreDAT || dapsValidator.checkDat(responseMap);
+        if(!valid){
+            if (log.isWarnEnabled()) {
+                log.warn("DAT of incoming response is not valid!");
+            }
+            throw new ClaimsException("DAT of incoming response is not valid!");
+        }
+        return responseMap;
     }
 }
@@ -2,36 +2,51 @@ package de.fraunhofer.isst.ids.framework.communication.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.configuration.SerializerProvider;
+import de.fraunhofer.isst.ids.framework.util.HeaderEncoding;
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
+import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
 
 /**
  * This Builder is a utility class for building OkHTTP
  * Multipart RequestBodies with RequestMessage header and String or File payload Part.
+ * The header is serialized as JSON-LD, unless another {@link HeaderEncoding} (negotiated with the receiver) is given.
+ * Payloads are only compressed if a {@link PayloadEncoding} accepted by the receiver is given, and only if they are larger
+ * than {@link PayloadEncoding#COMPRESSION_THRESHOLD} (files additionally need a compressible media type).
  */
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class InfomodelMessageBuilder {
 
     MultipartBody.Builder builder;
 
-    static final Serializer SERIALIZER = new Serializer();
+    static final Serializer SERIALIZER = SerializerProvider.getSharedSerializer();
 
     /**
      * Internal builder used by the static methods.
      *
      * @param header the header Part of the MultipartMessage (an implementation of {@link Message})
+     * @param encoding the encoding of the header part
      * @throws IOException if the given header cannot be serialized by the given serializer
      */
-    private InfomodelMessageBuilder(final Message header) throws IOException {
+    private InfomodelMessageBuilder(final Message header, final HeaderEncoding encoding) throws IOException {
         this.builder = new MultipartBody.Builder();
         builder.setType(MultipartBody.FORM);
-        builder.addFormDataPart("header", SERIALIZER.serialize(header));
+        addHeader(builder, "header", header, encoding);
     }
 
 
@@ -47,8 +62,50 @@ public class InfomodelMessageBuilder {
     public static MultipartBody messageWithFile(final Message header,
                                                 final File payload,
                                                 final MediaType fileType) throws IOException {
-        final var imb = new InfomodelMessageBuilder(header);
-        imb.addPayload(payload, fileType);
+        return messageWithFile(header, payload, fileType, HeaderEncoding.JSON_LD);
+    }
+
+    /**
+     * Build a MultipartMessage with {@link Message} header in the given encoding and {@link File} payload.
+     *
+     * @param header the header Part of the MultipartMessage (an implementation of {@link Message})
+     * @param payload  the File that is added to the MultipartMessages payload
+     * @param fileType the MediaType of the file
+     * @param encoding the encoding of the header part
+     * @return the built Message as OkHttp MultipartBody
+     * @throws IOException if the given header cannot be serialized or encoded
+     */
+    public static MultipartBody messageWithFile(final Message header,
+                                                final File payload,
+                                                final MediaType fileType,
+                                                final HeaderEncoding encoding) throws IOException {
+        return messageWithFile(header, payload, fileType, encoding, PayloadEncoding.IDENTITY);
+    }
+
+    /**
+     * Build a MultipartMessage with {@link Message} header in the given encoding and {@link File} payload,
+     * compressed while it is sent if it is large enough and of a compressible media type.
+     *
+     * @param header the header Part of the MultipartMessage (an implementation of {@link Message})
+     * @param payload  the File that is added to the MultipartMessages payload
+     * @param fileType the MediaType of the file
+     * @param encoding the encoding of the header part
+     * @param payloadEncoding the compression accepted by the receiver (IDENTITY for none)
+     * @return the built Message as OkHttp MultipartBody
+     * @throws IOException if the given header cannot be serialized or encoded
+     */
+    public static MultipartBody messageWithFile(final Message header,
+                                                final File payload,
+                                                final MediaType fileType,
+                                                final HeaderEncoding encoding,
+                                                final PayloadEncoding payloadEncoding) throws IOException {
+        final var imb = new InfomodelMessageBuilder(header, encoding);
+        if (payloadEncoding == PayloadEncoding.GZIP && payload.length() >= PayloadEncoding.COMPRESSION_THRESHOLD
+                && fileType != null && PayloadEncoding.isCompressible(fileType.toString())) {
+            imb.addCompressedPayload(payload, fileType);
+        } else {
+            imb.addPayload(payload, fileType);
+        }
         return imb.getRequestBody();
     }
 
@@ -62,11 +119,130 @@ public class InfomodelMessageBuilder {
      */
     public static MultipartBody messageWithString(final Message header,
                                                   final String payload) throws IOException {
-        final var imb = new InfomodelMessageBuilder(header);
-        imb.addPayload(payload);
+        return messageWithString(header, payload, HeaderEncoding.JSON_LD);
+    }
+
+    /**
+     * Build a MultipartMessage with {@link Message} header in the given encoding and String payload.
+     *
+     * @param header the header Part of the MultipartMessage (an implementation of {@link Message})
+     * @param payload  the (String) payload that is added to the MultipartMessages Payload
+     * @param encoding the encoding of the header part
+     * @return the built Message as OkHttp MultipartBody
+     * @throws IOException if the given header cannot be serialized or encoded
+     */
+    public static MultipartBody messageWithString(final Message header,
+                                                  final String payload,
+                                                  final HeaderEncoding encoding) throws IOException {
+        return messageWithString(header, payload, encoding, PayloadEncoding.IDENTITY);
+    }
+
+    /**
+     * Build a MultipartMessage with {@link Message} header in the given encoding and String payload,
+     * compressed if it is large enough.
+     *
+     * @param header the header Part of the MultipartMessage (an implementation of {@link Message})
+     * @param payload  the (String) payload that is added to the MultipartMessages Payload
+     * @param encoding the encoding of the header part
+     * @param payloadEncoding the compression accepted by the receiver (IDENTITY for none)
+     * @return the built Message as OkHttp MultipartBody
+     * @throws IOException if the given header cannot be serialized or encoded, or the payload cannot be compressed
+     */
+    public static MultipartBody messageWithString(final Message header,
+                                                  final String payload,
+                                                  final HeaderEncoding encoding,
+                                                  final PayloadEncoding payloadEncoding) throws IOException {
+        final var imb = new InfomodelMessageBuilder(header, encoding);
+        final var bytes = payload == null ? null : payload.getBytes(StandardCharsets.UTF_8);
+        if (payloadEncoding != PayloadEncoding.IDENTITY && bytes != null && bytes.length >= PayloadEncoding.COMPRESSION_THRESHOLD) {
+            imb.addCompressedPayload(bytes, payloadEncoding);
+        } else {
+            imb.addPayload(payload);
+        }
         return imb.getRequestBody();
     }
 
+    /**
+     * Build a batch MultipartMessage containing several messages, the parts of the i-th message are named
+     * <code>header-i</code> and <code>payload-i</code>.
+     *
+     * @param headers the headers of the messages
+     * @param payloads the (String) payloads of the messages, same size as headers (entries may be null)
+     * @return the built batch as OkHttp MultipartBody
+     * @throws IOException if one of the headers cannot be serialized
+     */
+    public static MultipartBody batchMessage(final List<? extends Message> headers,
+                                             final List<String> payloads) throws IOException {
+        return batchMessage(headers, payloads, HeaderEncoding.JSON_LD);
+    }
+
+    /**
+     * Build a batch MultipartMessage containing several messages, with headers in the given encoding.
+     *
+     * @param headers the headers of the messages
+     * @param payloads the (String) payloads of the messages, same size as headers (entries may be null)
+     * @param encoding the encoding of the header parts
+     * @return the built batch as OkHttp MultipartBody
+     * @throws IOException if one of the headers cannot be serialized or encoded
+     */
+    public static MultipartBody batchMessage(final List<? extends Message> headers,
+                                             final List<String> payloads,
+                                             final HeaderEncoding encoding) throws IOException {
+        if (headers.isEmpty() || headers.size() != payloads.size()) {
+            throw new IllegalArgumentException("A batch needs the same (non zero) number of headers and payloads!");
+        }
+
+        final var batchBuilder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        for (var i = 0; i < headers.size(); i++) {
+            addHeader(batchBuilder, batchHeaderPart(i), headers.get(i), encoding);
+            if (payloads.get(i) != null) {
+                batchBuilder.addFormDataPart(batchPayloadPart(i), payloads.get(i));
+            }
+        }
+        return batchBuilder.build();
+    }
+
+    /**
+     * Name of the header part of the i-th message of a batch.
+     *
+     * @param index index of the message inside the batch
+     * @return the part name
+     */
+    public static String batchHeaderPart(final int index) {
+        return "header-" + index;
+    }
+
+    /**
+     * Name of the payload part of the i-th message of a batch.
+     *
+     * @param index index of the message inside the batch
+     * @return the part name
+     */
+    public static String batchPayloadPart(final int index) {
+        return "payload-" + index;
+    }
+
+    /**
+     * Add a header part in the given encoding, binary encodings are added with their media type as content type.
+     *
+     * @param multipartBuilder the builder to add the part to
+     * @param name name of the part
+     * @param header the header message
+     * @param encoding the encoding of the header part
+     * @throws IOException if the header cannot be serialized or encoded
+     */
+    private static void addHeader(final MultipartBody.Builder multipartBuilder,
+                                  final String name,
+                                  final Message header,
+                                  final HeaderEncoding encoding) throws IOException {
+        final var jsonLd = SERIALIZER.serialize(header);
+        if (encoding.isBinary()) {
+            multipartBuilder.addFormDataPart(name, null, RequestBody.create(encoding.encode(jsonLd), MediaType.get(encoding.getMediaType())));
+        } else {
+            multipartBuilder.addFormDataPart(name, jsonLd);
+        }
+    }
+
     /**
      * Add a String payload to the builder.
      *
@@ -86,6 +262,52 @@ public class InfomodelMessageBuilder {
         builder.addFormDataPart("payload", file.getName(), RequestBody.create(file, fileType));
     }
 
+    /**
+     * Add a String payload (as UTF-8 bytes) compressed with the given coding.
+     *
+     * @param payload the UTF-8 bytes of the payload
+     * @param payloadEncoding the coding used for compression
+     * @throws IOException if the payload cannot be compressed
+     */
+    private void addCompressedPayload(final byte[] payload, final PayloadEncoding payloadEncoding) throws IOException {
+        builder.addPart(payloadHeaders("form-data; name=\"payload\"", payloadEncoding),
+                RequestBody.create(payloadEncoding.compress(payload), MediaType.get("text/plain; charset=utf-8")));
+    }
+
+    /**
+     * Add a File payload which is gzip compressed while the request is written.
+     *
+     * @param file the File that is added to the MultipartMessages payload
+     * @param fileType the MediaType of the file
+     */
+    private void addCompressedPayload(final File file, final MediaType fileType) {
+        final var body = new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return fileType;
+            }
+
+            @Override
+            public void writeTo(final BufferedSink sink) throws IOException {
+                // the sink is shared by all parts, closing the gzip stream (which ends its Deflater) must not close it
+                final var unclosable = new ForwardingSink(sink) {
+                    @Override
+                    public void close() {
+                        // buffered bytes were already written to the sink
+                    }
+                };
+                try (var gzip = new GZIPOutputStream(Okio.buffer(unclosable).outputStream())) {
+                    Files.copy(file.toPath(), gzip);
+                }
+            }
+        };
+        builder.addPart(payloadHeaders(String.format("form-data; name=\"payload\"; filename=\"%s\"", file.getName()), PayloadEncoding.GZIP), body);
+    }
+
+    private static Headers payloadHeaders(final String disposition, final PayloadEncoding payloadEncoding) {
+        return Headers.of("Content-Disposition", disposition, PayloadEncoding.CONTENT_ENCODING, payloadEncoding.getCoding());
+    }
+
     /**
      * Getter for the built multipart message as OkHttp {@link MultipartBody}.
      *
@@ -0,0 +1,43 @@
+package de.fraunhofer.isst.ids.framework.communication.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Map;
+
+import de.fraunhofer.iais.eis.Message;
+
+/**
+ * Dispatcher for messages addressed to the connector itself. If a LoopbackDispatcher bean is available, the
+ * {@link IDSHttpService} hands messages for local targets directly to it instead of sending them over http.
+ */
+public interface LoopbackDispatcher {
+
+    /**
+     * Check if the target is served by this connector.
+     *
+     * @param target targetURI of a request
+     * @return true if the message can be dispatched in-process
+     */
+    boolean isLocalTarget(URI target);
+
+    /**
+     * Dispatch a message in-process.
+     *
+     * @param header header of the message
+     * @param payload payload of the message (may be null)
+     * @return Multipart Map with header and payload part of the response
+     * @throws IOException if the response cannot be serialized
+     */
+    Map<String, String> dispatch(Message header, InputStream payload) throws IOException;
+
+    /**
+     * Dispatch a message with serialized header in-process.
+     *
+     * @param header JSON-LD header of the message
+     * @param payload payload of the message (may be null)
+     * @return Multipart Map with header and payload part of the response
+     * @throws IOException if the header cannot be parsed or the response cannot be serialized
+     */
+    Map<String, String> dispatch(String header, InputStream payload) throws IOException;
+}
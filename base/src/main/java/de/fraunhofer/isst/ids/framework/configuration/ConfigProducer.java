@@ -11,6 +11,7 @@ import de.fraunhofer.iais.eis.ConfigurationModel;
 import de.fraunhofer.iais.eis.Connector;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
 import de.fraunhofer.isst.ids.framework.util.ClientProvider;
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
@@ -33,7 +34,7 @@ import org.springframework.core.io.ClassPathResource;
 @ConditionalOnClass({ConfigurationModel.class, Connector.class, KeyStoreManager.class})
 public class ConfigProducer {
 
-    static final Serializer SERIALIZER = new Serializer();
+    static final Serializer SERIALIZER = SerializerProvider.getSharedSerializer();
 
     ConfigurationContainer configurationContainer;
     ClientProvider clientProvider;
@@ -44,6 +45,7 @@ public class ConfigProducer {
      * @param properties the {@link ConfigProperties} parsed from an application.properties file
      */
     public ConfigProducer(final ConfigProperties properties) {
+        PayloadEncoding.setMaxDecompressedSize(properties.getMaxDecompressedPayloadSize());
         try {
             if (log.isDebugEnabled()) {
                 log.debug(String.format("Loading configuration from %s", properties.getPath()));
@@ -1,5 +1,6 @@
 package de.fraunhofer.isst.ids.framework.configuration;
 
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.experimental.FieldDefaults;
@@ -30,4 +31,8 @@ public class ConfigProperties {
      * Password for the IDSTruststore configured in the {@link de.fraunhofer.iais.eis.ConfigurationModel} trustStore field.
      */
     String trustStorePassword;
+    /**
+     * Maximum size of a decompressed payload part in bytes, see {@link PayloadEncoding#setMaxDecompressedSize(long)}.
+     */
+    long maxDecompressedPayloadSize = PayloadEncoding.DEFAULT_MAX_DECOMPRESSED_SIZE;
 }
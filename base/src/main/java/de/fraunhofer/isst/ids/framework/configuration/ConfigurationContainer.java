@@ -1,12 +1,19 @@
 package de.fraunhofer.isst.ids.framework.configuration;
 
+import java.io.IOException;
 import java.security.KeyManagementException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import de.fraunhofer.iais.eis.ConfigurationModel;
 import de.fraunhofer.iais.eis.Connector;
 import de.fraunhofer.isst.ids.framework.util.ClientProvider;
+import de.fraunhofer.isst.ids.framework.util.IDSUtils;
 import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 
@@ -21,6 +28,8 @@ public class ConfigurationContainer {
     ConfigurationModel configurationModel;
     KeyStoreManager keyStoreManager;
     ClientProvider clientProvider;
+    List<ConfigurationUpdateListener> updateListeners = new CopyOnWriteArrayList<>();
+    volatile SerializedSelfDescription selfDescription;
 
     /**
      * Create a ConfigurationContainer with a ConfigurationModel and KeyStoreManager.
@@ -42,6 +51,24 @@ public class ConfigurationContainer {
         this.clientProvider = provider;
     }
 
+    /**
+     * Register a listener which is notified after every successful configuration update.
+     *
+     * @param listener the listener to add
+     */
+    public void addUpdateListener(final ConfigurationUpdateListener listener) {
+        this.updateListeners.add(listener);
+    }
+
+    /**
+     * Remove a previously registered update listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeUpdateListener(final ConfigurationUpdateListener listener) {
+        this.updateListeners.remove(listener);
+    }
+
     /**
      * Getter for the {@link ConfigurationModel}.
      *
@@ -60,6 +87,39 @@ public class ConfigurationContainer {
         return this.configurationModel.getConnectorDescription();
     }
 
+    /**
+     * Get the self-description of the connector as JSON-LD. The serialized self-description is cached together with
+     * the {@link Connector} instance and its hashCode, it is serialized again if the configuration was updated, the
+     * Connector was modified in place (e.g. resources added to its catalog) or {@link #invalidateSelfDescription()}
+     * was called.
+     *
+     * @return the serialized ConnectorDescription of the managed ConfigurationModel
+     * @throws IOException when the connector cannot be serialized
+     */
+    public String getSerializedSelfDescription() throws IOException {
+        return serializedSelfDescription().getJson();
+    }
+
+    /**
+     * Get a hash of the serialized self-description (Base64 encoded SHA-256), e.g. for use as ETag.
+     *
+     * @return hash of the current self-description
+     * @throws IOException when the connector cannot be serialized
+     */
+    public String getSelfDescriptionHash() throws IOException {
+        return serializedSelfDescription().getHash();
+    }
+
+    /**
+     * Discard the cached serialized self-description and notify the update listeners. Should be called if the
+     * {@link Connector} was modified without {@link #updateConfiguration(ConfigurationModel)}, e.g. after adding
+     * resources to its catalog, so cached responses based on the self-description are invalidated as well.
+     */
+    public void invalidateSelfDescription() {
+        clearSelfDescription();
+        notifyUpdateListeners(configurationModel);
+    }
+
     /**
      * Getter for the {@link KeyStoreManager}.
      *
@@ -90,10 +150,12 @@ public class ConfigurationContainer {
 
             this.configurationModel = configurationModel;
             this.keyStoreManager = manager;
+            clearSelfDescription();
             if (clientProvider != null) {
                 clientProvider.updateConfig();
                 log.debug("ClientProvider updated!");
             }
+            notifyUpdateListeners(configurationModel);
         } catch (KeyStoreManagerInitializationException e) {
             if (log.isErrorEnabled()) {
                 log.error("Configuration could not be updated! Keeping old configuration!");
@@ -108,6 +170,63 @@ public class ConfigurationContainer {
         }
     }
 
+    /**
+     * Get the cached serialized self-description, serialize it if it is not cached or the Connector changed since
+     * it was serialized (other instance or other hashCode, the infomodel hashCode covers all fields of the Connector).
+     *
+     * @return serialized self-description and its hash
+     * @throws IOException when the connector cannot be serialized
+     */
+    private SerializedSelfDescription serializedSelfDescription() throws IOException {
+        final var connector = getConnector();
+        final var connectorHash = connector.hashCode();
+        var current = selfDescription;
+        if (current == null || !current.isSerializationOf(connector, connectorHash)) {
+            synchronized (this) {
+                current = selfDescription;
+                if (current == null || !current.isSerializationOf(connector, connectorHash)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Serializing the self-description");
+                    }
+                    final var json = IDSUtils.buildSelfDeclaration(connector);
+                    try {
+                        current = new SerializedSelfDescription(connector, connectorHash, json,
+                                IDSUtils.hash(MessageDigest.getInstance("SHA-256"), json));
+                    } catch (NoSuchAlgorithmException e) {
+                        throw new IOException("SHA-256 is not available!", e);
+                    }
+                    selfDescription = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Discard the cached serialized self-description.
+     */
+    private synchronized void clearSelfDescription() {
+        this.selfDescription = null;
+    }
+
+    /**
+     * Notify all registered listeners about an updated configuration, a failing listener does not affect the others.
+     *
+     * @param configurationModel the new configuration
+     */
+    private void notifyUpdateListeners(final ConfigurationModel configurationModel) {
+        for (final var listener : updateListeners) {
+            try {
+                listener.configurationUpdated(configurationModel);
+            } catch (RuntimeException e) {
+                if (log.isWarnEnabled()) {
+                    log.warn("ConfigurationUpdateListener failed!");
+                    log.warn(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
     /**
      * Rebuild the {@link KeyStoreManager} with a given configuration.
      *
@@ -125,4 +244,28 @@ public class ConfigurationContainer {
         final var alias = keyStoreManager.getKeyAlias();
         return new KeyStoreManager(configurationModel, keyPw, trustPw, alias);
     }
+
+    /**
+     * A serialized self-description together with its hash and the serialized Connector.
+     */
+    @Getter
+    @AllArgsConstructor
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class SerializedSelfDescription {
+        Connector connector;
+        int connectorHash;
+        String json;
+        String hash;
+
+        /**
+         * Check if this is the serialization of the given Connector in its current state.
+         *
+         * @param current the current Connector
+         * @param currentHash the current hashCode of the Connector
+         * @return true if the Connector was not replaced or modified since it was serialized
+         */
+        boolean isSerializationOf(final Connector current, final int currentHash) {
+            return connector == current && connectorHash == currentHash;
+        }
+    }
 }
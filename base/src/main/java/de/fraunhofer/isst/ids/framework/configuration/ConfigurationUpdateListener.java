@@ -0,0 +1,18 @@
+package de.fraunhofer.isst.ids.framework.configuration;
+
+import de.fraunhofer.iais.eis.ConfigurationModel;
+
+/**
+ * Listener notified by the {@link ConfigurationContainer} after its configuration was updated,
+ * e.g. for invalidating data derived from the self-description.
+ */
+@FunctionalInterface
+public interface ConfigurationUpdateListener {
+
+    /**
+     * Called after the configuration was replaced successfully.
+     *
+     * @param configurationModel the new configuration
+     */
+    void configurationUpdated(ConfigurationModel configurationModel);
+}
@@ -1,24 +1,136 @@
 package de.fraunhofer.isst.ids.framework.configuration;
 
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.ArtifactResponseMessageBuilder;
+import de.fraunhofer.iais.eis.ConnectorUpdateMessageBuilder;
+import de.fraunhofer.iais.eis.DescriptionRequestMessageBuilder;
+import de.fraunhofer.iais.eis.DescriptionResponseMessageBuilder;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RejectionMessageBuilder;
+import de.fraunhofer.iais.eis.RejectionReason;
+import de.fraunhofer.iais.eis.TokenFormat;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.util.MessageDeserializer;
+import de.fraunhofer.isst.ids.framework.util.TimeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * Provide a IAIS Infomodel {@link Serializer} as Bean for autowiring in spring applications.
- * The Serializer is used by various components inside the framework.
+ * The components inside the framework (also the ones used outside of spring) share one internal Serializer, so its
+ * initialization and caches are only paid once. The Bean is a separate instance, changes of the application to it
+ * (e.g. added preprocessors) do not affect the framework. If <code>configuration.serializer-warmup=true</code> is set,
+ * both Serializers serialize and deserialize representative messages on startup.
  */
+@Slf4j
 @Configuration
 public class SerializerProvider {
 
+    private static final Serializer SERIALIZER = new Serializer();
+    private static final int WARMUP_ROUNDS = 3;
+
     /**
-     * Infomodel Serializer as Bean, so it can be autowired.
+     * Get the Serializer shared by the framework internally. It must not be modified (e.g. by adding
+     * preprocessors), use the Serializer Bean or an own instance for application specific settings.
      *
+     * @return the shared {@link Serializer}
+     */
+    public static Serializer getSharedSerializer() {
+        return SERIALIZER;
+    }
+
+    /**
+     * Infomodel Serializer as Bean, so it can be autowired. The Bean is not the Serializer used inside the framework.
+     *
+     * @param warmup true if the serializers should be warmed up before the Bean is provided
      * @return a new {@link Serializer} object as bean for autowiring
      */
     @Bean
-    public Serializer getSerializer() {
-        return new Serializer();
+    public Serializer getSerializer(@Value("${configuration.serializer-warmup:false}") final boolean warmup) {
+        final var serializer = new Serializer();
+        if (warmup) {
+            warmUp();
+            warmUp(serializer);
+        }
+        return serializer;
+    }
+
+    /**
+     * Serialize and deserialize representative messages with the shared Serializer, so that the first real
+     * requests do not pay for class loading and cold caches.
+     */
+    public static void warmUp() {
+        warmUp(SERIALIZER);
     }
 
+    /**
+     * Serialize and deserialize representative messages with the given Serializer.
+     *
+     * @param serializer the Serializer to warm up
+     */
+    public static void warmUp(final Serializer serializer) {
+        final var start = System.nanoTime();
+        try {
+            final var messages = representativeMessages();
+            for (var round = 0; round < WARMUP_ROUNDS; round++) {
+                for (final var message : messages) {
+                    final var json = serializer.serialize(message);
+                    MessageDeserializer.deserialize(serializer, json);
+                    serializer.deserialize(json, Message.class);
+                }
+            }
+            if (log.isInfoEnabled()) {
+                log.info(String.format("Serializer warm-up finished in %d ms", (System.nanoTime() - start) / 1_000_000));
+            }
+        } catch (IOException | RuntimeException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("Serializer warm-up failed!");
+                log.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static List<Message> representativeMessages() {
+        final var connector = URI.create("https://w3id.org/idsa/autogen/baseConnector/warmup");
+        final var token = new DynamicAttributeTokenBuilder()
+                ._tokenFormat_(TokenFormat.JWT)
+                ._tokenValue_("warmup")
+                .build();
+        final var now = TimeService.now();
+
+        return List.of(
+                new DescriptionRequestMessageBuilder()
+                        ._issued_(now)._issuerConnector_(connector)._senderAgent_(connector)
+                        ._modelVersion_("4.0.0")._securityToken_(token)
+                        .build(),
+                new DescriptionResponseMessageBuilder()
+                        ._issued_(now)._issuerConnector_(connector)._senderAgent_(connector)
+                        ._modelVersion_("4.0.0")._securityToken_(token)._correlationMessage_(connector)
+                        .build(),
+                new ArtifactRequestMessageBuilder()
+                        ._issued_(now)._issuerConnector_(connector)._senderAgent_(connector)
+                        ._modelVersion_("4.0.0")._securityToken_(token)._requestedArtifact_(connector)
+                        .build(),
+                new ArtifactResponseMessageBuilder()
+                        ._issued_(now)._issuerConnector_(connector)._senderAgent_(connector)
+                        ._modelVersion_("4.0.0")._securityToken_(token)._correlationMessage_(connector)
+                        .build(),
+                new ConnectorUpdateMessageBuilder()
+                        ._issued_(now)._issuerConnector_(connector)._senderAgent_(connector)
+                        ._modelVersion_("4.0.0")._securityToken_(token)._affectedConnector_(connector)
+                        .build(),
+                new RejectionMessageBuilder()
+                        ._issued_(now)._issuerConnector_(connector)._senderAgent_(connector)
+                        ._modelVersion_("4.0.0")._securityToken_(token)._correlationMessage_(connector)
+                        ._rejectionReason_(RejectionReason.MALFORMED_MESSAGE)
+                        .build()
+        );
+    }
 }
@@ -7,6 +7,8 @@ import java.util.Map;
 import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.iais.eis.RejectionMessageImpl;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.configuration.SerializerProvider;
+import de.fraunhofer.isst.ids.framework.util.MessageDeserializer;
 import de.fraunhofer.isst.ids.framework.util.MultipartStringParser;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
@@ -26,7 +28,7 @@ import org.springframework.stereotype.Service;
 public class DapsValidator {
 
     DapsPublicKeyProvider keyProvider;
-    Serializer serializer = new Serializer();
+    Serializer serializer = SerializerProvider.getSharedSerializer();
 
     public DapsValidator(final DapsPublicKeyProvider keyProvider) {
         this.keyProvider = keyProvider;
@@ -97,7 +99,6 @@ public class DapsValidator {
      */
     public boolean checkDat(final String responseBody) {
         Map<String, String> responseMap;
-        Message responseHeader;
         try {
             responseMap = MultipartStringParser.stringToMultipart(responseBody);
         } catch (FileUploadException e) {
@@ -106,8 +107,19 @@ public class DapsValidator {
             }
             return false;
         }
+        return checkDat(responseMap);
+    }
+
+    /**
+     * Check the DAT of an incoming Response which was already parsed to a multipart map.
+     *
+     * @param responseMap Multipart Map with header and payload part of the response
+     * @return true if DAT of response is valid
+     */
+    public boolean checkDat(final Map<String, String> responseMap) {
+        Message responseHeader;
         try {
-           responseHeader = serializer.deserialize(responseMap.get("header"), Message.class);
+           responseHeader = MessageDeserializer.deserialize(serializer, responseMap.get("header"));
         } catch (IOException e) {
             if (log.isWarnEnabled()) {
                 log.warn("Response header cannot be deserialized to IDS Message!");
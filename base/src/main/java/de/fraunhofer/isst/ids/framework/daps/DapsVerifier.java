@@ -1,8 +1,6 @@
 package de.fraunhofer.isst.ids.framework.daps;
 
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-
+import de.fraunhofer.isst.ids.framework.util.TimeService;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
 import lombok.experimental.UtilityClass;
@@ -25,10 +23,11 @@ public class DapsVerifier {
     public static boolean verify(final Jws<Claims> toVerify) throws ClaimsException {
         try {
             final Claims body = toVerify.getBody();
-            return (LocalDateTime.now().toLocalDate().isAfter(body.getNotBefore().toInstant().atZone(ZoneId.systemDefault()).toLocalDate()) ||
-                   LocalDateTime.now().toLocalDate().isEqual(body.getNotBefore().toInstant().atZone(ZoneId.systemDefault()).toLocalDate())) &&
-                   (LocalDateTime.now().toLocalDate().isBefore(body.getExpiration().toInstant().atZone(ZoneId.systemDefault()).toLocalDate()) ||
-                   LocalDateTime.now().toLocalDate().isEqual(body.getExpiration().toInstant().atZone(ZoneId.systemDefault()).toLocalDate()));
+            final var clock = TimeService.getClock();
+            final var today = TimeService.today();
+            final var notBefore = body.getNotBefore().toInstant().atZone(clock.getZone()).toLocalDate();
+            final var expiration = body.getExpiration().toInstant().atZone(clock.getZone()).toLocalDate();
+            return !today.isBefore(notBefore) && !today.isAfter(expiration);
         } catch (Exception e) {
             if (log.isWarnEnabled()) {
                 log.warn("Could not verify Claims of the DAT Token!");
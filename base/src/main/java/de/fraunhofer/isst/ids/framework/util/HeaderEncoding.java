@@ -0,0 +1,272 @@
+package de.fraunhofer.isst.ids.framework.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Encodings of the header part of a multipart message. JSON-LD is understood by every IDS connector, the binary
+ * encodings are only used between connectors running this framework and are negotiated with the
+ * {@link #ACCEPT_HEADER} http header: a connector lists the encodings it can read, the receiver uses the first one it supports.
+ * A header part without (known) content type is always JSON-LD.
+ */
+@Getter
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public enum HeaderEncoding {
+
+    /**
+     * Plain JSON-LD text, the default encoding.
+     */
+    JSON_LD("application/ld+json") {
+        @Override
+        public byte[] encode(final String jsonLd) {
+            return jsonLd.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(final byte[] encoded) {
+            return new String(encoded, StandardCharsets.UTF_8);
+        }
+    },
+
+    /**
+     * The JSON-LD document encoded as CBOR (RFC 8949), smaller on the wire than JSON text. Decoding converts it back
+     * to JSON-LD text for the infomodel serializer, so it does not save any parsing.
+     */
+    CBOR("application/cbor") {
+        @Override
+        public byte[] encode(final String jsonLd) throws IOException {
+            return Mappers.CBOR.writeValueAsBytes(Mappers.JSON.readTree(jsonLd));
+        }
+
+        @Override
+        public String decode(final byte[] encoded) throws IOException {
+            return Mappers.JSON.writeValueAsString(Mappers.CBOR.readTree(encoded));
+        }
+    },
+
+    /**
+     * The JSON-LD text compressed with deflate and a bundled dictionary of the recurring parts of IDS headers
+     * (context, type IRIs, property names). Meant for small messages over constrained links, where the header
+     * makes up most of the transferred bytes.
+     */
+    DEFLATE("application/x-ids-header+deflate") {
+        @Override
+        public byte[] encode(final String jsonLd) {
+            final var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try {
+                deflater.setDictionary(Dictionary.BYTES);
+                deflater.setInput(jsonLd.getBytes(StandardCharsets.UTF_8));
+                deflater.finish();
+                final var out = new ByteArrayOutputStream(jsonLd.length() / 4 + 16);
+                final var buffer = new byte[1024];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public String decode(final byte[] encoded) throws IOException {
+            final var inflater = new Inflater();
+            try {
+                inflater.setInput(encoded);
+                final var out = new ByteArrayOutputStream(encoded.length * 4);
+                final var buffer = new byte[1024];
+                while (!inflater.finished()) {
+                    final var read = inflater.inflate(buffer);
+                    if (read > 0) {
+                        out.write(buffer, 0, read);
+                        if (out.size() > MAX_DECODED_LENGTH) {
+                            throw new IOException("Decompressed header exceeds the maximum header size!");
+                        }
+                    } else if (inflater.needsDictionary()) {
+                        if (inflater.getAdler() != Dictionary.ADLER) {
+                            throw new IOException("Header was compressed with an unknown dictionary!");
+                        }
+                        inflater.setDictionary(Dictionary.BYTES);
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Compressed header is truncated!");
+                    }
+                }
+                return out.toString(StandardCharsets.UTF_8);
+            } catch (DataFormatException e) {
+                throw new IOException("Compressed header could not be decoded!", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    /**
+     * Http header listing the header encodings a connector is able to read.
+     */
+    public static final String ACCEPT_HEADER = "Accept-IDS-Header-Encoding";
+
+    /**
+     * Maximum size of a decoded header, protects against decompression bombs.
+     */
+    static final int MAX_DECODED_LENGTH = 1 << 20;
+
+    String mediaType;
+
+    HeaderEncoding(final String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Encode a serialized header.
+     *
+     * @param jsonLd the header as JSON-LD
+     * @return the encoded header
+     * @throws IOException if the header cannot be encoded
+     */
+    public abstract byte[] encode(String jsonLd) throws IOException;
+
+    /**
+     * Decode an encoded header back to JSON-LD.
+     *
+     * @param encoded the encoded header
+     * @return the header as JSON-LD
+     * @throws IOException if the header cannot be decoded
+     */
+    public abstract String decode(byte[] encoded) throws IOException;
+
+    /**
+     * Check if the encoding has to be transferred as binary part (every encoding besides JSON-LD).
+     *
+     * @return true if the header part is binary
+     */
+    public boolean isBinary() {
+        return this != JSON_LD;
+    }
+
+    /**
+     * Get the encoding of a header part by its content type.
+     *
+     * @param contentType content type of the header part (may be null)
+     * @return the matching encoding, JSON_LD for unknown or missing content types
+     */
+    public static HeaderEncoding fromContentType(final String contentType) {
+        return contentType == null ? JSON_LD : lookup(contentType).orElse(JSON_LD);
+    }
+
+    /**
+     * Choose the encoding for a peer, by the value of its {@link #ACCEPT_HEADER}.
+     *
+     * @param accepted value of the accept header (may be null)
+     * @return the first listed encoding which is supported, JSON_LD if none is
+     */
+    public static HeaderEncoding negotiate(final String accepted) {
+        if (accepted == null || accepted.isBlank()) {
+            return JSON_LD;
+        }
+        for (final var mediaType : accepted.split(",")) {
+            final var encoding = lookup(mediaType);
+            if (encoding.isPresent()) {
+                return encoding.get();
+            }
+        }
+        return JSON_LD;
+    }
+
+    /**
+     * Choose the encoding for a peer by the own preferences, among the encodings listed in its {@link #ACCEPT_HEADER}.
+     *
+     * @param accepted value of the accept header of the peer (may be null)
+     * @param preferred the own encodings in order of preference
+     * @return the first preferred encoding the peer accepts, JSON_LD if there is none
+     */
+    public static HeaderEncoding negotiate(final String accepted, final List<HeaderEncoding> preferred) {
+        final var offered = EnumSet.of(JSON_LD);
+        if (accepted != null) {
+            for (final var mediaType : accepted.split(",")) {
+                lookup(mediaType).ifPresent(offered::add);
+            }
+        }
+        return preferred.stream().filter(offered::contains).findFirst().orElse(JSON_LD);
+    }
+
+    /**
+     * Value of the {@link #ACCEPT_HEADER} listing the given encodings.
+     *
+     * @param encodings the encodings in order of preference
+     * @return comma separated list of media types
+     */
+    public static String toAcceptHeader(final List<HeaderEncoding> encodings) {
+        return encodings.stream().map(HeaderEncoding::getMediaType).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Value of the {@link #ACCEPT_HEADER} advertising all encodings supported by this connector.
+     *
+     * @return comma separated list of media types, binary encodings first
+     */
+    public static String supportedMediaTypes() {
+        return Arrays.stream(values())
+                .sorted((a, b) -> Boolean.compare(b.isBinary(), a.isBinary()))
+                .map(HeaderEncoding::getMediaType)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static Optional<HeaderEncoding> lookup(final String contentType) {
+        final var separator = contentType.indexOf(';');
+        final var mediaType = (separator < 0 ? contentType : contentType.substring(0, separator)).trim().toLowerCase(Locale.ROOT);
+        return Arrays.stream(values()).filter(encoding -> encoding.mediaType.equals(mediaType)).findFirst();
+    }
+
+    /**
+     * Lazily created mappers used by the encodings.
+     */
+    private static final class Mappers {
+        static final ObjectMapper JSON = new ObjectMapper();
+        static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+    }
+
+    /**
+     * Lazily loaded preset dictionary of the DEFLATE encoding, both peers must use the same dictionary.
+     * The zlib stream carries the Adler-32 checksum of the dictionary, so a mismatch is detected on decoding.
+     */
+    private static final class Dictionary {
+        static final String RESOURCE = "/ids-header.dict";
+        static final byte[] BYTES = load();
+        static final long ADLER = checksum(BYTES);
+
+        private static byte[] load() {
+            try (var stream = HeaderEncoding.class.getResourceAsStream(RESOURCE)) {
+                if (stream == null) {
+                    throw new IllegalStateException(String.format("Header dictionary %s not found!", RESOURCE));
+                }
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static long checksum(final byte[] bytes) {
+            final var adler = new Adler32();
+            adler.update(bytes);
+            return adler.getValue();
+        }
+    }
+}
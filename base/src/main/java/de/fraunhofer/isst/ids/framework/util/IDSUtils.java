@@ -1,7 +1,5 @@
 package de.fraunhofer.isst.ids.framework.util;
 
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
 import java.io.IOException;
 import java.security.InvalidKeyException;
@@ -12,14 +10,13 @@ import java.security.SignatureException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
-import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.Objects;
 import java.util.Properties;
 
 import de.fraunhofer.iais.eis.ConfigurationModel;
 import de.fraunhofer.iais.eis.Connector;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.configuration.SerializerProvider;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.UtilityClass;
@@ -35,7 +32,7 @@ import lombok.extern.slf4j.Slf4j;
 public class IDSUtils {
 
     static Base64.Encoder ENCODER    = Base64.getEncoder();
-    static Serializer     SERIALIZER = new Serializer();
+    static Serializer     SERIALIZER = SerializerProvider.getSharedSerializer();
 
     /**
      * Hash a value with a given MessageDigest.
@@ -113,18 +110,10 @@ public class IDSUtils {
      * Generates a XML gregorian calendar from the current time.
      *
      * @return XMLGregorianCalendar containing the current time stamp as {@link XMLGregorianCalendar}.
+     * @see TimeService#now()
      */
     public static XMLGregorianCalendar getGregorianNow() {
-        final var c = new GregorianCalendar();
-        c.setTime(new Date());
-        try {
-            return DatatypeFactory.newInstance().newXMLGregorianCalendar(c);
-        } catch (DatatypeConfigurationException e) {
-            if (log.isInfoEnabled()) {
-                log.info(e.getMessage());
-            }
-        }
-        return null;
+        return TimeService.now();
     }
 
     /**
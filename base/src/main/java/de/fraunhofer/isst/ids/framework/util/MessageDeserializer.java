@@ -0,0 +1,125 @@
+package de.fraunhofer.isst.ids.framework.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deserializes IDS message headers. The top level <code>@type</code> of the header is read with a streaming parser
+ * first and the matching infomodel implementation class is passed to the serializer, so it does not have to search
+ * the implementations of {@link Message}. The JSON-LD parsing itself is still done by the infomodel
+ * {@link Serializer} (there is no reusable per-type reader for JSON-LD), only the type resolution is cached.
+ * Inputs without a usable <code>@type</code> use the generic path.
+ */
+@Slf4j
+@UtilityClass
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class MessageDeserializer {
+
+    static JsonFactory JSON_FACTORY = new JsonFactory();
+    static String INFOMODEL_PACKAGE = "de.fraunhofer.iais.eis.";
+
+    /**
+     * Resolved implementation classes per <code>@type</code> value. Only successful resolutions are cached, so the
+     * cache is bounded by the infomodel message types and cannot be filled with arbitrary types of incoming headers.
+     */
+    static Map<String, Class<? extends Message>> TYPE_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Deserialize a JSON-LD message header.
+     *
+     * @param serializer the infomodel serializer
+     * @param input the header as JSON-LD
+     * @return the deserialized header
+     * @throws IOException if the header cannot be deserialized
+     */
+    public static Message deserialize(final Serializer serializer, final String input) throws IOException {
+        final var messageClass = sniffType(input).flatMap(MessageDeserializer::resolveClass);
+        if (messageClass.isPresent()) {
+            try {
+                return serializer.deserialize(input, messageClass.get());
+            } catch (IOException | RuntimeException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("Fast path deserialization as %s failed, using generic path", messageClass.get().getSimpleName()));
+                }
+            }
+        }
+        return serializer.deserialize(input, Message.class);
+    }
+
+    /**
+     * Read the top level <code>@type</code> of a JSON object, without parsing the rest of the document.
+     *
+     * @param input a JSON document
+     * @return the type, or Optional.empty if the document has no single top level type
+     */
+    static Optional<String> sniffType(final String input) {
+        try (var parser = JSON_FACTORY.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return Optional.empty();
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final var name = parser.getCurrentName();
+                final var value = parser.nextToken();
+                if ("@type".equals(name)) {
+                    return value == JsonToken.VALUE_STRING ? Optional.of(parser.getText()) : Optional.empty();
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Could not read @type of header");
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Resolve the implementation class of an infomodel message type (e.g. <code>ids:ArtifactRequestMessage</code>
+     * or <code>https://w3id.org/idsa/core/ArtifactRequestMessage</code>).
+     *
+     * @param type the <code>@type</code> of a header
+     * @return the implementation class, or Optional.empty if the type is no infomodel message
+     */
+    static Optional<Class<? extends Message>> resolveClass(final String type) {
+        //a null result of the mapping function is not stored, unknown types are resolved again on every lookup
+        return Optional.ofNullable(TYPE_CACHE.computeIfAbsent(type, key -> loadClass(key).orElse(null)));
+    }
+
+    private static Optional<Class<? extends Message>> loadClass(final String type) {
+        //only the two spellings of the type are accepted, so the cached keys are bounded by the message types
+        final String localName;
+        if (type.startsWith("ids:")) {
+            localName = type.substring("ids:".length());
+        } else if (type.startsWith("https://w3id.org/idsa/core/")) {
+            localName = type.substring("https://w3id.org/idsa/core/".length());
+        } else {
+            return Optional.empty();
+        }
+        if (localName.isEmpty() || !localName.chars().allMatch(Character::isJavaIdentifierPart)) {
+            return Optional.empty();
+        }
+
+        try {
+            final var implementation = Class.forName(INFOMODEL_PACKAGE + localName + "Impl", false, Message.class.getClassLoader());
+            if (Message.class.isAssignableFrom(implementation)) {
+                return Optional.of(implementation.asSubclass(Message.class));
+            }
+        } catch (ClassNotFoundException e) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("No infomodel class found for type %s", type));
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -3,11 +3,15 @@ package de.fraunhofer.isst.ids.framework.util;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
+import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileItemFactory;
 import org.apache.commons.fileupload.FileUpload;
 import org.apache.commons.fileupload.FileUploadException;
@@ -15,13 +19,16 @@ import org.apache.commons.fileupload.UploadContext;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 
 /**
- * Utility Class for parsing Multipart Maps from String responses.
+ * Utility Class for parsing Multipart Maps from String or byte responses.
+ * Header parts in a binary {@link HeaderEncoding} are decoded to their JSON-LD representation, parts compressed
+ * with a {@link PayloadEncoding} are decompressed (up to {@link PayloadEncoding#getMaxDecompressedSize()} bytes).
  */
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class MultipartStringParser implements UploadContext {
 
-    String postBody;
+    byte[] postBody;
     String boundary;
+    boolean utf8Parts;
     Map<String, String> parameters = new ConcurrentHashMap<>();
 
     /**
@@ -31,9 +38,25 @@ public class MultipartStringParser implements UploadContext {
      * @throws FileUploadException if there are problems reading/parsing the postBody.
      */
     private MultipartStringParser(final String postBody) throws FileUploadException {
+        this(postBody.getBytes(), false);
+    }
+
+    /**
+     * Constructor for the MultipartStringParser used internally to parse a multipart response to a Map<Partname, MessagePart>.
+     *
+     * @param postBody a multipart response body as bytes
+     * @param utf8Parts true if text parts without charset are UTF-8 encoded
+     * @throws FileUploadException if there are problems reading/parsing the postBody.
+     */
+    private MultipartStringParser(final byte[] postBody, final boolean utf8Parts) throws FileUploadException {
         this.postBody = postBody;
+        this.utf8Parts = utf8Parts;
         // Sniff out the multipart boundary.
-        this.boundary = postBody.substring(2, postBody.indexOf('\n')).trim();
+        final var firstLine = indexOf(postBody, (byte) '\n');
+        if (firstLine < 2) {
+            throw new FileUploadException("Multipart body does not start with a boundary!");
+        }
+        this.boundary = new String(postBody, 2, firstLine - 2, StandardCharsets.US_ASCII).trim();
         // Parse out the parameters.
         final FileItemFactory factory = new DiskFileItemFactory();
         final var upload = new FileUpload(factory);
@@ -41,7 +64,23 @@ public class MultipartStringParser implements UploadContext {
         for (final var fileItem: fileItems) {
             if (fileItem.isFormField()) {
                 //put the parameters into the map as "name, content"
-                parameters.put(fileItem.getFieldName(), fileItem.getString());
+                final var encoding = HeaderEncoding.fromContentType(fileItem.getContentType());
+                try {
+                    final var compression = contentEncoding(fileItem);
+                    if (encoding.isBinary()) {
+                        parameters.put(fileItem.getFieldName(), encoding.decode(fileItem.get()));
+                    } else if (compression != PayloadEncoding.IDENTITY) {
+                        try (var stream = compression.decompress(new ByteArrayInputStream(fileItem.get()))) {
+                            parameters.put(fileItem.getFieldName(), new String(stream.readAllBytes(), charset(fileItem.getContentType())));
+                        }
+                    } else if (utf8Parts && !hasCharset(fileItem.getContentType())) {
+                        parameters.put(fileItem.getFieldName(), fileItem.getString(StandardCharsets.UTF_8.name()));
+                    } else {
+                        parameters.put(fileItem.getFieldName(), fileItem.getString());
+                    }
+                } catch (IOException e) {
+                    throw new FileUploadException(String.format("Part %s could not be decoded!", fileItem.getFieldName()), e);
+                }
             } // else it is an uploaded file
         }
     }
@@ -57,6 +96,19 @@ public class MultipartStringParser implements UploadContext {
         return new MultipartStringParser(postBody).getParameters();
     }
 
+    /**
+     * Convert the raw bytes of a multipart response to a Map with Partname/MessagePart.
+     * Unlike {@link #stringToMultipart(String)}, binary header parts survive this conversion,
+     * text parts without explicit charset are read as UTF-8.
+     *
+     * @param postBody a multipart response body as bytes
+     * @return a Map from partname on content
+     * @throws FileUploadException if there are problems reading/parsing the postBody.
+     */
+    public static Map<String, String> bytesToMultipart(final byte[] postBody) throws FileUploadException {
+        return new MultipartStringParser(postBody, true).getParameters();
+    }
+
     /**
      * Getter for the parsed Map.
      *
@@ -66,10 +118,43 @@ public class MultipartStringParser implements UploadContext {
         return parameters;
     }
 
+    private static int indexOf(final byte[] bytes, final byte value) {
+        for (var i = 0; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static PayloadEncoding contentEncoding(final FileItem fileItem) {
+        final var headers = fileItem.getHeaders();
+        return PayloadEncoding.fromContentEncoding(headers == null ? null : headers.getHeader(PayloadEncoding.CONTENT_ENCODING));
+    }
+
+    /**
+     * Get the charset of a decompressed text part, UTF-8 if the content type names none.
+     */
+    private static Charset charset(final String contentType) {
+        if (hasCharset(contentType)) {
+            final var name = contentType.substring(contentType.toLowerCase(Locale.ROOT).indexOf("charset=") + "charset=".length()).split(";")[0].trim();
+            try {
+                return Charset.forName(name.replace("\"", ""));
+            } catch (IllegalArgumentException e) {
+                return StandardCharsets.UTF_8;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static boolean hasCharset(final String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("charset=");
+    }
+
     //these methods must be implemented because of the UploadContext interface
     @Override
     public long contentLength() {
-        return postBody.length();
+        return postBody.length;
     }
 
     @Override
@@ -89,6 +174,6 @@ public class MultipartStringParser implements UploadContext {
 
     @Override
     public InputStream getInputStream() throws IOException {
-        return new ByteArrayInputStream(postBody.getBytes());
+        return new ByteArrayInputStream(postBody);
     }
 }
@@ -0,0 +1,286 @@
+package de.fraunhofer.isst.ids.framework.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+/**
+ * Content codings of the payload part of a multipart message. A compressed payload part is marked with a
+ * <code>Content-Encoding</code> part header. Compression is only used between connectors running this framework,
+ * the codings a connector can read are announced with the {@link #ACCEPT_HEADER} http header (the http level
+ * Accept-Encoding header cannot be used, as it is sent by http clients which do not decode single parts).
+ * Decompressed payloads are limited to {@link #getMaxDecompressedSize()} bytes, so small compressed parts cannot
+ * expand to arbitrary amounts of data.
+ */
+@Getter
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public enum PayloadEncoding {
+
+    /**
+     * Uncompressed payload.
+     */
+    IDENTITY("identity"),
+
+    /**
+     * Payload compressed with gzip, used for payloads which are held in memory.
+     */
+    GZIP("gzip"),
+
+    /**
+     * Payload compressed with deflate (zlib format), used for payloads which are compressed while they are streamed.
+     */
+    DEFLATE("deflate");
+
+    /**
+     * Http header listing the payload codings a connector is able to read.
+     */
+    public static final String ACCEPT_HEADER = "Accept-IDS-Payload-Encoding";
+
+    /**
+     * Part header marking a compressed payload part.
+     */
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+
+    /**
+     * Payloads smaller than this number of bytes are not compressed.
+     */
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
+    /**
+     * Default maximum size of a decompressed payload in bytes (64 MiB).
+     */
+    public static final long DEFAULT_MAX_DECOMPRESSED_SIZE = 64L * 1024 * 1024;
+
+    @NonFinal
+    private static volatile long maxDecompressedSize = DEFAULT_MAX_DECOMPRESSED_SIZE;
+
+    String coding;
+
+    PayloadEncoding(final String coding) {
+        this.coding = coding;
+    }
+
+    /**
+     * Compress a payload held in memory.
+     *
+     * @param payload the uncompressed payload
+     * @return the compressed payload
+     * @throws IOException if the payload cannot be compressed
+     */
+    public byte[] compress(final byte[] payload) throws IOException {
+        switch (this) {
+            case GZIP:
+                final var out = new ByteArrayOutputStream(payload.length / 4 + 32);
+                try (var gzip = new GZIPOutputStream(out)) {
+                    gzip.write(payload);
+                }
+                return out.toByteArray();
+            case DEFLATE:
+                try (var deflate = new DeflaterInputStream(new ByteArrayInputStream(payload))) {
+                    return deflate.readAllBytes();
+                }
+            default:
+                return payload;
+        }
+    }
+
+    /**
+     * Compress a stream while it is read.
+     *
+     * @param payload the uncompressed stream
+     * @return stream of the compressed payload
+     * @throws UnsupportedOperationException if the coding cannot compress while streaming (gzip)
+     */
+    public InputStream compress(final InputStream payload) {
+        switch (this) {
+            case DEFLATE:
+                return new DeflaterInputStream(payload);
+            case IDENTITY:
+                return payload;
+            default:
+                throw new UnsupportedOperationException(String.format("%s cannot compress streams!", coding));
+        }
+    }
+
+    /**
+     * Decompress a stream while it is read, limited to {@link #getMaxDecompressedSize()} bytes.
+     *
+     * @param payload the compressed stream
+     * @return stream of the uncompressed payload
+     * @throws IOException if the stream is no valid compressed stream
+     */
+    public InputStream decompress(final InputStream payload) throws IOException {
+        return decompress(payload, maxDecompressedSize);
+    }
+
+    /**
+     * Decompress a stream while it is read. Reading the returned stream fails with an IOException as soon as more
+     * than maxSize bytes were decompressed, uncompressed (IDENTITY) streams are not limited.
+     *
+     * @param payload the compressed stream
+     * @param maxSize maximum number of decompressed bytes
+     * @return stream of the uncompressed payload
+     * @throws IOException if the stream is no valid compressed stream
+     */
+    public InputStream decompress(final InputStream payload, final long maxSize) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new SizeLimitedInputStream(new GZIPInputStream(payload), maxSize);
+            case DEFLATE:
+                return new SizeLimitedInputStream(new InflaterInputStream(payload), maxSize);
+            default:
+                return payload;
+        }
+    }
+
+    /**
+     * Get the maximum size of decompressed payloads.
+     *
+     * @return maximum number of decompressed bytes per payload
+     */
+    public static long getMaxDecompressedSize() {
+        return maxDecompressedSize;
+    }
+
+    /**
+     * Set the maximum size of decompressed payloads (property <code>configuration.max-decompressed-payload-size</code>).
+     *
+     * @param maxSize maximum number of decompressed bytes per payload, must be at least 1
+     */
+    public static void setMaxDecompressedSize(final long maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum decompressed size must be at least 1!");
+        }
+        maxDecompressedSize = maxSize;
+    }
+
+    /**
+     * Get the coding of a part by its <code>Content-Encoding</code> header.
+     *
+     * @param contentEncoding value of the Content-Encoding part header (may be null)
+     * @return the matching coding, IDENTITY for missing or unknown codings
+     */
+    public static PayloadEncoding fromContentEncoding(final String contentEncoding) {
+        if (contentEncoding == null) {
+            return IDENTITY;
+        }
+        final var coding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        for (final var encoding : values()) {
+            if (encoding.coding.equals(coding)) {
+                return encoding;
+            }
+        }
+        return IDENTITY;
+    }
+
+    /**
+     * Check if a peer accepts a coding.
+     *
+     * @param accepted value of the {@link #ACCEPT_HEADER} of the peer (may be null)
+     * @param encoding the coding to check
+     * @return true if the coding is listed
+     */
+    public static boolean isAccepted(final String accepted, final PayloadEncoding encoding) {
+        if (accepted == null) {
+            return encoding == IDENTITY;
+        }
+        for (final var coding : accepted.split(",")) {
+            final var separator = coding.indexOf(';');
+            final var name = (separator < 0 ? coding : coding.substring(0, separator)).trim().toLowerCase(Locale.ROOT);
+            if (encoding.coding.equals(name)) {
+                return true;
+            }
+        }
+        return encoding == IDENTITY;
+    }
+
+    /**
+     * Value of the {@link #ACCEPT_HEADER} listing all supported codings.
+     *
+     * @return comma separated list of codings
+     */
+    public static String supportedCodings() {
+        return GZIP.coding + ", " + DEFLATE.coding;
+    }
+
+    /**
+     * Check if compressing a payload of the given media type is worthwhile (text, json, xml, csv and similar).
+     *
+     * @param mediaType media type of the payload (may be null)
+     * @return true if the payload is expected to compress well
+     */
+    public static boolean isCompressible(final String mediaType) {
+        if (mediaType == null) {
+            return false;
+        }
+        final var type = mediaType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/")
+                || type.contains("json")
+                || type.contains("xml")
+                || type.contains("csv")
+                || type.contains("yaml")
+                || type.startsWith("application/javascript");
+    }
+
+    /**
+     * InputStream failing when more than a maximum number of bytes were read from the wrapped stream.
+     */
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+        private final long maxSize;
+        private long count;
+
+        SizeLimitedInputStream(final InputStream in, final long maxSize) {
+            super(in);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final var read = super.read();
+            if (read >= 0) {
+                count(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final var read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(final long length) throws IOException {
+            final var skipped = super.skip(length);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(final long read) throws IOException {
+            count += read;
+            if (count > maxSize) {
+                throw new IOException(String.format("Decompressed payload exceeds the limit of %d bytes!", maxSize));
+            }
+        }
+    }
+}
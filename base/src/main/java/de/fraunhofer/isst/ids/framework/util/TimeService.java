@@ -0,0 +1,205 @@
+package de.fraunhofer.isst.ids.framework.util;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Time source for the timestamps of infomodel messages.
+ * The {@link DatatypeFactory} is looked up once (the lookup uses the service loader and is expensive) and shared,
+ * the JDK implementation is stateless and can be used concurrently.
+ * Optionally a coarse clock can be enabled, which is refreshed by a background thread every millisecond, so reading the
+ * current time is a single volatile read.
+ */
+@Slf4j
+@UtilityClass
+public class TimeService {
+
+    private static final DatatypeFactory DATATYPE_FACTORY = lookupDatatypeFactory();
+
+    private static volatile Clock clock = Clock.systemDefaultZone();
+    private static CoarseClock coarseClock;
+
+    /**
+     * Get the shared DatatypeFactory.
+     *
+     * @return the cached {@link DatatypeFactory}
+     * @throws IllegalStateException if no DatatypeFactory implementation is available
+     */
+    public static DatatypeFactory getDatatypeFactory() {
+        if (DATATYPE_FACTORY == null) {
+            throw new IllegalStateException("No DatatypeFactory implementation available!");
+        }
+        return DATATYPE_FACTORY;
+    }
+
+    /**
+     * Get the clock used for timestamps.
+     *
+     * @return the current clock
+     */
+    public static Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Replace the clock used for timestamps (e.g. by a fixed clock in tests), disables the coarse clock.
+     *
+     * @param newClock the clock to use
+     */
+    public static synchronized void setClock(final Clock newClock) {
+        stopCoarseClock();
+        clock = newClock;
+    }
+
+    /**
+     * Enable or disable the coarse clock. The coarse clock is refreshed every millisecond by a daemon thread,
+     * its precision matches the millisecond precision of infomodel timestamps.
+     *
+     * @param enabled true to use the coarse clock, false to use the system clock
+     */
+    public static synchronized void useCoarseClock(final boolean enabled) {
+        if (enabled && coarseClock == null) {
+            coarseClock = new CoarseClock(ZoneId.systemDefault());
+            clock = coarseClock;
+        } else if (!enabled) {
+            stopCoarseClock();
+            clock = Clock.systemDefaultZone();
+        }
+    }
+
+    /**
+     * Get the current instant.
+     *
+     * @return the current instant of the clock
+     */
+    public static Instant instant() {
+        return clock.instant();
+    }
+
+    /**
+     * Get the current date in the zone of the clock.
+     *
+     * @return the current date
+     */
+    public static LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    /**
+     * Create a XMLGregorianCalendar with the current time.
+     *
+     * @return the current time as {@link XMLGregorianCalendar}, null if no DatatypeFactory is available
+     */
+    public static XMLGregorianCalendar now() {
+        if (DATATYPE_FACTORY == null) {
+            return null;
+        }
+        final var current = clock;
+        final var calendar = new GregorianCalendar(TimeZone.getTimeZone(current.getZone()));
+        calendar.setTimeInMillis(current.millis());
+        return DATATYPE_FACTORY.newXMLGregorianCalendar(calendar);
+    }
+
+    /**
+     * Parse a lexical xsd:dateTime representation.
+     *
+     * @param lexicalRepresentation the timestamp as string
+     * @return the parsed {@link XMLGregorianCalendar}
+     * @throws IllegalArgumentException if the string is no valid timestamp
+     */
+    public static XMLGregorianCalendar parse(final String lexicalRepresentation) {
+        return getDatatypeFactory().newXMLGregorianCalendar(lexicalRepresentation);
+    }
+
+    private static void stopCoarseClock() {
+        if (coarseClock != null) {
+            coarseClock.stop();
+            coarseClock = null;
+        }
+    }
+
+    private static DatatypeFactory lookupDatatypeFactory() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            if (log.isErrorEnabled()) {
+                log.error(e.getMessage(), e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Clock which returns a cached time, refreshed every millisecond by a daemon thread.
+     */
+    private static final class CoarseClock extends Clock {
+        private final ZoneId zone;
+        private final ScheduledExecutorService ticker;
+        private final Ticks ticks;
+
+        CoarseClock(final ZoneId zone) {
+            this.zone = zone;
+            this.ticks = new Ticks();
+            this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final var thread = new Thread(runnable, "ids-coarse-clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(ticks::update, 1, 1, TimeUnit.MILLISECONDS);
+        }
+
+        private CoarseClock(final ZoneId zone, final CoarseClock source) {
+            this.zone = zone;
+            this.ticks = source.ticks;
+            this.ticker = source.ticker;
+        }
+
+        void stop() {
+            ticker.shutdownNow();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId newZone) {
+            return zone.equals(newZone) ? this : new CoarseClock(newZone, this);
+        }
+
+        @Override
+        public long millis() {
+            return ticks.millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(ticks.millis);
+        }
+    }
+
+    /**
+     * Current time shared by a coarse clock and its zone variants.
+     */
+    private static final class Ticks {
+        private volatile long millis = System.currentTimeMillis();
+
+        void update() {
+            millis = System.currentTimeMillis();
+        }
+    }
+}
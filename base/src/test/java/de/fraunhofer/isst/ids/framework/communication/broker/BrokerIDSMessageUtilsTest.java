@@ -0,0 +1,59 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import de.fraunhofer.iais.eis.ConnectorUpdateMessage;
+import de.fraunhofer.iais.eis.DynamicAttributeToken;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.ResourceBuilder;
+import de.fraunhofer.iais.eis.ResourceUpdateMessage;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test building broker message headers from pre-compiled templates
+ */
+public class BrokerIDSMessageUtilsTest {
+
+    private static final URI CONNECTOR_ID = URI.create("https://example.com/connector");
+
+    /**
+     * headers rendered from a template must contain the dynamic values of every call
+     * @throws IOException if a header cannot be serialized or parsed
+     */
+    @Test
+    public void testTemplateRendersDynamicFields() throws IOException {
+        final var serializer = new Serializer();
+        final var resource = new ResourceBuilder(URI.create("https://example.com/resource")).build();
+
+        final var first = serializer.deserialize(
+                BrokerIDSMessageUtils.buildResourceUpdateMessage(token("first"), "4.0.0", CONNECTOR_ID, resource), Message.class);
+        final var second = serializer.deserialize(
+                BrokerIDSMessageUtils.buildResourceUpdateMessage(token("second"), "4.0.0", CONNECTOR_ID, resource), Message.class);
+
+        assertTrue(first instanceof ResourceUpdateMessage);
+        assertEquals(resource.getId(), ((ResourceUpdateMessage) second).getAffectedResource());
+        assertEquals("second", second.getSecurityToken().getTokenValue());
+        assertEquals(CONNECTOR_ID, second.getIssuerConnector());
+        assertNotEquals(first.getId(), second.getId());
+
+        final var update = serializer.deserialize(
+                BrokerIDSMessageUtils.buildUpdateMessage(token("\"quoted\""), "4.0.0", CONNECTOR_ID), Message.class);
+        assertTrue(update instanceof ConnectorUpdateMessage);
+        assertEquals("\"quoted\"", update.getSecurityToken().getTokenValue());
+    }
+
+    private static DynamicAttributeToken token(final String value) {
+        return new DynamicAttributeTokenBuilder()
+                ._tokenFormat_(TokenFormat.JWT)
+                ._tokenValue_(value)
+                .build();
+    }
+}
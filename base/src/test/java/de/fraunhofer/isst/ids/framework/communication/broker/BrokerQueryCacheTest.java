@@ -0,0 +1,138 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import de.fraunhofer.iais.eis.QueryLanguage;
+import de.fraunhofer.iais.eis.QueryScope;
+import de.fraunhofer.iais.eis.QueryTarget;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test caching broker query responses
+ */
+public class BrokerQueryCacheTest {
+
+    private static final String BROKER = "https://broker.example.com/infrastructure";
+    private static final String QUERY = "SELECT ?s WHERE { ?s ?p ?o }";
+
+    /**
+     * cached responses must be returned with their body until they expire
+     * @throws IOException if a response body cannot be read
+     */
+    @Test
+    public void testExpiration() throws IOException {
+        final var clock = new MutableClock();
+        final var cache = new BrokerQueryCache(10, Duration.ofMinutes(1), clock);
+
+        final var returned = cache.put(BROKER, QUERY, QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER, response(200, "result"));
+        assertEquals("result", returned.body().string());
+
+        for (var i = 0; i < 2; i++) {
+            final var cached = cache.get(BROKER, QUERY, QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER);
+            assertTrue(cached.isPresent());
+            assertEquals("result", cached.get().body().string());
+        }
+        assertFalse(cache.get(BROKER, QUERY, QueryLanguage.SPARQL, QueryScope.ACTIVE_ONLY, QueryTarget.BROKER).isPresent());
+
+        clock.advance(Duration.ofMinutes(1));
+        assertFalse(cache.get(BROKER, QUERY, QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER).isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * the least recently used entry must be evicted, failed responses and invalidated brokers must not be cached
+     * @throws IOException if a response body cannot be read
+     */
+    @Test
+    public void testEvictionAndInvalidation() throws IOException {
+        final var cache = new BrokerQueryCache(2, Duration.ofMinutes(1), new MutableClock());
+
+        cache.put(BROKER, "first", QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER, response(200, "1"));
+        cache.put(BROKER, "second", QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER, response(200, "2"));
+        cache.get(BROKER, "first", QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER);
+        cache.put(BROKER, "third", QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER, response(200, "3"));
+        cache.put(BROKER, "failed", QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER, response(500, "error"));
+
+        assertTrue(cache.get(BROKER, "first", QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER).isPresent());
+        assertFalse(cache.get(BROKER, "second", QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER).isPresent());
+        assertFalse(cache.get(BROKER, "failed", QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER).isPresent());
+
+        cache.invalidate(BROKER);
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * responses of queries sent before an invalidation must be returned, but not cached
+     * @throws IOException if a response body cannot be read
+     */
+    @Test
+    public void testInvalidationDuringQuery() throws IOException {
+        final var cache = new BrokerQueryCache(10, Duration.ofMinutes(1), new MutableClock());
+
+        final var beforeInvalidation = cache.generation();
+        cache.invalidate(BROKER);
+        final var returned = cache.put(BROKER, QUERY, QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER,
+                response(200, "stale"), beforeInvalidation);
+        assertEquals("stale", returned.body().string());
+        assertEquals(0, cache.size());
+
+        final var beforeInvalidateAll = cache.generation();
+        cache.invalidateAll();
+        cache.put(BROKER, QUERY, QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER, response(200, "stale"), beforeInvalidateAll);
+        assertEquals(0, cache.size());
+
+        cache.put(BROKER, QUERY, QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER, response(200, "fresh"), cache.generation());
+        final var cached = cache.get(BROKER, QUERY, QueryLanguage.SPARQL, QueryScope.ALL, QueryTarget.BROKER);
+        assertTrue(cached.isPresent());
+        assertEquals("fresh", cached.get().body().string());
+    }
+
+    private static Response response(final int code, final String body) {
+        return new Response.Builder()
+                .request(new Request.Builder().url(BROKER).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("test")
+                .body(ResponseBody.create(body, MediaType.get("text/plain")))
+                .build();
+    }
+
+    /**
+     * Clock which only moves when advanced by the test.
+     */
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2021-01-01T00:00:00Z");
+
+        void advance(final Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import de.fraunhofer.iais.eis.Resource;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test coalescing, rate limiting and retrying of the BrokerResourceUpdateQueue
+ */
+public class BrokerResourceUpdateQueueTest {
+
+    private static final String BROKER = "https://broker.example.com/infrastructure";
+    private static final Duration LONG_WINDOW = Duration.ofMinutes(1);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * an update followed by a removal of the same resource must only send the removal, a removal followed
+     * by an update must only send the update
+     * @throws Exception if the queue cannot be flushed
+     */
+    @Test
+    public void testCoalescing() throws Exception {
+        final var removed = resource("https://example.com/removed");
+        final var updated = resource("https://example.com/updated");
+        final var service = service();
+
+        try (var queue = new BrokerResourceUpdateQueue(service, LONG_WINDOW, 100)) {
+            queue.update(BROKER, removed);
+            queue.remove(BROKER, removed);
+            queue.remove(BROKER, updated);
+            queue.update(BROKER, updated);
+            assertEquals(2, queue.pendingCount());
+            assertTrue(queue.flush(TIMEOUT));
+        }
+
+        Mockito.verify(service).removeResourceFromBroker(BROKER, removed);
+        Mockito.verify(service, Mockito.never()).updateResourceAtBroker(BROKER, removed);
+        Mockito.verify(service).updateResourceAtBroker(BROKER, updated);
+        Mockito.verify(service, Mockito.never()).removeResourceFromBroker(BROKER, updated);
+    }
+
+    /**
+     * consecutive calls to the same broker must keep the minimum interval of the rate limit
+     * @throws Exception if the queue cannot be flushed
+     */
+    @Test
+    public void testBrokerInterval() throws Exception {
+        final var calls = new CopyOnWriteArrayList<Long>();
+        final var service = service();
+        Mockito.when(service.updateResourceAtBroker(Mockito.anyString(), Mockito.any())).thenAnswer(invocation -> {
+            calls.add(System.nanoTime());
+            return response(200);
+        });
+
+        try (var queue = new BrokerResourceUpdateQueue(service, Duration.ZERO, 5)) {
+            for (var i = 0; i < 3; i++) {
+                queue.update(BROKER, resource("https://example.com/" + i));
+            }
+            assertTrue(queue.flush(TIMEOUT));
+        }
+
+        assertEquals(3, calls.size());
+        for (var i = 1; i < calls.size(); i++) {
+            final var gap = TimeUnit.NANOSECONDS.toMillis(calls.get(i) - calls.get(i - 1));
+            assertTrue(gap >= 190, "gap between calls: " + gap + " ms");
+        }
+    }
+
+    /**
+     * a failed change must be retried, but not if a newer change of the resource was queued in the meantime
+     * @throws Exception if the queue cannot be flushed
+     */
+    @Test
+    public void testRetry() throws Exception {
+        final var retried = resource("https://example.com/retried");
+        final var replaced = resource("https://example.com/replaced");
+        final var queueRef = new AtomicReference<BrokerResourceUpdateQueue>();
+        final var service = service();
+        Mockito.when(service.updateResourceAtBroker(BROKER, retried))
+                .thenReturn(response(500))
+                .thenAnswer(invocation -> response(200));
+        Mockito.when(service.updateResourceAtBroker(BROKER, replaced)).thenAnswer(invocation -> {
+            //the resource is removed while its update is sent
+            queueRef.get().remove(BROKER, replaced);
+            throw new IOException("broker not reachable");
+        });
+
+        try (var queue = new BrokerResourceUpdateQueue(service, Duration.ZERO, 100)) {
+            queueRef.set(queue);
+            queue.update(BROKER, retried);
+            queue.update(BROKER, replaced);
+            assertTrue(queue.flush(TIMEOUT));
+        }
+
+        Mockito.verify(service, Mockito.times(2)).updateResourceAtBroker(BROKER, retried);
+        Mockito.verify(service, Mockito.times(1)).updateResourceAtBroker(BROKER, replaced);
+        Mockito.verify(service, Mockito.times(1)).removeResourceFromBroker(BROKER, replaced);
+    }
+
+    /**
+     * flush and close must send all pending changes of all brokers, a closed queue must not accept changes
+     * @throws Exception if the queue cannot be flushed
+     */
+    @Test
+    public void testFlushAndClose() throws Exception {
+        final var service = service();
+        final var brokers = List.of(BROKER, "https://other-broker.example.com/infrastructure");
+
+        final var queue = new BrokerResourceUpdateQueue(service, LONG_WINDOW, 100);
+        for (final var broker : brokers) {
+            queue.update(broker, resource("https://example.com/flushed"));
+        }
+        assertTrue(queue.flush(TIMEOUT));
+        assertEquals(0, queue.pendingCount());
+
+        for (final var broker : brokers) {
+            queue.update(broker, resource("https://example.com/closed"));
+        }
+        queue.close();
+        assertEquals(0, queue.pendingCount());
+        Mockito.verify(service, Mockito.times(4)).updateResourceAtBroker(Mockito.anyString(), Mockito.any());
+        assertThrows(IllegalStateException.class, () -> queue.update(BROKER, resource("https://example.com/late")));
+
+        assertThrows(IllegalArgumentException.class, () -> new BrokerResourceUpdateQueue(service, Duration.ofSeconds(-1), 1));
+        assertThrows(IllegalArgumentException.class, () -> new BrokerResourceUpdateQueue(service, Duration.ZERO, 0));
+    }
+
+    private static IDSBrokerService service() throws IOException {
+        final var service = Mockito.mock(IDSBrokerService.class);
+        Mockito.when(service.updateResourceAtBroker(Mockito.anyString(), Mockito.any())).thenAnswer(invocation -> response(200));
+        Mockito.when(service.removeResourceFromBroker(Mockito.anyString(), Mockito.any())).thenAnswer(invocation -> response(200));
+        return service;
+    }
+
+    private static Resource resource(final String id) {
+        final var resource = Mockito.mock(Resource.class);
+        Mockito.when(resource.getId()).thenReturn(URI.create(id));
+        return resource;
+    }
+
+    private static Response response(final int code) {
+        return new Response.Builder()
+                .request(new Request.Builder().url(BROKER).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("test")
+                .body(ResponseBody.create("", MediaType.get("text/plain")))
+                .build();
+    }
+}
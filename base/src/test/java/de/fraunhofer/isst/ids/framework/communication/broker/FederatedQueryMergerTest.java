@@ -0,0 +1,113 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test merging the query responses of several brokers
+ */
+public class FederatedQueryMergerTest {
+
+    private static final String FIRST = "https://first-broker.example.com/infrastructure";
+    private static final String SECOND = "https://second-broker.example.com/infrastructure";
+    private static final String THIRD = "https://third-broker.example.com/infrastructure";
+
+    /**
+     * the id of a row must be its first column without angle brackets, quoted CSV columns must be unquoted
+     */
+    @Test
+    public void testResultId() {
+        assertEquals("https://example.com/r", FederatedQueryMerger.resultId("<https://example.com/r>\t\"title\"", '\t'));
+        assertEquals("https://example.com/r", FederatedQueryMerger.resultId("<https://example.com/r>", '\t'));
+        assertEquals("https://example.com/r,1", FederatedQueryMerger.resultId("<https://example.com/r,1>\tx", '\t'));
+        assertEquals("https://example.com/r", FederatedQueryMerger.resultId("https://example.com/r,title", ','));
+        assertEquals("a,\"b\"", FederatedQueryMerger.resultId("\"a,\"\"b\"\"\",title", ','));
+
+        assertEquals('\t', FederatedQueryMerger.separator(MediaType.get("text/tab-separated-values; charset=utf-8")));
+        assertEquals(',', FederatedQueryMerger.separator(MediaType.get("text/csv")));
+        assertEquals(0, FederatedQueryMerger.separator(MediaType.get("application/sparql-results+json")));
+        assertEquals(0, FederatedQueryMerger.separator(null));
+    }
+
+    /**
+     * TSV and CSV rows must be merged without their header lines and deduplicated by resource id,
+     * other payloads must be returned per broker
+     * @throws IOException if a response cannot be built
+     */
+    @Test
+    public void testDeduplication() throws IOException {
+        final var received = new ArrayList<String>();
+        final var merger = new FederatedQueryMerger(received::add);
+
+        merger.accept(result(FIRST, FederatedQueryMerger.TSV, "?s\t?title\n<https://example.com/r1>\t\"one\"\n<https://example.com/r2>\t\"two\"\n"));
+        merger.accept(result(SECOND, FederatedQueryMerger.CSV, "s,title\r\nhttps://example.com/r2,two\r\nhttps://example.com/r3,three\r\n"));
+        merger.accept(result(THIRD, "application/sparql-results+json", "{\"results\":{\"bindings\":[]}}"));
+
+        final var result = merger.result(List.of(FIRST, SECOND, THIRD));
+        assertEquals(List.of("<https://example.com/r1>\t\"one\"", "<https://example.com/r2>\t\"two\"", "https://example.com/r3,three"),
+                result.getRows());
+        assertEquals(result.getRows(), received);
+        assertEquals(Map.of(THIRD, "{\"results\":{\"bindings\":[]}}"), result.getUnmergedPayloads());
+        assertEquals(3, result.getBrokerResults().size());
+        assertTrue(result.isComplete());
+    }
+
+    /**
+     * the result taken at the deadline must list the brokers which did not answer, later responses must be ignored
+     * @throws IOException if a response cannot be built
+     */
+    @Test
+    public void testPartialResult() throws IOException {
+        final var received = new ArrayList<String>();
+        final var merger = new FederatedQueryMerger(received::add);
+
+        merger.accept(result(FIRST, FederatedQueryMerger.TSV, "?s\n<https://example.com/r1>\n"));
+        merger.accept(BrokerResult.failed(SECOND, new ConnectException("refused"), Duration.ZERO));
+
+        final var result = merger.result(List.of(FIRST, SECOND, THIRD));
+        assertFalse(result.isComplete());
+        assertEquals(List.of(THIRD), result.getMissingBrokers());
+        assertEquals(List.of("<https://example.com/r1>"), result.getRows());
+        assertEquals(2, result.getBrokerResults().size());
+        assertFalse(result.getBrokerResults().get(1).isSuccess());
+
+        merger.accept(result(THIRD, FederatedQueryMerger.TSV, "?s\n<https://example.com/late>\n"));
+        assertEquals(List.of("<https://example.com/r1>"), received);
+        assertEquals(List.of("<https://example.com/r1>"), result.getRows());
+    }
+
+    private static BrokerResult result(final String broker, final String payloadType, final String payload) throws IOException {
+        final var body = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                .addFormDataPart("header", "{}")
+                .addFormDataPart("payload", null, RequestBody.create(payload, MediaType.get(payloadType)))
+                .build();
+        final var buffer = new Buffer();
+        body.writeTo(buffer);
+        final var response = new Response.Builder()
+                .request(new Request.Builder().url(broker).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(buffer.readByteArray(), body.contentType()))
+                .build();
+        return BrokerResult.of(broker, response, Duration.ZERO);
+    }
+}
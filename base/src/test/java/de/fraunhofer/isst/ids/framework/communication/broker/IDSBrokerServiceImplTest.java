@@ -0,0 +1,283 @@
+package de.fraunhofer.isst.ids.framework.communication.broker;
+
+import de.fraunhofer.iais.eis.Connector;
+import de.fraunhofer.iais.eis.DynamicAttributeToken;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.MessageProcessedNotificationMessageBuilder;
+import de.fraunhofer.iais.eis.RejectionMessageBuilder;
+import de.fraunhofer.iais.eis.RejectionReason;
+import de.fraunhofer.iais.eis.ResourceBuilder;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
+import de.fraunhofer.isst.ids.framework.daps.DapsTokenProvider;
+import de.fraunhofer.isst.ids.framework.util.ClientProvider;
+import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test sending messages to several brokers concurrently, removing resources and skipping unchanged updates with the IDSBrokerService
+ */
+public class IDSBrokerServiceImplTest {
+
+    private static final int BROKERS = 6;
+    private static final int PARALLEL = 2;
+    private static final URI CONNECTOR = URI.create("https://connector.example.com");
+
+    /**
+     * the results must be returned in the order of the brokers, also if later brokers answer first,
+     * and at most maxParallelRequests calls may be in flight
+     * @throws Exception if the mock server cannot be started
+     */
+    @Test
+    public void testFanOutOrderAndParallelism() throws Exception {
+        final var inFlight = new AtomicInteger();
+        final var maxInFlight = new AtomicInteger();
+        try (var server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull final RecordedRequest request) throws InterruptedException {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        final var index = Integer.parseInt(request.getPath().substring(1));
+                        //earlier brokers answer slower
+                        Thread.sleep((BROKERS - index) * 50L);
+                        return new MockResponse().setBody(request.getPath());
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            });
+            server.start();
+
+            final var brokers = new ArrayList<String>();
+            for (var i = 0; i < BROKERS; i++) {
+                brokers.add(server.url("/" + i).toString());
+            }
+            final var service = service();
+            service.setMaxParallelRequests(PARALLEL);
+
+            final var results = service.updateSelfDescriptionAtBrokersAsync(brokers, Duration.ofSeconds(10)).join();
+            assertEquals(BROKERS, results.size());
+            for (var i = 0; i < BROKERS; i++) {
+                final var result = results.get(i);
+                assertEquals(brokers.get(i), result.getBrokerUri());
+                assertTrue(result.isSuccess());
+                try (var body = result.getResponse().body()) {
+                    assertEquals("/" + i, body.string());
+                }
+            }
+            assertEquals(BROKERS, server.getRequestCount());
+            assertTrue(maxInFlight.get() <= PARALLEL, "in flight: " + maxInFlight.get());
+        }
+    }
+
+    /**
+     * a broker closing the connection and a broker not answering within the timeout must produce failed results,
+     * without affecting the results of the other brokers
+     * @throws Exception if the mock server cannot be started
+     */
+    @Test
+    public void testFanOutPartialFailure() throws Exception {
+        try (var server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull final RecordedRequest request) {
+                    switch (request.getPath()) {
+                        case "/disconnect":
+                            return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+                        case "/silent":
+                            return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+                        default:
+                            return new MockResponse().setBody("ok");
+                    }
+                }
+            });
+            server.start();
+
+            final var brokers = List.of(server.url("/first").toString(),
+                    server.url("/disconnect").toString(),
+                    server.url("/silent").toString(),
+                    server.url("/last").toString());
+            final var service = service();
+            service.setMaxParallelRequests(PARALLEL);
+
+            final var results = service.updateSelfDescriptionAtBrokersAsync(brokers, Duration.ofMillis(500)).join();
+            assertEquals(brokers.size(), results.size());
+
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertNotNull(results.get(1).getError());
+            assertFalse(results.get(2).isSuccess());
+            assertTrue(results.get(2).getError() instanceof InterruptedIOException, String.valueOf(results.get(2).getError()));
+            assertTrue(results.get(3).isSuccess());
+            for (final var result : results) {
+                if (result.getResponse() != null) {
+                    result.getResponse().close();
+                }
+            }
+        }
+    }
+
+    /**
+     * with change detection, unchanged self-descriptions must only be sent again to brokers which did not accept them
+     * (status 200 with a RejectionMessage header), without change detection they must always be sent
+     * @throws Exception if the mock server cannot be started
+     */
+    @Test
+    public void testChangeDetection() throws Exception {
+        final var accepted = multipartResponse(new MessageProcessedNotificationMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())._issuerConnector_(CONNECTOR)._senderAgent_(CONNECTOR)
+                ._modelVersion_("4.0.0")._securityToken_(token())._correlationMessage_(CONNECTOR)
+                .build());
+        final var rejected = multipartResponse(new RejectionMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())._issuerConnector_(CONNECTOR)._senderAgent_(CONNECTOR)
+                ._modelVersion_("4.0.0")._securityToken_(token())._correlationMessage_(CONNECTOR)
+                ._rejectionReason_(RejectionReason.MALFORMED_MESSAGE)
+                .build());
+        try (var server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull final RecordedRequest request) {
+                    return "/rejecting".equals(request.getPath()) ? rejected : accepted;
+                }
+            });
+            server.start();
+            final var accepting = server.url("/accepting").toString();
+            final var rejecting = server.url("/rejecting").toString();
+
+            final var unchecked = service();
+            for (var i = 0; i < 2; i++) {
+                unchecked.updateSelfDescriptionAtBroker(accepting).close();
+            }
+            assertEquals(2, server.getRequestCount());
+
+            final var service = service();
+            service.setChangeDetection(true);
+            for (var i = 0; i < 2; i++) {
+                final var results = service.updateSelfDescriptionAtBrokersAsync(List.of(accepting, rejecting), Duration.ofSeconds(10)).join();
+                assertEquals(i == 1, results.get(0).isNotModified());
+                assertTrue(results.get(0).isSuccess());
+                assertFalse(results.get(1).isNotModified());
+                for (final var result : results) {
+                    if (result.getResponse() != null) {
+                        result.getResponse().close();
+                    }
+                }
+            }
+            assertEquals(5, server.getRequestCount());
+            assertNull(service.updateSelfDescriptionAtBroker(accepting));
+            assertEquals(5, server.getRequestCount());
+
+            service.forgetPublishedState(accepting);
+            service.updateSelfDescriptionAtBroker(accepting).close();
+            assertEquals(6, server.getRequestCount());
+        }
+    }
+
+    /**
+     * a successful removal must return the response of the broker and, with change detection, let the next update
+     * of the resource be sent again
+     * @throws Exception if the mock server cannot be started
+     */
+    @Test
+    public void testRemoveResource() throws Exception {
+        final var accepted = multipartResponse(new MessageProcessedNotificationMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())._issuerConnector_(CONNECTOR)._senderAgent_(CONNECTOR)
+                ._modelVersion_("4.0.0")._securityToken_(token())._correlationMessage_(CONNECTOR)
+                .build());
+        final var resource = new ResourceBuilder(URI.create("https://connector.example.com/resource")).build();
+        try (var server = new MockWebServer()) {
+            server.setDispatcher(new Dispatcher() {
+                @NotNull
+                @Override
+                public MockResponse dispatch(@NotNull final RecordedRequest request) {
+                    return accepted;
+                }
+            });
+            server.start();
+            final var broker = server.url("/").toString();
+
+            final var unchecked = service();
+            try (var response = unchecked.removeResourceFromBroker(broker, resource)) {
+                assertTrue(response.isSuccessful());
+            }
+            assertEquals(1, server.getRequestCount());
+
+            final var service = service();
+            service.setChangeDetection(true);
+            try (var response = service.removeResourceFromBroker(broker, resource)) {
+                assertTrue(response.isSuccessful());
+            }
+            service.updateResourceAtBroker(broker, resource).close();
+            assertNull(service.updateResourceAtBroker(broker, resource));
+            assertEquals(3, server.getRequestCount());
+
+            try (var response = service.removeResourceFromBroker(broker, resource)) {
+                assertTrue(response.isSuccessful());
+            }
+            service.updateResourceAtBroker(broker, resource).close();
+            assertEquals(5, server.getRequestCount());
+        }
+    }
+
+    private static MockResponse multipartResponse(final Message header) throws IOException {
+        final var body = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                .addFormDataPart("header", new Serializer().serialize(header))
+                .build();
+        final var buffer = new Buffer();
+        body.writeTo(buffer);
+        return new MockResponse().setHeader("Content-Type", body.contentType().toString()).setBody(buffer);
+    }
+
+    private static IDSBrokerServiceImpl service() throws IOException {
+        final var connector = Mockito.mock(Connector.class);
+        Mockito.when(connector.getId()).thenReturn(CONNECTOR);
+        final var container = Mockito.mock(ConfigurationContainer.class);
+        Mockito.when(container.getConnector()).thenReturn(connector);
+        Mockito.when(container.getSerializedSelfDescription()).thenReturn("{}");
+
+        final var clientProvider = Mockito.mock(ClientProvider.class);
+        Mockito.when(clientProvider.getClient()).thenReturn(new OkHttpClient());
+
+        final var tokenProvider = Mockito.mock(DapsTokenProvider.class);
+        Mockito.when(tokenProvider.getDAT()).thenReturn(token());
+
+        return new IDSBrokerServiceImpl(container, clientProvider, tokenProvider);
+    }
+
+    private static DynamicAttributeToken token() {
+        return new DynamicAttributeTokenBuilder()
+                ._tokenFormat_(TokenFormat.JWT)
+                ._tokenValue_("token")
+                .build();
+    }
+}
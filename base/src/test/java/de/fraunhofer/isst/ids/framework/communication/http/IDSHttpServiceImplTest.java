@@ -0,0 +1,159 @@
+package de.fraunhofer.isst.ids.framework.communication.http;
+
+import de.fraunhofer.iais.eis.ConfigurationModel;
+import de.fraunhofer.iais.eis.ConnectorDeployMode;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.RequestMessage;
+import de.fraunhofer.iais.eis.RequestMessageBuilder;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
+import de.fraunhofer.isst.ids.framework.daps.DapsValidator;
+import de.fraunhofer.isst.ids.framework.util.HeaderEncoding;
+import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test sending batches and negotiating header encodings with the IDSHttpService
+ */
+public class IDSHttpServiceImplTest {
+
+    private static final URI TARGET = URI.create("https://connector.example.com/api/ids/batch");
+
+    /**
+     * the responses of a batch must be returned in the order of the messages
+     * @throws Exception if the batch cannot be sent
+     */
+    @Test
+    public void testSendBatch() throws Exception {
+        final var body = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                .addFormDataPart(InfomodelMessageBuilder.batchHeaderPart(1), "second header")
+                .addFormDataPart(InfomodelMessageBuilder.batchHeaderPart(0), "first header")
+                .addFormDataPart(InfomodelMessageBuilder.batchPayloadPart(0), "first payload")
+                .build();
+        final var buffer = new Buffer();
+        body.writeTo(buffer);
+        final var service = service(response(200, buffer.readByteArray(), body.contentType()));
+
+        final var responses = service.sendBatch(List.of(buildHeader(), buildHeader()), List.of("a", "b"), TARGET);
+        assertEquals(2, responses.size());
+        assertEquals("first header", responses.get(0).get("header"));
+        assertEquals("first payload", responses.get(0).get("payload"));
+        assertEquals("second header", responses.get(1).get("header"));
+        assertNull(responses.get(1).get("payload"));
+    }
+
+    /**
+     * a rejected batch must fail, even if the HttpService returns the response
+     * @throws Exception if the service cannot be created
+     */
+    @Test
+    public void testRejectedBatch() throws Exception {
+        final var service = service(response(413, "too large".getBytes(), MediaType.get("text/plain")));
+        assertThrows(IOException.class, () -> service.sendBatch(List.of(buildHeader()), List.of("a"), TARGET));
+    }
+
+    /**
+     * header encodings must only be negotiated after enabling the negotiation, peers answering without
+     * a binary encoding must use JSON-LD
+     * @throws Exception if the service cannot be created
+     */
+    @Test
+    public void testHeaderEncodingNegotiation() throws Exception {
+        final var rejected = response(413, "too large".getBytes(), MediaType.get("text/plain")).newBuilder()
+                .header(HeaderEncoding.ACCEPT_HEADER, HeaderEncoding.supportedMediaTypes())
+                .build();
+        final var service = service(rejected);
+
+        assertThrows(IOException.class, () -> service.sendBatch(List.of(buildHeader()), List.of("a"), TARGET));
+        assertEquals(HeaderEncoding.JSON_LD, service.getHeaderEncoding(TARGET));
+
+        service.setHeaderEncodingNegotiation(true);
+        assertThrows(IOException.class, () -> service.sendBatch(List.of(buildHeader()), List.of("a"), TARGET));
+        assertEquals(HeaderEncoding.CBOR, service.getHeaderEncoding(TARGET));
+        assertEquals(1, service.peerEncodings.size());
+
+        service.setHeaderEncodings(List.of(HeaderEncoding.JSON_LD));
+        assertThrows(IOException.class, () -> service.sendBatch(List.of(buildHeader()), List.of("a"), TARGET));
+        assertEquals(HeaderEncoding.JSON_LD, service.getHeaderEncoding(TARGET));
+        assertEquals(0, service.peerEncodings.size());
+    }
+
+    /**
+     * messages for local targets must be dispatched in-process, unless they carry additional http headers
+     * which only the IDSController evaluates
+     * @throws Exception if the message cannot be sent
+     */
+    @Test
+    public void testLoopbackWithHeaders() throws Exception {
+        final var body = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                .addFormDataPart("header", "remote header")
+                .build();
+        final var buffer = new Buffer();
+        body.writeTo(buffer);
+        final var service = service(response(200, buffer.readByteArray(), body.contentType()));
+        final var loopback = Mockito.mock(LoopbackDispatcher.class);
+        Mockito.when(loopback.isLocalTarget(TARGET)).thenReturn(true);
+        Mockito.when(loopback.dispatch(Mockito.anyString(), Mockito.any())).thenReturn(Map.of("header", "local header"));
+        service.setLoopbackDispatcher(loopback);
+
+        final var request = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                .addFormDataPart("header", "{}")
+                .build();
+        assertEquals("local header", service.sendWithHeadersAndCheckDat(request, TARGET, Map.of()).get("header"));
+        assertEquals("remote header", service.sendWithHeadersAndCheckDat(request, TARGET,
+                Map.of("IDS-Payload-Range", "bytes=0-9")).get("header"));
+        Mockito.verify(loopback, Mockito.times(1)).dispatch(Mockito.anyString(), Mockito.any());
+    }
+
+    private static IDSHttpServiceImpl service(final Response response) throws IOException {
+        final var httpService = Mockito.mock(HttpService.class);
+        Mockito.when(httpService.send(Mockito.any(RequestBody.class), Mockito.any())).thenReturn(response);
+        Mockito.when(httpService.sendWithHeaders(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(response);
+        final var configModel = Mockito.mock(ConfigurationModel.class);
+        Mockito.when(configModel.getConnectorDeployMode()).thenReturn(ConnectorDeployMode.TEST_DEPLOYMENT);
+        final var container = Mockito.mock(ConfigurationContainer.class);
+        Mockito.when(container.getConfigModel()).thenReturn(configModel);
+        return new IDSHttpServiceImpl(httpService, Mockito.mock(DapsValidator.class), container);
+    }
+
+    private static Response response(final int code, final byte[] body, final MediaType contentType) {
+        return new Response.Builder()
+                .request(new Request.Builder().url(TARGET.toString()).build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("test")
+                .body(ResponseBody.create(body, contentType))
+                .build();
+    }
+
+    private static RequestMessage buildHeader() {
+        return new RequestMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())
+                ._issuerConnector_(URI.create("https://example.com"))
+                ._senderAgent_(URI.create("https://example.com"))
+                ._modelVersion_("4.0.0")
+                ._securityToken_(new DynamicAttributeTokenBuilder()
+                        ._tokenFormat_(TokenFormat.JWT)
+                        ._tokenValue_("")
+                        .build())
+                .build();
+    }
+}
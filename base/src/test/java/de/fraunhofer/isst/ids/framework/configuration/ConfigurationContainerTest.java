@@ -0,0 +1,61 @@
+package de.fraunhofer.isst.ids.framework.configuration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fraunhofer.iais.eis.BaseConnectorBuilder;
+import de.fraunhofer.iais.eis.ConfigurationModelBuilder;
+import de.fraunhofer.iais.eis.ConnectorDeployMode;
+import de.fraunhofer.iais.eis.ConnectorEndpointBuilder;
+import de.fraunhofer.iais.eis.ConnectorStatus;
+import de.fraunhofer.iais.eis.LogLevel;
+import de.fraunhofer.iais.eis.SecurityProfile;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test caching of the serialized self-description in the ConfigurationContainer.
+ */
+public class ConfigurationContainerTest {
+
+    /**
+     * the serialized self-description must be cached while the connector is unchanged and serialized again
+     * after the connector was modified in place
+     * @throws IOException if the connector cannot be serialized
+     */
+    @Test
+    public void testSelfDescriptionFollowsConnector() throws IOException {
+        final var connector = new BaseConnectorBuilder()
+                ._curator_(URI.create("https://example.com"))
+                ._inboundModelVersion_(new ArrayList<>(List.of("4.0.0")))
+                ._maintainer_(URI.create("https://example.com"))
+                ._outboundModelVersion_("4.0.0")
+                ._securityProfile_(SecurityProfile.BASE_SECURITY_PROFILE)
+                ._hasDefaultEndpoint_(new ConnectorEndpointBuilder()._accessURL_(URI.create("https://example.com")).build())
+                .build();
+        final var model = new ConfigurationModelBuilder()
+                ._configurationModelLogLevel_(LogLevel.MINIMAL_LOGGING)
+                ._connectorDeployMode_(ConnectorDeployMode.TEST_DEPLOYMENT)
+                ._connectorStatus_(ConnectorStatus.CONNECTOR_OFFLINE)
+                ._connectorDescription_(connector)
+                .build();
+        final var container = new ConfigurationContainer(model, null);
+
+        final var json = container.getSerializedSelfDescription();
+        final var hash = container.getSelfDescriptionHash();
+        assertSame(json, container.getSerializedSelfDescription());
+        assertEquals(hash, container.getSelfDescriptionHash());
+
+        connector.getInboundModelVersion().add("4.0.10");
+        final var modified = container.getSerializedSelfDescription();
+        assertTrue(modified.contains("4.0.10"));
+        assertNotEquals(hash, container.getSelfDescriptionHash());
+        assertSame(modified, container.getSerializedSelfDescription());
+    }
+}
@@ -0,0 +1,66 @@
+package de.fraunhofer.isst.ids.framework.daps;
+
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.RejectionMessageBuilder;
+import de.fraunhofer.iais.eis.RejectionReason;
+import de.fraunhofer.iais.eis.ResponseMessageBuilder;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test checking the DAT of responses which were already parsed to a multipart map
+ */
+public class DapsValidatorTest {
+
+    private static final URI CONNECTOR = URI.create("https://connector.example.com");
+
+    /**
+     * RejectionMessages are accepted without DAT, other messages need a valid DAT and unparsable headers are invalid
+     * @throws IOException if a header cannot be serialized
+     * @throws NoSuchAlgorithmException if no RSA key can be generated
+     */
+    @Test
+    public void testCheckDatOfMultipartMap() throws IOException, NoSuchAlgorithmException {
+        final var publicKey = KeyPairGenerator.getInstance("RSA").generateKeyPair().getPublic();
+        final var validator = new DapsValidator(() -> publicKey);
+        final var serializer = new Serializer();
+        final var token = new DynamicAttributeTokenBuilder()
+                ._tokenFormat_(TokenFormat.JWT)
+                ._tokenValue_("not a jwt")
+                .build();
+
+        final var rejection = new RejectionMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())
+                ._issuerConnector_(CONNECTOR)
+                ._senderAgent_(CONNECTOR)
+                ._modelVersion_("4.0.0")
+                ._correlationMessage_(URI.create("https://connector.example.com/message"))
+                ._rejectionReason_(RejectionReason.NOT_AUTHENTICATED)
+                ._securityToken_(token)
+                .build();
+        assertTrue(validator.checkDat(Map.of("header", serializer.serialize(rejection))));
+
+        final var response = new ResponseMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())
+                ._issuerConnector_(CONNECTOR)
+                ._senderAgent_(CONNECTOR)
+                ._modelVersion_("4.0.0")
+                ._correlationMessage_(URI.create("https://connector.example.com/message"))
+                ._securityToken_(token)
+                .build();
+        assertFalse(validator.checkDat(Map.of("header", serializer.serialize(response), "payload", "")));
+
+        assertFalse(validator.checkDat(Map.of("header", "{ not json-ld")));
+    }
+}
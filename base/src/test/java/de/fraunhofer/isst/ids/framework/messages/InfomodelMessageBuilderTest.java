@@ -1,16 +1,34 @@
 package de.fraunhofer.isst.ids.framework.messages;
 
 import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RequestMessage;
 import de.fraunhofer.iais.eis.RequestMessageBuilder;
 import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
 import de.fraunhofer.isst.ids.framework.communication.http.InfomodelMessageBuilder;
+import de.fraunhofer.isst.ids.framework.util.HeaderEncoding;
 import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import de.fraunhofer.isst.ids.framework.util.MultipartStringParser;
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
+import okhttp3.MediaType;
+import okhttp3.MultipartReader;
+import okio.Buffer;
+import okio.ForwardingSink;
+import okio.Okio;
+import org.apache.commons.fileupload.FileUploadException;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Test building an Infomodel Message
@@ -37,4 +55,101 @@ public class InfomodelMessageBuilderTest {
         assertNotNull(InfomodelMessageBuilder.messageWithString(header, "somepayload"));
     }
 
+    /**
+     * headers in every encoding must be parsed back to the original header
+     * @throws IOException if header cannot be serialized to JsonLD
+     * @throws FileUploadException if the built message cannot be parsed
+     */
+    @Test
+    public void testHeaderEncodings() throws IOException, FileUploadException {
+        final var serializer = new Serializer();
+        final var header = buildHeader();
+        for (final var encoding : HeaderEncoding.values()) {
+            final var buffer = new Buffer();
+            InfomodelMessageBuilder.messageWithString(header, "somepayload", encoding).writeTo(buffer);
+
+            final var parts = MultipartStringParser.bytesToMultipart(buffer.readByteArray());
+            final var parsed = serializer.deserialize(parts.get("header"), Message.class);
+            assertEquals(header.getId(), parsed.getId(), encoding.name());
+            assertEquals("somepayload", parts.get("payload"), encoding.name());
+        }
+    }
+
+    /**
+     * large payloads must be compressed and parsed back to the original payload
+     * @throws IOException if header cannot be serialized to JsonLD
+     * @throws FileUploadException if the built message cannot be parsed
+     */
+    @Test
+    public void testPayloadCompression() throws IOException, FileUploadException {
+        final var payload = "id;name;value\n1;\u00e4\u00f6\u00fc;42\n".repeat(200);
+        final var plain = new Buffer();
+        InfomodelMessageBuilder.messageWithString(buildHeader(), payload, HeaderEncoding.JSON_LD, PayloadEncoding.IDENTITY).writeTo(plain);
+        final var compressed = new Buffer();
+        InfomodelMessageBuilder.messageWithString(buildHeader(), payload, HeaderEncoding.JSON_LD, PayloadEncoding.GZIP).writeTo(compressed);
+        assertTrue(compressed.size() < plain.size() / 4);
+
+        final var parts = MultipartStringParser.bytesToMultipart(compressed.readByteArray());
+        assertEquals(payload, parts.get("payload"));
+    }
+
+    /**
+     * large file payloads must be compressed while the message is written, without closing the shared sink
+     * @throws IOException if header cannot be serialized to JsonLD or the file cannot be written
+     */
+    @Test
+    public void testFileCompression() throws IOException {
+        final var payload = "id;name;value\n1;\u00e4\u00f6\u00fc;42\n".repeat(200);
+        final var file = Files.createTempFile("payload", ".csv");
+        try {
+            Files.writeString(file, payload);
+            final var buffer = new Buffer();
+            final var closed = new AtomicBoolean();
+            final var sink = Okio.buffer(new ForwardingSink(buffer) {
+                @Override
+                public void close() throws IOException {
+                    closed.set(true);
+                    super.close();
+                }
+            });
+            final var body = InfomodelMessageBuilder.messageWithFile(buildHeader(), file.toFile(),
+                    MediaType.get("text/csv; charset=utf-8"), HeaderEncoding.JSON_LD, PayloadEncoding.GZIP);
+            body.writeTo(sink);
+            sink.flush();
+            assertFalse(closed.get());
+            assertTrue(buffer.size() < payload.length() / 4);
+
+            //file parts are not returned by the MultipartStringParser
+            String received = null;
+            try (var reader = new MultipartReader(buffer, body.boundary())) {
+                MultipartReader.Part part;
+                while ((part = reader.nextPart()) != null) {
+                    if (part.headers().get("Content-Disposition").contains("name=\"payload\"")) {
+                        assertEquals(PayloadEncoding.GZIP.getCoding(), part.headers().get(PayloadEncoding.CONTENT_ENCODING));
+                        try (var stream = PayloadEncoding.GZIP.decompress(part.body().inputStream())) {
+                            received = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+                        }
+                    }
+                }
+            }
+            assertEquals(payload, received);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private RequestMessage buildHeader() {
+        return new RequestMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())
+                ._issuerConnector_(URI.create("https://example.com"))
+                ._senderAgent_(URI.create("https://example.com"))
+                ._modelVersion_("3.1.2-SNAPSHOT")
+                ._securityToken_(new DynamicAttributeTokenBuilder()
+                        ._tokenFormat_(TokenFormat.JWT)
+                        ._tokenValue_("")
+                        .build()
+                )
+                .build();
+    }
+
 }
@@ -0,0 +1,93 @@
+package de.fraunhofer.isst.ids.framework.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.ArtifactRequestMessageImpl;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the type resolution of the MessageDeserializer.
+ */
+public class MessageDeserializerTest {
+
+    /**
+     * a serialized header must be deserialized into its concrete subtype
+     * @throws IOException if the header cannot be (de)serialized
+     */
+    @Test
+    public void testSubtypeResolution() throws IOException {
+        final var serializer = new Serializer();
+        final var header = header();
+        final var json = serializer.serialize(header);
+
+        assertEquals(Optional.of("ids:ArtifactRequestMessage"), MessageDeserializer.sniffType(json));
+        assertEquals(Optional.of(ArtifactRequestMessageImpl.class), MessageDeserializer.resolveClass("ids:ArtifactRequestMessage"));
+        assertEquals(Optional.of(ArtifactRequestMessageImpl.class),
+                MessageDeserializer.resolveClass("https://w3id.org/idsa/core/ArtifactRequestMessage"));
+        assertEquals(ArtifactRequestMessageImpl.class, MessageDeserializer.TYPE_CACHE.get("ids:ArtifactRequestMessage"));
+
+        final var deserialized = MessageDeserializer.deserialize(serializer, json);
+        assertTrue(deserialized instanceof ArtifactRequestMessage);
+        assertEquals(header.getId(), deserialized.getId());
+        assertEquals(header.getRequestedArtifact(), ((ArtifactRequestMessage) deserialized).getRequestedArtifact());
+    }
+
+    /**
+     * unknown types, missing types and failing fast path deserialization must use the generic path,
+     * unknown types must not be cached
+     * @throws IOException if the header cannot be deserialized
+     */
+    @Test
+    public void testMessageFallback() throws IOException {
+        assertEquals(Optional.empty(), MessageDeserializer.resolveClass("ids:NoSuchMessage"));
+        assertEquals(Optional.empty(), MessageDeserializer.resolveClass("https://example.com/ArtifactRequestMessage"));
+        assertEquals(Optional.empty(), MessageDeserializer.resolveClass("ids:Connector"));
+        assertEquals(Optional.empty(), MessageDeserializer.resolveClass("ids:any/ArtifactRequestMessage"));
+        assertFalse(MessageDeserializer.TYPE_CACHE.containsKey("ids:NoSuchMessage"));
+        assertFalse(MessageDeserializer.TYPE_CACHE.containsKey("ids:Connector"));
+        assertEquals(Optional.empty(), MessageDeserializer.sniffType("{\"@type\":[\"ids:ArtifactRequestMessage\"]}"));
+        assertEquals(Optional.empty(), MessageDeserializer.sniffType("not json"));
+
+        final var generic = Mockito.mock(Message.class);
+        final var untyped = "{\"@id\":\"https://example.com\"}";
+        final var serializer = Mockito.mock(Serializer.class);
+        Mockito.when(serializer.deserialize(untyped, Message.class)).thenReturn(generic);
+        assertSame(generic, MessageDeserializer.deserialize(serializer, untyped));
+        Mockito.verify(serializer, Mockito.times(1)).deserialize(Mockito.anyString(), Mockito.any());
+
+        final var typed = "{\"@type\":\"ids:ArtifactRequestMessage\"}";
+        Mockito.when(serializer.deserialize(typed, ArtifactRequestMessageImpl.class)).thenThrow(new IOException("fast path failed"));
+        Mockito.when(serializer.deserialize(typed, Message.class)).thenReturn(generic);
+        assertSame(generic, MessageDeserializer.deserialize(serializer, typed));
+        Mockito.verify(serializer).deserialize(typed, ArtifactRequestMessageImpl.class);
+        Mockito.verify(serializer).deserialize(typed, Message.class);
+    }
+
+    private static ArtifactRequestMessage header() {
+        return new ArtifactRequestMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())
+                ._issuerConnector_(URI.create("https://example.com"))
+                ._senderAgent_(URI.create("https://example.com"))
+                ._modelVersion_("4.0.0")
+                ._requestedArtifact_(URI.create("https://example.com/artifact"))
+                ._securityToken_(new DynamicAttributeTokenBuilder()
+                        ._tokenFormat_(TokenFormat.JWT)
+                        ._tokenValue_("token")
+                        .build())
+                .build();
+    }
+}
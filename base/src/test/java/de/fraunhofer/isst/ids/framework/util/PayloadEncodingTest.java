@@ -0,0 +1,73 @@
+package de.fraunhofer.isst.ids.framework.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.apache.commons.fileupload.FileUploadException;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test compression and size limited decompression of payloads.
+ */
+public class PayloadEncodingTest {
+
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    /**
+     * compressed payloads must be decompressed to the original bytes, decompression must fail beyond the limit
+     * @throws IOException if a payload cannot be compressed
+     */
+    @Test
+    public void testDecompressionLimit() throws IOException {
+        for (final var encoding : new PayloadEncoding[]{PayloadEncoding.GZIP, PayloadEncoding.DEFLATE}) {
+            final var compressed = encoding.compress(ZEROS);
+            try (var stream = encoding.decompress(new ByteArrayInputStream(compressed), ZEROS.length)) {
+                assertArrayEquals(ZEROS, stream.readAllBytes(), encoding.name());
+            }
+            try (var stream = encoding.decompress(new ByteArrayInputStream(compressed), ZEROS.length - 1)) {
+                assertThrows(IOException.class, stream::readAllBytes, encoding.name());
+            }
+        }
+
+        //uncompressed payloads are not limited
+        try (var stream = PayloadEncoding.IDENTITY.decompress(new ByteArrayInputStream(ZEROS), 1)) {
+            assertEquals(ZEROS.length, stream.readAllBytes().length);
+        }
+        assertThrows(IllegalArgumentException.class, () -> PayloadEncoding.setMaxDecompressedSize(0));
+    }
+
+    /**
+     * compressed parts of a multipart body must be rejected if they exceed the configured limit
+     * @throws Exception if the multipart body cannot be built
+     */
+    @Test
+    public void testMultipartDecompressionLimit() throws Exception {
+        final var body = new MultipartBody.Builder().setType(MultipartBody.FORM)
+                .addPart(Headers.of("Content-Disposition", "form-data; name=\"payload\"",
+                        PayloadEncoding.CONTENT_ENCODING, PayloadEncoding.GZIP.getCoding()),
+                        RequestBody.create(PayloadEncoding.GZIP.compress(ZEROS), MediaType.get("text/plain")))
+                .build();
+        final var buffer = new Buffer();
+        body.writeTo(buffer);
+        final var bytes = buffer.readByteArray();
+
+        assertEquals(ZEROS.length, MultipartStringParser.bytesToMultipart(bytes).get("payload").length());
+
+        final var previous = PayloadEncoding.getMaxDecompressedSize();
+        PayloadEncoding.setMaxDecompressedSize(1024);
+        try {
+            assertThrows(FileUploadException.class, () -> MultipartStringParser.bytesToMultipart(bytes));
+        } finally {
+            PayloadEncoding.setMaxDecompressedSize(previous);
+        }
+    }
+}
@@ -2,12 +2,19 @@ package de.fraunhofer.isst.ids.framework.messaging.handling;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.Part;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
 import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
 import de.fraunhofer.iais.eis.Message;
@@ -15,13 +22,24 @@ import de.fraunhofer.iais.eis.RejectionMessageBuilder;
 import de.fraunhofer.iais.eis.RejectionReason;
 import de.fraunhofer.iais.eis.TokenFormat;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.communication.http.InfomodelMessageBuilder;
 import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
 import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreProcessingException;
-import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.ErrorResponse;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.FileBodyResponse;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.MessageResponse;
+import de.fraunhofer.isst.ids.framework.util.HeaderEncoding;
+import de.fraunhofer.isst.ids.framework.util.MessageDeserializer;
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
+import de.fraunhofer.isst.ids.framework.util.TimeService;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -31,6 +49,10 @@ import org.springframework.util.MultiValueMap;
 
 /**
  * REST controller for handling all incoming IDS multipart Messages.
+ * Header parts may use any supported {@link HeaderEncoding}, response headers are encoded as requested by
+ * the {@link HeaderEncoding#ACCEPT_HEADER} of the request (JSON-LD by default).
+ * Compressed payload parts are decompressed, payloads of responses are compressed if the request lists the
+ * accepted codings in its {@link PayloadEncoding#ACCEPT_HEADER}.
  */
 @Slf4j
 @Controller
@@ -39,11 +61,17 @@ public class IDSController {
 
     static String HEADER_MULTIPART_NAME = "header";
     static String PAYLOAD_MULTIPART_NAME = "payload";
+    static final int DEFAULT_MAX_BATCH_SIZE = 64;
 
     MessageDispatcher messageDispatcher;
     ConfigurationContainer configurationContainer;
     Serializer serializer;
 
+    @NonFinal
+    volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    @NonFinal
+    volatile ExecutorService batchExecutor;
+
     @Autowired
     public IDSController(final MessageDispatcher messageDispatcher,
                          final Serializer serializer,
@@ -53,6 +81,51 @@ public class IDSController {
         this.configurationContainer = configurationContainer;
     }
 
+    /**
+     * Set the maximum number of messages of a batch, larger batches are rejected with status 413 (Payload Too Large).
+     *
+     * @param maxBatchSize maximum number of messages per batch, at least 1
+     *                     (property configuration.max-batch-size, default 64)
+     */
+    @Autowired
+    public void setMaxBatchSize(@Value("${configuration.max-batch-size:" + DEFAULT_MAX_BATCH_SIZE + "}") final int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("A batch has to contain at least one message!");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Set the executor the messages of a batch are handed to the MessageDispatcher on. If no executor is set, a pool
+     * with one daemon thread per available processor and a bounded queue is created on first use, messages which do
+     * not fit into its queue are dispatched by the servlet thread.
+     *
+     * @param batchExecutor the executor for messages of batches
+     */
+    public void setBatchExecutor(final ExecutorService batchExecutor) {
+        this.batchExecutor = batchExecutor;
+    }
+
+    /**
+     * Get the executor for messages of batches, create the default one if none is set.
+     * It is separate from the executor of the MessageDispatcher, which the messages of a batch wait for (filters).
+     *
+     * @return the executor for messages of batches
+     */
+    private ExecutorService getBatchExecutor() {
+        var current = batchExecutor;
+        if (current == null) {
+            synchronized (this) {
+                current = batchExecutor;
+                if (current == null) {
+                    current = MessageDispatcher.boundedExecutor("ids-batch");
+                    batchExecutor = current;
+                }
+            }
+        }
+        return current;
+    }
+
     /**
      * Generic method to handle all incoming ids messages. One Method to Rule them All.
      * Get header and payload from incoming message, let the MessageDispatcher and MessageHandler process it
@@ -67,52 +140,341 @@ public class IDSController {
             final var payloadPart = request.getPart(PAYLOAD_MULTIPART_NAME);
 
             if (headerPart == null) {
-                if (log.isDebugEnabled()) {
-                    log.debug("header or payload of incoming message were empty!");
-                }
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(createDefaultErrorMessage(RejectionReason.MALFORMED_MESSAGE, "Header was missing!"));
+                return missingHeader();
             }
 
-            String input;
+            final var requestHeader = readHeader(headerPart);
+
             if (log.isDebugEnabled()) {
-                log.debug("parsing header of incoming message");
+                log.debug("hand the incoming message to the message dispatcher!");
             }
-            try (var scanner = new Scanner(headerPart.getInputStream(), StandardCharsets.UTF_8.name())) {
-                input = scanner.useDelimiter("\\A").next();
+            final var response = this.messageDispatcher.process(requestHeader, PayloadCompression.readPayload(payloadPart)); //pass null if payloadPart is null, else pass it as inputStream
+
+            return createResponseEntity(applyRange(response, request), negotiateEncoding(request), request.getHeader(PayloadEncoding.ACCEPT_HEADER));
+        } catch (PreProcessingException | IOException | ServletException e) {
+            return handleException(e);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #handleIDSMessage(HttpServletRequest)}, used for the default routes.
+     * The servlet thread is released while an {@link de.fraunhofer.isst.ids.framework.messaging.model.messages.AsyncMessageHandler}
+     * is waiting, the response is written when the returned future completes.
+     *
+     * @param request incoming http request
+     * @return future of the multipart MultivalueMap containing ResponseMessage header and some payload
+     */
+    public CompletableFuture<ResponseEntity<MultiValueMap<String, Object>>> handleIDSMessageAsync(final HttpServletRequest request) {
+        try {
+            final var headerPart = request.getPart(HEADER_MULTIPART_NAME);
+            final var payloadPart = request.getPart(PAYLOAD_MULTIPART_NAME);
+
+            if (headerPart == null) {
+                return CompletableFuture.completedFuture(missingHeader());
             }
 
-            // Deserialize JSON-LD headerPart to its RequestMessage.class
-            final var requestHeader = serializer.deserialize(input, Message.class);
+            final var requestHeader = readHeader(headerPart);
 
             if (log.isDebugEnabled()) {
                 log.debug("hand the incoming message to the message dispatcher!");
             }
-            final var response = this.messageDispatcher.process(requestHeader, payloadPart == null ? null : payloadPart.getInputStream()); //pass null if payloadPart is null, else pass it as inputStream
+            final var encoding = negotiateEncoding(request);
+            final var acceptedPayloadEncodings = request.getHeader(PayloadEncoding.ACCEPT_HEADER);
+            return this.messageDispatcher
+                    .processAsync(requestHeader, PayloadCompression.readPayload(payloadPart))
+                    .thenApply(response -> {
+                        try {
+                            return createResponseEntity(applyRange(response, request), encoding, acceptedPayloadEncodings);
+                        } catch (IOException e) {
+                            return handleException(e);
+                        }
+                    });
+        } catch (PreProcessingException | IOException | ServletException e) {
+            return CompletableFuture.completedFuture(handleException(e));
+        }
+    }
+
+    /**
+     * Handle a batch of messages. The i-th message consists of the parts <code>header-i</code> and <code>payload-i</code>,
+     * all messages are handed to the MessageDispatcher in parallel (on the bounded batch executor) and the responses
+     * are returned as parts <code>header-i</code> and <code>payload-i</code> in the same order.
+     * Batches with more than {@link #setMaxBatchSize(int) maxBatchSize} messages are rejected with status 413, batches
+     * whose parts are not numbered contiguously from 0 (or whose payload parts have no header part) are rejected
+     * with status 400.
+     *
+     * @param request incoming http request
+     * @return future of the multipart MultivalueMap containing the responses of all messages
+     */
+    public CompletableFuture<ResponseEntity<MultiValueMap<String, Object>>> handleIDSBatch(final HttpServletRequest request) {
+        try {
+            final var limit = maxBatchSize;
+            final var partNames = new HashSet<String>();
+            for (final var part : request.getParts()) {
+                partNames.add(part.getName());
+            }
+            var count = 0;
+            while (partNames.contains(InfomodelMessageBuilder.batchHeaderPart(count))) {
+                count++;
+            }
+            if (count > limit) {
+                if (log.isWarnEnabled()) {
+                    log.warn(String.format("rejecting a batch with more than %d messages", limit));
+                }
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                        .body(createDefaultErrorMessage(RejectionReason.BAD_PARAMETERS,
+                                String.format("A batch may contain at most %d messages!", limit))));
+            }
 
-            //get Response as MultiValueMap
-            final var responseAsMap = createMultiValueMap(response.createMultipartMap(serializer));
+            if (!isContiguousBatch(partNames, count)) {
+                if (log.isWarnEnabled()) {
+                    log.warn("rejecting a batch with non-contiguous parts");
+                }
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(createDefaultErrorMessage(RejectionReason.BAD_PARAMETERS,
+                                "The messages of a batch must be numbered contiguously from 0!")));
+            }
+
+            final var responses = new ArrayList<CompletableFuture<MessageResponse>>(count);
+            for (var i = 0; i < count; i++) {
+                final var headerPart = request.getPart(InfomodelMessageBuilder.batchHeaderPart(i));
+                final var payloadPart = request.getPart(InfomodelMessageBuilder.batchPayloadPart(i));
+                responses.add(dispatchBatchEntry(headerPart, payloadPart));
+            }
+
+            if (responses.isEmpty()) {
+                return CompletableFuture.completedFuture(missingHeader());
+            }
 
-            // return the ResponseEntity as Multipart content with created MultiValueMap
             if (log.isDebugEnabled()) {
-                log.debug("sending response with status OK (200)");
+                log.debug(String.format("dispatched a batch of %d messages", responses.size()));
             }
-            return ResponseEntity
-                    .status(HttpStatus.OK)
-                    .contentType(MediaType.MULTIPART_FORM_DATA)
-                    .body(responseAsMap);
+            final var encoding = negotiateEncoding(request);
+            final var acceptedPayloadEncodings = request.getHeader(PayloadEncoding.ACCEPT_HEADER);
+            return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).thenApply(done -> {
+                try {
+                    final MultiValueMap<String, Object> multiMap = new LinkedMultiValueMap<>();
+                    for (var i = 0; i < responses.size(); i++) {
+                        final var parts = responses.get(i).join().createMultipartMap(serializer);
+                        multiMap.add(InfomodelMessageBuilder.batchHeaderPart(i), encodeHeader(parts.get(HEADER_MULTIPART_NAME), encoding));
+                        if (parts.get(PAYLOAD_MULTIPART_NAME) != null) {
+                            multiMap.add(InfomodelMessageBuilder.batchPayloadPart(i),
+                                    PayloadCompression.compress(parts.get(PAYLOAD_MULTIPART_NAME), acceptedPayloadEncodings));
+                        }
+                    }
+                    return ResponseEntity
+                            .status(HttpStatus.OK)
+                            .header(HeaderEncoding.ACCEPT_HEADER, HeaderEncoding.supportedMediaTypes())
+                            .header(PayloadEncoding.ACCEPT_HEADER, PayloadEncoding.supportedCodings())
+                            .contentType(MediaType.MULTIPART_FORM_DATA)
+                            .body(multiMap);
+                } catch (IOException e) {
+                    return handleException(e);
+                }
+            });
+        } catch (IOException | ServletException e) {
+            return CompletableFuture.completedFuture(handleException(e));
+        }
+    }
 
-        } catch (PreProcessingException e) {
+    /**
+     * Check that every header and payload part of a batch belongs to one of the messages 0 to count - 1.
+     *
+     * @param partNames names of all parts of the request
+     * @param count number of consecutive header parts starting at <code>header-0</code>
+     * @return true if no batch part lies outside of the consecutive messages
+     */
+    private static boolean isContiguousBatch(final Set<String> partNames, final int count) {
+        for (final var name : partNames) {
+            final var separator = name.indexOf('-');
+            if (separator < 0 || !(name.startsWith("header-") || name.startsWith("payload-"))) {
+                continue;
+            }
+            final int index;
+            try {
+                index = Integer.parseInt(name.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (index < 0 || index >= count
+                    || !name.equals(InfomodelMessageBuilder.batchHeaderPart(index)) && !name.equals(InfomodelMessageBuilder.batchPayloadPart(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse the header of a single message of a batch and hand it to the MessageDispatcher on the batch executor.
+     * Errors are converted to an ErrorResponse for this message, so they do not fail the whole batch.
+     *
+     * @param headerPart the header part of the message
+     * @param payloadPart the payload part of the message (may be null)
+     * @return future of the response for the message
+     * @throws IOException if the payload part cannot be read
+     */
+    private CompletableFuture<MessageResponse> dispatchBatchEntry(final Part headerPart, final Part payloadPart) throws IOException {
+        final var connector = configurationContainer.getConnector();
+        final Message requestHeader;
+        try {
+            requestHeader = readHeader(headerPart);
+        } catch (IOException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("message of batch could not be parsed!");
+            }
+            return CompletableFuture.completedFuture(ErrorResponse.withDefaultHeader(RejectionReason.MALFORMED_MESSAGE,
+                    "Could not parse incoming message!", connector.getId(), connector.getOutboundModelVersion()));
+        }
+
+        final var payload = PayloadCompression.readPayload(payloadPart);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return messageDispatcher.processAsync(requestHeader, payload);
+            } catch (PreProcessingException e) {
+                if (log.isErrorEnabled()) {
+                    log.error("Error during pre-processing with a PreDispatchingFilter!", e);
+                }
+                return CompletableFuture.<MessageResponse>completedFuture(ErrorResponse.withDefaultHeader(RejectionReason.BAD_PARAMETERS,
+                        String.format("Error during preprocessing: %s", e.getMessage()),
+                        connector.getId(), connector.getOutboundModelVersion(), requestHeader.getId()));
+            }
+        }, getBatchExecutor()).thenCompose(Function.identity());
+    }
+
+    /**
+     * Read and deserialize the header part of an incoming message.
+     *
+     * @param headerPart the header part of the multipart request
+     * @return the deserialized header
+     * @throws IOException if the header could not be read or deserialized
+     */
+    private Message readHeader(final Part headerPart) throws IOException {
+        String input;
+        if (log.isDebugEnabled()) {
+            log.debug("parsing header of incoming message");
+        }
+        final var encoding = HeaderEncoding.fromContentType(headerPart.getContentType());
+        if (encoding.isBinary()) {
+            try (var stream = headerPart.getInputStream()) {
+                input = encoding.decode(stream.readAllBytes());
+            }
+        } else {
+            try (var scanner = new Scanner(headerPart.getInputStream(), StandardCharsets.UTF_8.name())) {
+                input = scanner.useDelimiter("\\A").next();
+            }
+        }
+
+        // Deserialize JSON-LD headerPart to its RequestMessage.class
+        return MessageDeserializer.deserialize(serializer, input);
+    }
+
+    /**
+     * Convert the response of the MessageDispatcher to a multipart ResponseEntity.
+     *
+     * @param response the response of the MessageHandler
+     * @param encoding the encoding of the response header
+     * @param acceptedPayloadEncodings the payload codings accepted by the requesting connector (may be null)
+     * @return ResponseEntity with status OK containing the multipart response
+     * @throws IOException if the response could not be serialized
+     */
+    private ResponseEntity<MultiValueMap<String, Object>> createResponseEntity(final MessageResponse response,
+                                                                               final HeaderEncoding encoding,
+                                                                               final String acceptedPayloadEncodings) throws IOException {
+        //get Response as MultiValueMap
+        final var responseAsMap = createMultiValueMap(response.createMultipartMap(serializer));
+        if (responseAsMap.containsKey(HEADER_MULTIPART_NAME)) {
+            responseAsMap.put(HEADER_MULTIPART_NAME, List.of(encodeHeader(responseAsMap.getFirst(HEADER_MULTIPART_NAME), encoding)));
+        }
+        if (responseAsMap.containsKey(PAYLOAD_MULTIPART_NAME)) {
+            responseAsMap.put(PAYLOAD_MULTIPART_NAME,
+                    List.of(PayloadCompression.compress(responseAsMap.getFirst(PAYLOAD_MULTIPART_NAME), acceptedPayloadEncodings)));
+        }
+
+        // return the ResponseEntity as Multipart content with created MultiValueMap
+        if (log.isDebugEnabled()) {
+            log.debug("sending response with status OK (200)");
+        }
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .header(HeaderEncoding.ACCEPT_HEADER, HeaderEncoding.supportedMediaTypes())
+                .header(PayloadEncoding.ACCEPT_HEADER, PayloadEncoding.supportedCodings())
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(responseAsMap);
+    }
+
+    /**
+     * Restrict a {@link FileBodyResponse} to the range requested by the {@link FileBodyResponse#RANGE_HEADER} of the request.
+     * The range is applied to the payload part, its Content-Range part header describes the returned bytes.
+     *
+     * @param response the response of the MessageHandler
+     * @param request incoming http request
+     * @return the response restricted to the requested range, or the unchanged response
+     */
+    private MessageResponse applyRange(final MessageResponse response, final HttpServletRequest request) {
+        final var range = request.getHeader(FileBodyResponse.RANGE_HEADER);
+        if (range != null && response instanceof FileBodyResponse) {
+            return ((FileBodyResponse<?>) response).withRange(range);
+        }
+        return response;
+    }
+
+    /**
+     * Choose the encoding of the response header by the accepted encodings of the requesting connector.
+     *
+     * @param request incoming http request
+     * @return the negotiated encoding (JSON_LD if the request does not list any supported encoding)
+     */
+    private HeaderEncoding negotiateEncoding(final HttpServletRequest request) {
+        return HeaderEncoding.negotiate(request.getHeader(HeaderEncoding.ACCEPT_HEADER));
+    }
+
+    /**
+     * Encode a serialized header part, binary encodings are wrapped in an {@link HttpEntity} with their content type.
+     *
+     * @param header the serialized JSON-LD header
+     * @param encoding the encoding of the header part
+     * @return the value of the header part
+     * @throws IOException if the header could not be encoded
+     */
+    private Object encodeHeader(final Object header, final HeaderEncoding encoding) throws IOException {
+        if (!encoding.isBinary() || !(header instanceof String)) {
+            return header;
+        }
+        final var headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(encoding.getMediaType()));
+        return new HttpEntity<>(encoding.encode((String) header), headers);
+    }
+
+    /**
+     * Create the response for a request without header part.
+     *
+     * @return ResponseEntity with status BAD_REQUEST
+     */
+    private ResponseEntity<MultiValueMap<String, Object>> missingHeader() {
+        if (log.isDebugEnabled()) {
+            log.debug("header or payload of incoming message were empty!");
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(createDefaultErrorMessage(RejectionReason.MALFORMED_MESSAGE, "Header was missing!"));
+    }
+
+    /**
+     * Create the error response for an exception which occurred while handling a request.
+     *
+     * @param e a {@link PreProcessingException}, {@link IOException} or {@link ServletException}
+     * @return ResponseEntity containing a RejectionMessage
+     */
+    private ResponseEntity<MultiValueMap<String, Object>> handleException(final Exception e) {
+        if (e instanceof PreProcessingException) {
             if (log.isErrorEnabled()) {
                 log.error("Error during pre-processing with a PreDispatchingFilter!", e);
             }
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(createDefaultErrorMessage(RejectionReason.BAD_PARAMETERS, String.format("Error during preprocessing: %s", e.getMessage())));
-        } catch (IOException e) {
+        } else if (e instanceof IOException) {
             if (log.isWarnEnabled()) {
                 log.warn("incoming message could not be parsed!");
                 log.warn(e.getMessage(), e);
             }
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(createDefaultErrorMessage(RejectionReason.MALFORMED_MESSAGE, "Could not parse incoming message!"));
-        } catch (ServletException e) {
+        } else {
             if (log.isWarnEnabled()) {
                 log.warn("incoming request was not multipart!");
                 log.warn(e.getMessage(), e);
@@ -156,7 +518,7 @@ public class IDSController {
                     ._modelVersion_(configurationContainer.getConnector().getOutboundModelVersion())
                     ._rejectionReason_(rejectionReason)
                     ._issuerConnector_(configurationContainer.getConnector().getId())
-                    ._issued_(IDSUtils.getGregorianNow())
+                    ._issued_(TimeService.now())
                     .build();
             final var multiMap = new LinkedMultiValueMap<String, Object>();
             multiMap.put(HEADER_MULTIPART_NAME, List.of(serializer.serialize(rejectionMessage)));
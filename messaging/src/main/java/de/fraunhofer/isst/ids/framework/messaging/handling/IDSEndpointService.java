@@ -1,6 +1,8 @@
 package de.fraunhofer.isst.ids.framework.messaging.handling;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
@@ -22,9 +24,11 @@ public class IDSEndpointService {
 
     IDSController idsController;
     RequestMappingHandlerMapping requestMappingHandlerMapping;
+    Set<String> mappings = ConcurrentHashMap.newKeySet();
 
     /**
-     * Use <code>/api/ids/data</code> and <code>/api/ids/infrastructure</code> routes as default mappings.
+     * Use <code>/api/ids/data</code> and <code>/api/ids/infrastructure</code> routes as default mappings
+     * and <code>/api/ids/batch</code> as default batch mapping.
      *
      * @param idsController the {@link IDSController} which will be mapped
      * @param requestMappingHandlerMapping for managing Springs http route mappings
@@ -39,10 +43,13 @@ public class IDSEndpointService {
         }
         addMapping("/api/ids/data");
         addMapping("/api/ids/infrastructure");
+        addBatchMapping("/api/ids/batch");
     }
 
     /**
-     * Add another endpoint to the IDSController.
+     * Add another endpoint to the IDSController. The route is served by
+     * {@link IDSController#handleIDSMessageAsync(HttpServletRequest)}, so asynchronous MessageHandlers do not block
+     * a servlet thread.
      *
      * @param url the url for which a route to {@link IDSController} should be added
      */
@@ -53,7 +60,30 @@ public class IDSEndpointService {
 
         final var requestMappingInfo = getRequestMappingInfo(url);
         try {
-            requestMappingHandlerMapping.registerMapping(requestMappingInfo, idsController, IDSController.class.getDeclaredMethod("handleIDSMessage", HttpServletRequest.class));
+            requestMappingHandlerMapping.registerMapping(requestMappingInfo, idsController, IDSController.class.getDeclaredMethod("handleIDSMessageAsync", HttpServletRequest.class));
+            mappings.add(IDSLoopbackDispatcher.normalizePath(url));
+        } catch (NoSuchMethodException e) {
+            //cannot happen, method exists
+            if (log.isErrorEnabled()) {
+                log.error("IDSController could not be found for mapping route!");
+            }
+        }
+    }
+
+    /**
+     * Add a batch endpoint to the IDSController, accepting several messages in one multipart request
+     * (see {@link IDSController#handleIDSBatch(HttpServletRequest)}).
+     *
+     * @param url the url for which a batch route to {@link IDSController} should be added
+     */
+    public void addBatchMapping(final String url) {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Adding a batch mapping for url %s", url));
+        }
+
+        final var requestMappingInfo = getRequestMappingInfo(url);
+        try {
+            requestMappingHandlerMapping.registerMapping(requestMappingInfo, idsController, IDSController.class.getDeclaredMethod("handleIDSBatch", HttpServletRequest.class));
         } catch (NoSuchMethodException e) {
             //cannot happen, method exists
             if (log.isErrorEnabled()) {
@@ -73,6 +103,16 @@ public class IDSEndpointService {
         }
         final var requestMappingInfo = getRequestMappingInfo(url);
         requestMappingHandlerMapping.unregisterMapping(requestMappingInfo);
+        mappings.remove(IDSLoopbackDispatcher.normalizePath(url));
+    }
+
+    /**
+     * Get the urls currently mapped to the IDSController.
+     *
+     * @return unmodifiable snapshot of the mapped urls
+     */
+    public Set<String> getMappings() {
+        return Set.copyOf(mappings);
     }
 
     private RequestMappingInfo getRequestMappingInfo(final String url) {
@@ -0,0 +1,190 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RejectionReason;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.communication.http.LoopbackDispatcher;
+import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreProcessingException;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.ErrorResponse;
+import de.fraunhofer.isst.ids.framework.util.MessageDeserializer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@link LoopbackDispatcher} handing messages addressed to one of the routes of the {@link IDSEndpointService}
+ * directly to the {@link MessageDispatcher}, without multipart encoding, TLS and http.
+ * A target is local if its host and port match an endpoint of the connectors self-description.
+ * Local messages bypass the servlet filter chain, so in-process dispatching has to be enabled explicitly
+ * (property configuration.loopback-dispatch, default false).
+ */
+@Slf4j
+@Component
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class IDSLoopbackDispatcher implements LoopbackDispatcher {
+
+    MessageDispatcher messageDispatcher;
+    IDSEndpointService endpointService;
+    ConfigurationContainer configurationContainer;
+    Serializer serializer;
+    ObjectMapper objectMapper;
+
+    @NonFinal
+    volatile boolean enabled;
+
+    /**
+     * Create a dispatcher for messages addressed to this connector.
+     *
+     * @param messageDispatcher the dispatcher handling incoming messages
+     * @param endpointService the service managing the routes of the {@link IDSController}
+     * @param configurationContainer the connector configuration
+     * @param serializer infomodel serializer for headers
+     * @param objectMapper for serializing object payloads
+     */
+    @Autowired
+    public IDSLoopbackDispatcher(final MessageDispatcher messageDispatcher,
+                                 final IDSEndpointService endpointService,
+                                 final ConfigurationContainer configurationContainer,
+                                 final Serializer serializer,
+                                 final ObjectMapper objectMapper) {
+        this.messageDispatcher = messageDispatcher;
+        this.endpointService = endpointService;
+        this.configurationContainer = configurationContainer;
+        this.serializer = serializer;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Enable or disable in-process dispatching, if disabled all messages are sent over http.
+     *
+     * @param enabled true if messages for local targets should be dispatched in-process
+     *                (property configuration.loopback-dispatch, default false)
+     */
+    @Autowired
+    public void setEnabled(@Value("${configuration.loopback-dispatch:false}") final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isLocalTarget(final URI target) {
+        if (!enabled || target == null || target.getHost() == null) {
+            return false;
+        }
+        if (!endpointService.getMappings().contains(normalizePath(target.getPath()))) {
+            return false;
+        }
+
+        final var connector = configurationContainer.getConnector();
+        if (connector == null) {
+            return false;
+        }
+        final var endpoints = new ArrayList<URI>();
+        if (connector.getHasDefaultEndpoint() != null) {
+            endpoints.add(connector.getHasDefaultEndpoint().getAccessURL());
+        }
+        if (connector.getHasEndpoint() != null) {
+            connector.getHasEndpoint().forEach(endpoint -> endpoints.add(endpoint.getAccessURL()));
+        }
+
+        return endpoints.stream().anyMatch(endpoint -> sameAuthority(endpoint, target));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, String> dispatch(final Message header, final InputStream payload) throws IOException {
+        try {
+            return toStringMap(messageDispatcher.process(header, payload).createMultipartMap(serializer));
+        } catch (PreProcessingException e) {
+            if (log.isErrorEnabled()) {
+                log.error("Error during pre-processing with a PreDispatchingFilter!", e);
+            }
+            final var connector = configurationContainer.getConnector();
+            return toStringMap(ErrorResponse.withDefaultHeader(RejectionReason.BAD_PARAMETERS,
+                    String.format("Error during preprocessing: %s", e.getMessage()),
+                    connector.getId(), connector.getOutboundModelVersion(), header.getId())
+                    .createMultipartMap(serializer));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, String> dispatch(final String header, final InputStream payload) throws IOException {
+        return dispatch(MessageDeserializer.deserialize(serializer, header), payload);
+    }
+
+    /**
+     * Convert the multipart map of a MessageResponse to the String map returned by the IDSHttpService.
+     * Payload objects are converted like the multipart response of the {@link IDSController} would be parsed.
+     *
+     * @param multipartMap the multipart map of a MessageResponse
+     * @return Map from partname to content
+     * @throws IOException if a payload cannot be read or serialized
+     */
+    private Map<String, String> toStringMap(final Map<String, Object> multipartMap) throws IOException {
+        final var result = new HashMap<String, String>();
+        for (final var entry : multipartMap.entrySet()) {
+            final var content = toPartContent(entry.getValue());
+            if (content != null) {
+                result.put(entry.getKey(), content);
+            }
+        }
+        return result;
+    }
+
+    private String toPartContent(final Object value) throws IOException {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        } else if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.UTF_8);
+        } else if (value instanceof HttpEntity) {
+            return toPartContent(((HttpEntity<?>) value).getBody());
+        } else if (value instanceof Resource) {
+            try (var stream = ((Resource) value).getInputStream()) {
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } else if (value instanceof InputStream) {
+            try (var stream = (InputStream) value) {
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private static boolean sameAuthority(final URI endpoint, final URI target) {
+        return endpoint != null
+                && endpoint.getHost() != null
+                && endpoint.getHost().equalsIgnoreCase(target.getHost())
+                && effectivePort(endpoint) == effectivePort(target);
+    }
+
+    private static int effectivePort(final URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "http".equalsIgnoreCase(uri.getScheme()) ? 80 : 443;
+    }
+
+    static String normalizePath(final String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+}
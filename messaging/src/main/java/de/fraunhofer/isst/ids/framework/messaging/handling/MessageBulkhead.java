@@ -0,0 +1,134 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.SupportedMessageType;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+/**
+ * Bulkhead of a single message type, limits the number of concurrently handled messages and the number of
+ * messages waiting for a free slot, as declared by {@link SupportedMessageType}.
+ * Waiting messages are admitted in arrival order, a released slot is handed over to the oldest waiting message.
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class MessageBulkhead {
+
+    int maxConcurrent;
+    int maxQueued;
+    // guarded by this
+    ArrayDeque<CompletableFuture<Boolean>> waiting = new ArrayDeque<>();
+
+    @NonFinal
+    int inUse;
+
+    /**
+     * Create a bulkhead for the given declaration.
+     *
+     * @param declaration the declaration of the handler, its maxConcurrentRequests must be at least 1
+     */
+    MessageBulkhead(final SupportedMessageType declaration) {
+        this.maxConcurrent = declaration.maxConcurrentRequests();
+        this.maxQueued = Math.max(0, declaration.maxQueuedRequests());
+    }
+
+    /**
+     * Check if a bulkhead is declared.
+     *
+     * @param declaration the declaration of a handler
+     * @return true if the declaration limits the concurrency of its type
+     */
+    static boolean isDeclared(final SupportedMessageType declaration) {
+        return declaration.maxConcurrentRequests() > 0;
+    }
+
+    /**
+     * Acquire a slot without blocking. If no slot is free and the queue bound is not reached yet, the returned future
+     * completes when a slot is handed over to this message or the timeout elapses.
+     * A granted slot is handed over on the thread releasing it.
+     *
+     * @param timeoutMillis maximum time to wait for a free slot
+     * @return future completing with true if a slot was acquired, false if the queue is full or the timeout elapsed
+     */
+    CompletableFuture<Boolean> acquireAsync(final long timeoutMillis) {
+        final var waiter = new CompletableFuture<Boolean>();
+        synchronized (this) {
+            if (inUse < maxConcurrent && waiting.isEmpty()) {
+                inUse++;
+                return CompletableFuture.completedFuture(true);
+            }
+            if (waiting.size() >= maxQueued) {
+                return CompletableFuture.completedFuture(false);
+            }
+            waiting.add(waiter);
+        }
+        waiter.whenComplete((granted, error) -> {
+            if (!Boolean.TRUE.equals(granted)) {
+                removeWaiter(waiter);
+            }
+        });
+        return waiter.completeOnTimeout(false, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Acquire a slot, wait if the queue bound is not reached yet.
+     *
+     * @param timeoutMillis maximum time to wait for a free slot
+     * @return true if a slot was acquired, false if the queue is full or the timeout elapsed
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    boolean acquire(final long timeoutMillis) throws InterruptedException {
+        return await(acquireAsync(timeoutMillis), this::release);
+    }
+
+    /**
+     * Release a previously acquired slot, it is handed over to the oldest waiting message.
+     */
+    void release() {
+        while (true) {
+            final CompletableFuture<Boolean> next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    inUse--;
+                    return;
+                }
+            }
+            //complete outside of the lock, the waiting message may continue on this thread
+            if (next.complete(true)) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void removeWaiter(final CompletableFuture<Boolean> waiter) {
+        waiting.remove(waiter);
+    }
+
+    /**
+     * Block until an asynchronous acquisition completed. If the waiting thread is interrupted, the acquisition is
+     * abandoned, a slot granted concurrently is released again.
+     *
+     * @param acquisition the pending acquisition
+     * @param release callback releasing a granted slot
+     * @return true if a slot was acquired
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    static boolean await(final CompletableFuture<Boolean> acquisition, final Runnable release) throws InterruptedException {
+        try {
+            return acquisition.get();
+        } catch (InterruptedException e) {
+            if (!acquisition.complete(false) && acquisition.join()) {
+                //slot was handed over while being interrupted, pass it on
+                release.run();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package de.fraunhofer.isst.ids.framework.messaging.handling;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedList;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import de.fraunhofer.iais.eis.ConnectorDeployMode;
+import de.fraunhofer.iais.eis.DescriptionRequestMessage;
 import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.iais.eis.RejectionReason;
 import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
@@ -15,14 +30,21 @@ import de.fraunhofer.isst.ids.framework.daps.DapsValidator;
 import de.fraunhofer.isst.ids.framework.daps.DapsVerifier;
 import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilter;
 import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilterResult;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilterStatistics;
 import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreProcessingException;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.AsyncMessageHandler;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.IdempotentMessageHandler;
 import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessageHandler;
 import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessageHandlingException;
 import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessagePayloadImpl;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessagePriority;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.SupportedMessageType;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.BodyResponse;
 import de.fraunhofer.isst.ids.framework.messaging.model.responses.ErrorResponse;
 import de.fraunhofer.isst.ids.framework.messaging.model.responses.MessageResponse;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -34,10 +56,33 @@ import lombok.extern.slf4j.Slf4j;
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 public class MessageDispatcher {
 
+    static final long DEFAULT_ADMISSION_TIMEOUT_MILLIS = 30_000;
+    static final int EXECUTOR_QUEUE_CAPACITY = 256;
+    static final long EXECUTOR_KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Order of the DAT verification, lower than every order available to other filters, so it always runs first
+     * and is never moved behind another filter by adaptive ordering.
+     */
+    static final int DAT_VERIFICATION_ORDER = Integer.MIN_VALUE;
+
     ObjectMapper objectMapper;
-    List<PreDispatchingFilter> preDispatchingFilters;
+    PreDispatchingFilterChain preDispatchingFilters;
     RequestHandlerResolver requestHandlerResolver;
     ConfigurationContainer configurationContainer;
+    Map<Class<?>, MessageBulkhead> bulkheads = new ConcurrentHashMap<>();
+    MessageResponseCache responseCache = new MessageResponseCache();
+
+    @NonFinal
+    volatile ExecutorService executor;
+    @NonFinal
+    volatile ExecutorService filterExecutor;
+    @NonFinal
+    volatile PriorityLimiter priorityLimiter;
+    @NonFinal
+    volatile long admissionTimeoutMillis = DEFAULT_ADMISSION_TIMEOUT_MILLIS;
+    @NonFinal
+    volatile boolean responseCaching;
 
     /**
      * Create a MessageDispatcher.
@@ -54,41 +99,206 @@ public class MessageDispatcher {
         this.objectMapper = objectMapper;
         this.requestHandlerResolver = requestHandlerResolver;
         this.configurationContainer = configurationContainer;
-        preDispatchingFilters = new LinkedList<>();
+        preDispatchingFilters = new PreDispatchingFilterChain();
+
+        //cached responses depend on the self-description
+        configurationContainer.addUpdateListener(configurationModel -> responseCache.invalidate());
+
+        //add DAT verification as first PreDispatchingFilter (independent, may run concurrently to other independent filters)
+        preDispatchingFilters.register(new PreDispatchingFilter() {
+            @Override
+            public PreDispatchingFilterResult process(final Message in) {
+                if (configurationContainer.getConfigModel().getConnectorDeployMode() == ConnectorDeployMode.TEST_DEPLOYMENT) {
+                    return PreDispatchingFilterResult.successResult("ConnectorDeployMode is Test. Skipping Token verification!");
+                }
 
-        //add DAT verification as PreDispatchingFilter
-        registerPreDispatchingAction(in -> {
-            if (configurationContainer.getConfigModel().getConnectorDeployMode() == ConnectorDeployMode.TEST_DEPLOYMENT) {
-                return PreDispatchingFilterResult.successResult("ConnectorDeployMode is Test. Skipping Token verification!");
+                try {
+                    final var verified = DapsVerifier.verify(DapsValidator.getClaims(in, provider.providePublicKey()));
+                    return PreDispatchingFilterResult.builder()
+                            .withSuccess(verified)
+                            .withMessage(String.format("Token verification result is: %s", verified))
+                            .build();
+                } catch (ClaimsException e) {
+                    return PreDispatchingFilterResult.builder()
+                            .withSuccess(false)
+                            .withMessage("Token could not be parsed!" + e.getMessage())
+                            .build();
+                }
             }
 
-            try {
-                final var verified = DapsVerifier.verify(DapsValidator.getClaims(in, provider.providePublicKey()));
-                return PreDispatchingFilterResult.builder()
-                        .withSuccess(verified)
-                        .withMessage(String.format("Token verification result is: %s", verified))
-                        .build();
-            } catch (ClaimsException e) {
-                return PreDispatchingFilterResult.builder()
-                        .withSuccess(false)
-                        .withMessage("Token could not be parsed!" + e.getMessage())
-                        .build();
+            @Override
+            public boolean isIndependent() {
+                return true;
             }
-        });
+        }, DAT_VERIFICATION_ORDER);
+    }
+
+    /**
+     * Set the executor used by the MessageDispatcher for concurrent work (e.g. handling messages admitted after waiting
+     * for a slot). Independent PreDispatchingFilters are applied on a separate pool, so a dispatcher thread waiting
+     * for its filters never waits for a task queued behind itself.
+     * If no executor is set, a pool with one daemon thread per available processor and a bounded queue is created on
+     * first use, tasks which do not fit into its queue are run by the submitting thread.
+     *
+     * @param executor the executor to be used by the dispatcher
+     */
+    public void setExecutor(final ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Get the executor used by the MessageDispatcher for concurrent work, create the default one if none is set.
+     *
+     * @return the executor of the dispatcher
+     */
+    public ExecutorService getExecutor() {
+        var current = executor;
+        if (current == null) {
+            synchronized (this) {
+                current = executor;
+                if (current == null) {
+                    current = boundedExecutor("ids-dispatcher");
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Get the executor applying groups of independent PreDispatchingFilters, create it on first use.
+     * Filters do not wait for other dispatcher work, so this pool always makes progress.
+     *
+     * @return the executor for the filters
+     */
+    private ExecutorService getFilterExecutor() {
+        var current = filterExecutor;
+        if (current == null) {
+            synchronized (this) {
+                current = filterExecutor;
+                if (current == null) {
+                    current = boundedExecutor("ids-filters");
+                    filterExecutor = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Create an executor of daemon threads, one per available processor, with a bounded queue. When the queue is full,
+     * tasks are run by the submitting thread, so load beyond the capacity of the pool slows down the callers instead of
+     * creating more threads.
+     *
+     * @param name prefix of the thread names
+     * @return the bounded executor
+     */
+    static ExecutorService boundedExecutor(final String name) {
+        final var threads = Runtime.getRuntime().availableProcessors();
+        final var threadCount = new AtomicInteger();
+        final var pool = new ThreadPoolExecutor(threads, threads, EXECUTOR_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(EXECUTOR_QUEUE_CAPACITY), runnable -> {
+                    final var thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Limit the number of messages handled concurrently by all MessageHandlers. When the limit is reached, waiting
+     * messages are admitted by the {@link MessagePriority} declared in their {@link SupportedMessageType}.
+     *
+     * @param maxConcurrentMessages the global concurrency limit, values below 1 disable the limit (default)
+     */
+    public void setMaxConcurrentMessages(final int maxConcurrentMessages) {
+        this.priorityLimiter = maxConcurrentMessages > 0 ? new PriorityLimiter(maxConcurrentMessages) : null;
+    }
+
+    /**
+     * Set the maximum time a message waits for a free slot of its bulkhead or the global concurrency limit
+     * before it is rejected with TEMPORARILY_NOT_AVAILABLE.
+     *
+     * @param admissionTimeout maximum waiting time (default 30 seconds)
+     */
+    public void setAdmissionTimeout(final Duration admissionTimeout) {
+        this.admissionTimeoutMillis = admissionTimeout.toMillis();
+    }
+
+    /**
+     * Enable or disable caching of the response payloads of {@link IdempotentMessageHandler}s. Cached payloads are
+     * bound to the hash of the current self-description ({@link ConfigurationContainer#getSelfDescriptionHash()}),
+     * so they are recreated when the Connector was modified in place, and the cache is invalidated on every
+     * configuration update. Call {@link #invalidateResponseCache()} if other data used by the handlers changed.
+     *
+     * @param responseCaching true if payloads of idempotent handlers should be cached (default false)
+     */
+    public void setResponseCaching(final boolean responseCaching) {
+        this.responseCaching = responseCaching;
+        if (!responseCaching) {
+            responseCache.invalidate();
+        }
+    }
+
+    /**
+     * Remove all cached response payloads of {@link IdempotentMessageHandler}s.
+     */
+    public void invalidateResponseCache() {
+        responseCache.invalidate();
     }
 
     /**
      * Register a new PreDispatchingFilter which will be used to filter incoming messages.
+     * The filter is registered with order 0 and runs after the DAT verification and all filters with the same order
+     * that were registered before.
      *
      * @param preDispatchingFilter a new {@link PreDispatchingFilter} that should be added to the list of filters
      */
     public void registerPreDispatchingAction(final PreDispatchingFilter preDispatchingFilter) {
-        this.preDispatchingFilters.add(preDispatchingFilter);
+        registerPreDispatchingAction(preDispatchingFilter, 0);
+    }
+
+    /**
+     * Register a new PreDispatchingFilter with an explicit order. Filters with a lower order are applied first,
+     * the DAT verification always runs before all registered filters. Registration is safe while messages are processed.
+     *
+     * @param preDispatchingFilter a new {@link PreDispatchingFilter} that should be added to the list of filters
+     * @param order the order of the filter inside the filter chain, Integer.MIN_VALUE is reserved for the DAT verification
+     * @throws IllegalArgumentException if the order is Integer.MIN_VALUE
+     */
+    public void registerPreDispatchingAction(final PreDispatchingFilter preDispatchingFilter, final int order) {
+        if (order == DAT_VERIFICATION_ORDER) {
+            throw new IllegalArgumentException("The lowest order is reserved for the DAT verification!");
+        }
+        this.preDispatchingFilters.register(preDispatchingFilter, order);
+    }
+
+    /**
+     * Enable or disable adaptive ordering of PreDispatchingFilters. If enabled, filters registered with the same order
+     * are periodically re-sorted by their measured processing time and rejection rate, so cheap filters which reject
+     * many messages run before expensive ones. The DAT verification is never reordered.
+     * Only enable this if filters with the same order are independent of each other.
+     *
+     * @param adaptive true if filters with the same order may be reordered at runtime
+     */
+    public void setAdaptiveFilterOrdering(final boolean adaptive) {
+        this.preDispatchingFilters.setAdaptiveOrdering(adaptive);
+    }
+
+    /**
+     * Get the runtime metrics of the registered PreDispatchingFilters.
+     *
+     * @return statistics for every registered filter, in the order the filters are currently applied
+     */
+    public List<PreDispatchingFilterStatistics> getPreDispatchingFilterStatistics() {
+        return this.preDispatchingFilters.getStatistics();
     }
 
     /**
      * Apply the preDispatchingFilters to the message. If it wasn't filtered: find the {@link MessageHandler} for its type.
      * Let the handler handle the Message and return the {@link MessageResponse}.
+     * An {@link AsyncMessageHandler} is waited for, use {@link #processAsync(Message, InputStream)} to avoid blocking.
      *
      * @param header header of the incoming Message (RequestMessage implementation)
      * @param payload payload of the incoming Message
@@ -98,32 +308,9 @@ public class MessageDispatcher {
      */
     @SuppressWarnings("unchecked")
     public <R extends Message> MessageResponse process(final R header, final InputStream payload) throws PreProcessingException {
-        final var connectorId = configurationContainer.getConnector().getId();
-        final var modelVersion = configurationContainer.getConnector().getOutboundModelVersion();
-        //apply all preDispatchingFilters to the message
-        for (final var preDispatchingFilter : this.preDispatchingFilters) {
-            if (log.isDebugEnabled()) {
-                log.debug("Applying a preDispatchingFilter");
-            }
-            try {
-                final var result = preDispatchingFilter.process(header);
-                if (!result.isSuccess()) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("A preDispatchingFilter failed!");
-                    }
-                    if (log.isErrorEnabled()) {
-                        log.error(result.getMessage(), result.getError());
-                    }
-
-                    return ErrorResponse.withDefaultHeader(RejectionReason.MALFORMED_MESSAGE, result.getMessage(), connectorId, modelVersion, header.getId());
-                }
-            } catch (Exception e) {
-                if (log.isDebugEnabled()) {
-                    log.debug("A preDispatchingFilter threw an exception!");
-                    log.debug(e.getMessage(), e);
-                }
-                throw new PreProcessingException(e);
-            }
+        final var rejection = applyPreDispatchingFilters(header);
+        if (rejection != null) {
+            return rejection;
         }
 
         // Returns the MessageHandler of a given MessageType of the header-part.
@@ -132,25 +319,374 @@ public class MessageDispatcher {
 
         // Checks if revolvedHandler is not null
         if (resolvedHandler.isPresent()) {
+            //enforce the bulkhead of the message type and the global concurrency limit
+            final var admission = admit(header);
+            if (admission == null) {
+                return notAdmitted(header);
+            }
+
             //if an handler exists, let the handle handle the message and return its response
             try {
-                final var handler = (MessageHandler<R>) resolvedHandler.get();
-                return handler.handleMessage(header, new MessagePayloadImpl(payload, objectMapper));
-            } catch (MessageHandlingException e) {
+                return handle((MessageHandler<R>) resolvedHandler.get(), header, payload);
+            } finally {
+                admission.run();
+            }
+        } else {
+            return handlerNotFound(header);
+        }
+    }
+
+    /**
+     * Apply the preDispatchingFilters to the message and, if it wasn't filtered, let the {@link MessageHandler} for its
+     * type handle it. The filters are applied on the calling thread, an {@link AsyncMessageHandler} is composed without
+     * blocking. The calling thread does not wait for a slot of a bulkhead or the global concurrency limit: if no slot is
+     * free, the message is handled on the executor of the dispatcher once a slot was handed over to it.
+     *
+     * @param header header of the incoming Message (RequestMessage implementation)
+     * @param payload payload of the incoming Message
+     * @param <R> a subtype of RequestMessage
+     * @return a future completing with the {@link MessageResponse} of the handler, failures of the handler are
+     *         converted to an {@link ErrorResponse}
+     * @throws PreProcessingException if an error occurs in a PreDispatchingFilter
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends Message> CompletableFuture<MessageResponse> processAsync(final R header, final InputStream payload) throws PreProcessingException {
+        final var rejection = applyPreDispatchingFilters(header);
+        if (rejection != null) {
+            return CompletableFuture.completedFuture(rejection);
+        }
+
+        final var resolvedHandler = requestHandlerResolver.resolveHandler(header.getClass());
+        if (resolvedHandler.isEmpty()) {
+            return CompletableFuture.completedFuture(handlerNotFound(header));
+        }
+
+        final var handler = (MessageHandler<R>) resolvedHandler.get();
+        final var admission = admitAsync(header);
+        if (admission.isDone()) {
+            return handleAdmitted(handler, header, payload, admission.join());
+        }
+        return admission.thenComposeAsync(release -> handleAdmitted(handler, header, payload, release), getExecutor());
+    }
+
+    /**
+     * Let the handler handle a message for which the slots of its bulkhead and the global concurrency limit were
+     * acquired. The slots are held until the handler (or the future of an {@link AsyncMessageHandler}) completed.
+     *
+     * @param handler the handler for the message type
+     * @param header header of the incoming Message
+     * @param payload payload of the incoming Message
+     * @param admission callback releasing the acquired slots, null if the message was not admitted
+     * @param <R> a subtype of RequestMessage
+     * @return a future completing with the {@link MessageResponse} of the handler
+     */
+    @SuppressWarnings("unchecked")
+    private <R extends Message> CompletableFuture<MessageResponse> handleAdmitted(final MessageHandler<R> handler,
+                                                                                  final R header,
+                                                                                  final InputStream payload,
+                                                                                  final Runnable admission) {
+        if (admission == null) {
+            return CompletableFuture.completedFuture(notAdmitted(header));
+        }
+
+        if (!(handler instanceof AsyncMessageHandler)) {
+            try {
+                return CompletableFuture.completedFuture(handle(handler, header, payload));
+            } finally {
+                admission.run();
+            }
+        }
+
+        final CompletionStage<MessageResponse> stage;
+        try {
+            stage = ((AsyncMessageHandler<R>) handler).handleMessageAsync(header, new MessagePayloadImpl(payload, objectMapper));
+        } catch (RuntimeException e) {
+            admission.run();
+            if (log.isDebugEnabled()) {
+                log.debug("The message handler threw an exception!");
+            }
+            return CompletableFuture.completedFuture(handlingError(header));
+        }
+
+        //the slot is held until the asynchronous handler completed
+        return stage.toCompletableFuture().whenComplete((response, error) -> admission.run()).handle((response, error) -> {
+            if (error == null) {
+                return response;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("The asynchronous message handler completed exceptionally!");
+                log.debug(error.getMessage(), error);
+            }
+            return handlingError(header);
+        });
+    }
+
+    /**
+     * Let a handler handle the message on the calling thread, idempotent handlers are served from the response cache
+     * if response caching is enabled.
+     *
+     * @param handler the handler for the message type
+     * @param header header of the incoming Message
+     * @param payload payload of the incoming Message
+     * @param <R> a subtype of RequestMessage
+     * @return the {@link MessageResponse} of the handler, an {@link ErrorResponse} if the handler failed
+     */
+    @SuppressWarnings("unchecked")
+    private <R extends Message> MessageResponse handle(final MessageHandler<R> handler, final R header, final InputStream payload) {
+        try {
+            if (responseCaching && handler instanceof IdempotentMessageHandler) {
+                final var idempotentHandler = (IdempotentMessageHandler<R>) handler;
+                return BodyResponse.create(idempotentHandler.createResponseHeader(header),
+                        responseCache.getPayload(idempotentHandler, header, selfDescriptionHash(header)));
+            }
+            return handler.handleMessage(header, new MessagePayloadImpl(payload, objectMapper));
+        } catch (MessageHandlingException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("The message handler threw an exception!");
+            }
+
+            return handlingError(header);
+        }
+    }
+
+    /**
+     * Get the hash of the current self-description which cached description payloads are bound to.
+     *
+     * @param header header of the incoming Message
+     * @return the hash, null if the message is no DescriptionRequestMessage or the hash cannot be computed
+     */
+    private String selfDescriptionHash(final Message header) {
+        if (!(header instanceof DescriptionRequestMessage)) {
+            return null;
+        }
+        try {
+            return configurationContainer.getSelfDescriptionHash();
+        } catch (IOException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("Self-description could not be hashed, the response payload is not cached!");
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Apply all preDispatchingFilters to the message, consecutive independent filters are applied concurrently.
+     *
+     * @param header header of the incoming Message
+     * @return an {@link ErrorResponse} if a filter rejected the message, null if all filters accepted it
+     * @throws PreProcessingException if an error occurs in a PreDispatchingFilter
+     */
+    private MessageResponse applyPreDispatchingFilters(final Message header) throws PreProcessingException {
+        this.preDispatchingFilters.messageProcessed();
+        final var filterEntries = this.preDispatchingFilters.getEntries();
+        var index = 0;
+        while (index < filterEntries.size()) {
+            var groupEnd = index + 1;
+            if (filterEntries.get(index).getFilter().isIndependent()) {
+                while (groupEnd < filterEntries.size() && filterEntries.get(groupEnd).getFilter().isIndependent()) {
+                    groupEnd++;
+                }
+            }
+
+            final var result = groupEnd - index > 1
+                    ? applyConcurrently(filterEntries.subList(index, groupEnd), header)
+                    : applyFilter(filterEntries.get(index), header);
+
+            if (!result.isSuccess()) {
                 if (log.isDebugEnabled()) {
-                    log.debug("The message handler threw an exception!");
+                    log.debug("A preDispatchingFilter failed!");
+                }
+                if (log.isErrorEnabled()) {
+                    log.error(result.getMessage(), result.getError());
                 }
 
-                return ErrorResponse.withDefaultHeader(RejectionReason.INTERNAL_RECIPIENT_ERROR, "Error while handling the request!", connectorId, modelVersion, header.getId());
+                return ErrorResponse.withDefaultHeader(RejectionReason.MALFORMED_MESSAGE, result.getMessage(),
+                        configurationContainer.getConnector().getId(),
+                        configurationContainer.getConnector().getOutboundModelVersion(), header.getId());
             }
-        } else {
-            if (log.isDebugEnabled()) {
-                log.debug(String.format("No message handler exists for %s", header.getClass()));
+            index = groupEnd;
+        }
+        return null;
+    }
+
+    /**
+     * Acquire a slot of the bulkhead declared for the message type and of the global concurrency limit,
+     * block until the slots are acquired or the admission timeout elapsed.
+     *
+     * @param header header of the incoming Message
+     * @return callback releasing the acquired slots, null if the message was not admitted
+     */
+    private Runnable admit(final Message header) {
+        final var admission = admitAsync(header);
+        try {
+            return admission.get();
+        } catch (InterruptedException e) {
+            //release the slots as soon as they are granted, the caller gave up waiting for them
+            admission.thenAccept(release -> {
+                if (release != null) {
+                    release.run();
+                }
+            });
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Acquire a slot of the bulkhead declared for the message type and of the global concurrency limit without
+     * blocking, the returned future completes once both slots are acquired or the admission timeout elapsed.
+     *
+     * @param header header of the incoming Message
+     * @return future of the callback releasing the acquired slots, completing with null if the message was not admitted
+     */
+    private CompletableFuture<Runnable> admitAsync(final Message header) {
+        final var declaration = requestHandlerResolver.resolveDeclaration(header.getClass());
+        final var bulkhead = declaration
+                .filter(MessageBulkhead::isDeclared)
+                .map(declared -> bulkheads.computeIfAbsent(declared.value(), type -> new MessageBulkhead(declared)))
+                .orElse(null);
+        final var priority = declaration.map(SupportedMessageType::priority).orElse(MessagePriority.NORMAL);
+        final var limiter = priorityLimiter;
+        final var timeout = admissionTimeoutMillis;
+
+        final Runnable release = () -> {
+            if (limiter != null) {
+                limiter.release();
+            }
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+        };
+
+        final var bulkheadSlot = bulkhead == null ? CompletableFuture.completedFuture(true) : bulkhead.acquireAsync(timeout);
+        return bulkheadSlot.thenCompose(acquired -> {
+            if (!acquired) {
+                return CompletableFuture.completedFuture(null);
             }
+            final var limiterSlot = limiter == null ? CompletableFuture.completedFuture(true) : limiter.acquireAsync(priority, timeout);
+            return limiterSlot.thenApply(admitted -> {
+                if (admitted) {
+                    return release;
+                }
+                if (bulkhead != null) {
+                    bulkhead.release();
+                }
+                return null;
+            });
+        });
+    }
+
+    /**
+     * Build the response for a message which exceeded its bulkhead or the global concurrency limit.
+     *
+     * @param header header of the incoming Message
+     * @return an {@link ErrorResponse} with reason TEMPORARILY_NOT_AVAILABLE
+     */
+    private MessageResponse notAdmitted(final Message header) {
+        if (log.isWarnEnabled()) {
+            log.warn(String.format("Too many concurrent messages, rejecting %s", header.getClass()));
+        }
+
+        return ErrorResponse.withDefaultHeader(RejectionReason.TEMPORARILY_NOT_AVAILABLE, "Too many concurrent requests, try again later!",
+                configurationContainer.getConnector().getId(),
+                configurationContainer.getConnector().getOutboundModelVersion(), header.getId());
+    }
+
+    /**
+     * Build the response for a message whose handler failed.
+     *
+     * @param header header of the incoming Message
+     * @return an {@link ErrorResponse} with reason INTERNAL_RECIPIENT_ERROR
+     */
+    private MessageResponse handlingError(final Message header) {
+        return ErrorResponse.withDefaultHeader(RejectionReason.INTERNAL_RECIPIENT_ERROR, "Error while handling the request!",
+                configurationContainer.getConnector().getId(),
+                configurationContainer.getConnector().getOutboundModelVersion(), header.getId());
+    }
 
-            //If no handler for the type exists, the message type isn't supported
-            return ErrorResponse.withDefaultHeader(RejectionReason.MESSAGE_TYPE_NOT_SUPPORTED, "No handler for provided message type was found!", connectorId, modelVersion, header.getId());
+    /**
+     * Build the response for a message type without handler.
+     *
+     * @param header header of the incoming Message
+     * @return an {@link ErrorResponse} with reason MESSAGE_TYPE_NOT_SUPPORTED
+     */
+    private MessageResponse handlerNotFound(final Message header) {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("No message handler exists for %s", header.getClass()));
         }
+
+        //If no handler for the type exists, the message type isn't supported
+        return ErrorResponse.withDefaultHeader(RejectionReason.MESSAGE_TYPE_NOT_SUPPORTED, "No handler for provided message type was found!",
+                configurationContainer.getConnector().getId(),
+                configurationContainer.getConnector().getOutboundModelVersion(), header.getId());
     }
 
+    /**
+     * Apply a single PreDispatchingFilter to the message and record its metrics.
+     *
+     * @param filterEntry the filter to apply
+     * @param header header of the incoming Message
+     * @return the result of the filter
+     * @throws PreProcessingException if the filter threw an exception
+     */
+    private PreDispatchingFilterResult applyFilter(final PreDispatchingFilterChain.FilterEntry filterEntry,
+                                                   final Message header) throws PreProcessingException {
+        if (log.isDebugEnabled()) {
+            log.debug("Applying a preDispatchingFilter");
+        }
+        final var start = System.nanoTime();
+        final PreDispatchingFilterResult result;
+        try {
+            result = filterEntry.getFilter().process(header);
+        } catch (Exception e) {
+            filterEntry.recordError(System.nanoTime() - start);
+            if (log.isDebugEnabled()) {
+                log.debug("A preDispatchingFilter threw an exception!");
+                log.debug(e.getMessage(), e);
+            }
+            throw new PreProcessingException(e);
+        }
+        filterEntry.record(System.nanoTime() - start, !result.isSuccess());
+        return result;
+    }
+
+    /**
+     * Apply a group of independent PreDispatchingFilters concurrently, short-circuit on the first failing filter.
+     *
+     * @param group the independent filters to apply
+     * @param header header of the incoming Message
+     * @return the first failing result, or a success result if all filters accepted the message
+     * @throws PreProcessingException if one of the filters threw an exception
+     */
+    private PreDispatchingFilterResult applyConcurrently(final List<PreDispatchingFilterChain.FilterEntry> group,
+                                                         final Message header) throws PreProcessingException {
+        final var completionService = new ExecutorCompletionService<PreDispatchingFilterResult>(getFilterExecutor());
+        final var futures = new ArrayList<Future<PreDispatchingFilterResult>>(group.size());
+        for (final var filterEntry : group) {
+            futures.add(completionService.submit(() -> applyFilter(filterEntry, header)));
+        }
+
+        try {
+            for (var i = 0; i < group.size(); i++) {
+                final var result = completionService.take().get();
+                if (!result.isSuccess()) {
+                    return result;
+                }
+            }
+            return PreDispatchingFilterResult.successResult();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PreProcessingException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PreProcessingException) {
+                throw (PreProcessingException) e.getCause();
+            }
+            throw new PreProcessingException(e.getCause());
+        } finally {
+            //cancel the filters which are still running after the first rejection
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.fraunhofer.iais.eis.DescriptionRequestMessage;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.IdempotentMessageHandler;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessageHandlingException;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.BodyResponse;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache for the response payloads of {@link IdempotentMessageHandler}s answering DescriptionRequestMessages, keyed by
+ * message type, requested element and hash of the current self-description, so payloads are recreated when the
+ * Connector was modified in place. Payloads for other message types (e.g. artifacts) are always created by the
+ * handler. The least recently used entries (e.g. for outdated self-descriptions) are evicted when the cache is full.
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class MessageResponseCache {
+
+    static final int MAX_ENTRIES = 256;
+
+    Map<CacheKey, Object> payloads = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<CacheKey, Object> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    AtomicLong generation = new AtomicLong();
+
+    /**
+     * Get the cached payload for the message or create (and cache) it with the handler.
+     *
+     * @param handler the handler of the message
+     * @param header header of the incoming message
+     * @param selfDescriptionHash hash of the current self-description, null if the payload must not be cached
+     * @param <R> type of the message
+     * @return the response payload
+     * @throws MessageHandlingException if the handler cannot create the payload
+     */
+    <R extends Message> Object getPayload(final IdempotentMessageHandler<R> handler,
+                                          final R header,
+                                          final String selfDescriptionHash) throws MessageHandlingException {
+        if (!(header instanceof DescriptionRequestMessage) || selfDescriptionHash == null) {
+            return handler.createResponsePayload(header);
+        }
+
+        final var key = new CacheKey(header.getClass(), ((DescriptionRequestMessage) header).getRequestedElement(),
+                selfDescriptionHash);
+        synchronized (payloads) {
+            final var cached = payloads.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        //create the payload outside of the lock, do not cache it if the cache was invalidated meanwhile
+        final var currentGeneration = generation.get();
+        final var payload = handler.createResponsePayload(header);
+        if (payload != null && !BodyResponse.isStreamingPayload(payload)) {
+            synchronized (payloads) {
+                if (generation.get() == currentGeneration) {
+                    payloads.put(key, payload);
+                }
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Remove all cached payloads.
+     */
+    void invalidate() {
+        synchronized (payloads) {
+            generation.incrementAndGet();
+            payloads.clear();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Response cache invalidated");
+        }
+    }
+
+    /**
+     * Get the number of cached payloads.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        synchronized (payloads) {
+            return payloads.size();
+        }
+    }
+
+    /**
+     * Key of a cached payload.
+     */
+    @Data
+    private static class CacheKey {
+        private final Class<?> messageType;
+        private final URI requestedElement;
+        private final String selfDescriptionHash;
+    }
+}
@@ -0,0 +1,162 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import javax.servlet.http.Part;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
+import lombok.experimental.UtilityClass;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * Compression of the payload parts of multipart responses and decompression of the payload parts of requests.
+ * Payloads held in memory (Strings, byte arrays) are compressed with gzip and only if this saves at least
+ * an eighth of their size, Resources with a compressible content type are compressed with deflate while they are written.
+ * Payloads below {@link PayloadEncoding#COMPRESSION_THRESHOLD}, partial payloads and payloads of unknown type are sent unchanged.
+ */
+@UtilityClass
+class PayloadCompression {
+
+    private static final MediaType TEXT_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    /**
+     * Get the payload of a request part, decompressed according to its Content-Encoding part header. Reading a
+     * decompressed payload fails with an IOException after {@link PayloadEncoding#getMaxDecompressedSize()} bytes.
+     *
+     * @param payloadPart the payload part of the request (may be null)
+     * @return the payload as stream, null if there is no payload part
+     * @throws IOException if the payload part cannot be read
+     */
+    static InputStream readPayload(final Part payloadPart) throws IOException {
+        if (payloadPart == null) {
+            return null;
+        }
+        return PayloadEncoding.fromContentEncoding(payloadPart.getHeader(PayloadEncoding.CONTENT_ENCODING))
+                .decompress(payloadPart.getInputStream());
+    }
+
+    /**
+     * Compress the payload part of a response, if the requesting connector accepts compressed payloads.
+     *
+     * @param payload the value of the payload part
+     * @param accepted the {@link PayloadEncoding#ACCEPT_HEADER} of the request (may be null)
+     * @return the compressed part, or the unchanged payload
+     * @throws IOException if the payload cannot be compressed
+     */
+    static Object compress(final Object payload, final String accepted) throws IOException {
+        if (payload == null || accepted == null) {
+            return payload;
+        }
+        if (payload instanceof String) {
+            return compressBytes(((String) payload).getBytes(StandardCharsets.UTF_8), payload, new HttpHeaders(), TEXT_UTF8, accepted);
+        } else if (payload instanceof byte[]) {
+            return compressBytes((byte[]) payload, payload, new HttpHeaders(), MediaType.APPLICATION_OCTET_STREAM, accepted);
+        } else if (payload instanceof HttpEntity) {
+            return compressEntity((HttpEntity<?>) payload, accepted);
+        }
+        return payload;
+    }
+
+    private static Object compressEntity(final HttpEntity<?> entity, final String accepted) throws IOException {
+        final var headers = entity.getHeaders();
+        if (headers.containsKey(PayloadEncoding.CONTENT_ENCODING) || headers.containsKey(HttpHeaders.CONTENT_RANGE)) {
+            return entity;
+        }
+        final var contentType = headers.getContentType();
+        final var body = entity.getBody();
+        if (body instanceof String) {
+            final var charset = contentType == null || contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+            return compressBytes(((String) body).getBytes(charset), entity, headers,
+                    contentType == null ? TEXT_UTF8 : new MediaType(contentType, charset), accepted);
+        } else if (body instanceof byte[]) {
+            return compressBytes((byte[]) body, entity, headers, contentType, accepted);
+        } else if (body instanceof Resource && contentType != null && PayloadEncoding.isCompressible(contentType.toString())
+                && PayloadEncoding.isAccepted(accepted, PayloadEncoding.DEFLATE)) {
+            final var resource = (Resource) body;
+            if (resource.isOpen() || resource.exists() && resource.contentLength() >= PayloadEncoding.COMPRESSION_THRESHOLD) {
+                return new HttpEntity<>(new CompressingResource(resource), compressedHeaders(headers, contentType, PayloadEncoding.DEFLATE));
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Compress an in-memory payload with gzip.
+     *
+     * @param bytes the payload bytes
+     * @param original the part value returned if compression is not worthwhile
+     * @param headers the part headers of the original part
+     * @param contentType the content type of the payload (may be null)
+     * @param accepted the accepted payload codings of the peer
+     * @return the compressed part or the original value
+     */
+    private static Object compressBytes(final byte[] bytes,
+                                        final Object original,
+                                        final HttpHeaders headers,
+                                        final MediaType contentType,
+                                        final String accepted) throws IOException {
+        if (bytes.length < PayloadEncoding.COMPRESSION_THRESHOLD || !PayloadEncoding.isAccepted(accepted, PayloadEncoding.GZIP)
+                || contentType != null && !MediaType.APPLICATION_OCTET_STREAM.equalsTypeAndSubtype(contentType)
+                    && !PayloadEncoding.isCompressible(contentType.toString())) {
+            return original;
+        }
+        final var compressed = PayloadEncoding.GZIP.compress(bytes);
+        if (compressed.length > bytes.length - bytes.length / 8) {
+            return original;
+        }
+        return new HttpEntity<>(compressed, compressedHeaders(headers, contentType, PayloadEncoding.GZIP));
+    }
+
+    private static HttpHeaders compressedHeaders(final HttpHeaders headers, final MediaType contentType, final PayloadEncoding encoding) {
+        final var compressedHeaders = new HttpHeaders();
+        compressedHeaders.putAll(headers);
+        compressedHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+        if (contentType != null) {
+            compressedHeaders.setContentType(contentType);
+        }
+        compressedHeaders.set(PayloadEncoding.CONTENT_ENCODING, encoding.getCoding());
+        return compressedHeaders;
+    }
+
+    /**
+     * Resource deflating another resource while it is read. The compressed length is unknown, so no Content-Length
+     * is written for the part.
+     */
+    private static final class CompressingResource extends AbstractResource {
+        private final Resource resource;
+
+        CompressingResource(final Resource resource) {
+            this.resource = resource;
+        }
+
+        @Override
+        public String getDescription() {
+            return "deflated " + resource.getDescription();
+        }
+
+        @Override
+        public String getFilename() {
+            return resource.getFilename();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return resource.isOpen();
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return PayloadEncoding.DEFLATE.compress(resource.getInputStream());
+        }
+    }
+}
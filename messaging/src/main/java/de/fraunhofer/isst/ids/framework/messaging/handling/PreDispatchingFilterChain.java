@@ -0,0 +1,177 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilter;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilterStatistics;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Copy-on-write chain of {@link PreDispatchingFilter}s used by the {@link MessageDispatcher}.
+ *
+ * Filters are sorted by their explicit order (lower values run first), filters with the same order keep their
+ * registration order. If adaptive ordering is enabled, filters with the same order are periodically re-sorted by their
+ * expected cost per rejected message, so cheap filters that reject often run before expensive ones.
+ * Adaptive ordering must only be enabled if the filters of one order group do not depend on each other.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class PreDispatchingFilterChain {
+
+    static final long REORDER_INTERVAL = 1024;
+
+    final AtomicLong registrations = new AtomicLong();
+    final AtomicLong processedSinceReorder = new AtomicLong();
+
+    volatile List<FilterEntry> entries = List.of();
+    volatile boolean adaptiveOrdering;
+
+    /**
+     * Add a filter to the chain.
+     *
+     * @param filter the filter to add
+     * @param order explicit order of the filter, lower values run first
+     */
+    synchronized void register(final PreDispatchingFilter filter, final int order) {
+        final var updated = new ArrayList<>(entries);
+        updated.add(new FilterEntry(filter, order, registrations.getAndIncrement()));
+        entries = sorted(updated);
+    }
+
+    /**
+     * Get the current (immutable) snapshot of the chain, safe to iterate while filters are registered concurrently.
+     *
+     * @return the filters in the order they should be applied
+     */
+    List<FilterEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Enable or disable adaptive reordering of filters with the same explicit order.
+     *
+     * @param adaptiveOrdering true if filters should be reordered by their observed cost and rejection rate
+     */
+    synchronized void setAdaptiveOrdering(final boolean adaptiveOrdering) {
+        this.adaptiveOrdering = adaptiveOrdering;
+        entries = sorted(new ArrayList<>(entries));
+    }
+
+    /**
+     * Notify the chain that a message passed through it, periodically triggers adaptive reordering.
+     */
+    void messageProcessed() {
+        if (adaptiveOrdering && processedSinceReorder.incrementAndGet() >= REORDER_INTERVAL) {
+            processedSinceReorder.set(0);
+            synchronized (this) {
+                entries = sorted(new ArrayList<>(entries));
+            }
+        }
+    }
+
+    /**
+     * Get the metrics of all filters in the chain.
+     *
+     * @return statistics of the filters, in their current order
+     */
+    List<PreDispatchingFilterStatistics> getStatistics() {
+        return entries.stream().map(FilterEntry::toStatistics).collect(Collectors.toList());
+    }
+
+    /**
+     * Sort the given entries by order, then (if adaptive) by expected cost per rejection, then by registration.
+     * Scores are snapshotted before sorting, because the metrics change concurrently.
+     *
+     * @param toSort the entries to sort
+     * @return sorted immutable list of entries
+     */
+    private List<FilterEntry> sorted(final List<FilterEntry> toSort) {
+        final var scores = new HashMap<FilterEntry, Double>();
+        for (final var entry : toSort) {
+            scores.put(entry, adaptiveOrdering ? entry.costPerRejection() : 0.0);
+        }
+
+        toSort.sort(Comparator.<FilterEntry>comparingInt(FilterEntry::getOrder)
+                .thenComparing(scores::get)
+                .thenComparingLong(FilterEntry::getSequence));
+
+        if (log.isDebugEnabled() && adaptiveOrdering) {
+            log.debug("PreDispatchingFilters reordered");
+        }
+
+        return List.copyOf(toSort);
+    }
+
+    /**
+     * A registered filter together with its metrics.
+     */
+    @Getter
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    static class FilterEntry {
+        PreDispatchingFilter filter;
+        int order;
+        long sequence;
+        LongAdder invocations = new LongAdder();
+        LongAdder rejections = new LongAdder();
+        LongAdder errors = new LongAdder();
+        LongAdder nanos = new LongAdder();
+
+        FilterEntry(final PreDispatchingFilter filter, final int order, final long sequence) {
+            this.filter = filter;
+            this.order = order;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Record a completed invocation of the filter.
+         *
+         * @param elapsedNanos processing time of the filter
+         * @param rejected true if the filter rejected the message
+         */
+        void record(final long elapsedNanos, final boolean rejected) {
+            invocations.increment();
+            nanos.add(elapsedNanos);
+            if (rejected) {
+                rejections.increment();
+            }
+        }
+
+        /**
+         * Record an invocation of the filter that ended with an exception.
+         *
+         * @param elapsedNanos processing time of the filter
+         */
+        void recordError(final long elapsedNanos) {
+            invocations.increment();
+            errors.increment();
+            nanos.add(elapsedNanos);
+        }
+
+        /**
+         * Expected processing time spent per rejected message, the rejection rate is smoothed so that
+         * filters without observed rejections are ordered by their cost.
+         *
+         * @return average cost divided by the smoothed rejection rate
+         */
+        double costPerRejection() {
+            final var count = invocations.sum();
+            final var averageNanos = count == 0 ? 0.0 : (double) nanos.sum() / count;
+            final var rejectionRate = (rejections.sum() + errors.sum() + 1.0) / (count + 2.0);
+            return averageNanos / rejectionRate;
+        }
+
+        PreDispatchingFilterStatistics toStatistics() {
+            return new PreDispatchingFilterStatistics(filter.getClass().getName(), order,
+                    invocations.sum(), rejections.sum(), errors.sum(), nanos.sum());
+        }
+    }
+}
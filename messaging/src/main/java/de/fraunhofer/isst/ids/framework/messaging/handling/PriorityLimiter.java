@@ -0,0 +1,114 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessagePriority;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+/**
+ * Global concurrency limit of the {@link MessageDispatcher}. When all slots are in use, waiting messages are admitted
+ * by their {@link MessagePriority} (and in arrival order within the same priority).
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+class PriorityLimiter {
+
+    // guarded by this
+    PriorityQueue<Waiter> waiting = new PriorityQueue<>(Comparator
+            .comparing((Waiter waiter) -> waiter.priority)
+            .thenComparingLong(waiter -> waiter.sequence));
+
+    @NonFinal
+    int available;
+    @NonFinal
+    long sequence;
+
+    /**
+     * Create a limiter with the given number of slots.
+     *
+     * @param maxConcurrent number of messages handled concurrently, must be at least 1
+     */
+    PriorityLimiter(final int maxConcurrent) {
+        this.available = maxConcurrent;
+    }
+
+    /**
+     * Acquire a slot without blocking. If no slot is free, the returned future completes when a slot is handed over
+     * to this message or the timeout elapses. A granted slot is handed over on the thread releasing it.
+     *
+     * @param priority the priority of the message
+     * @param timeoutMillis maximum time to wait for a free slot
+     * @return future completing with true if a slot was acquired, false if the timeout elapsed
+     */
+    CompletableFuture<Boolean> acquireAsync(final MessagePriority priority, final long timeoutMillis) {
+        final Waiter waiter;
+        synchronized (this) {
+            if (available > 0 && waiting.isEmpty()) {
+                available--;
+                return CompletableFuture.completedFuture(true);
+            }
+            waiter = new Waiter(priority, sequence++);
+            waiting.add(waiter);
+        }
+        waiter.granted.whenComplete((granted, error) -> {
+            if (!Boolean.TRUE.equals(granted)) {
+                removeWaiter(waiter);
+            }
+        });
+        return waiter.granted.completeOnTimeout(false, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Acquire a slot, wait until a slot is handed over to this message or the timeout elapses.
+     *
+     * @param priority the priority of the message
+     * @param timeoutMillis maximum time to wait for a free slot
+     * @return true if a slot was acquired, false if the timeout elapsed
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    boolean acquire(final MessagePriority priority, final long timeoutMillis) throws InterruptedException {
+        return MessageBulkhead.await(acquireAsync(priority, timeoutMillis), this::release);
+    }
+
+    /**
+     * Release a slot, it is handed over to the waiting message with the highest priority.
+     */
+    void release() {
+        while (true) {
+            final Waiter next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            //complete outside of the lock, the waiting message may continue on this thread
+            if (next.granted.complete(true)) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void removeWaiter(final Waiter waiter) {
+        waiting.remove(waiter);
+    }
+
+    /**
+     * A message waiting for a slot.
+     */
+    private static class Waiter {
+        private final MessagePriority priority;
+        private final long sequence;
+        private final CompletableFuture<Boolean> granted = new CompletableFuture<>();
+
+        Waiter(final MessagePriority priority, final long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
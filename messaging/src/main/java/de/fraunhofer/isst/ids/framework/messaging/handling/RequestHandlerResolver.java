@@ -5,6 +5,7 @@ import java.util.Optional;
 import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.iais.eis.RequestMessage;
 import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessageHandler;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.SupportedMessageType;
 
 /**
  * An instance of RequestHandlerResolver must find a {@link MessageHandler} for a given type of {@link RequestMessage},
@@ -20,4 +21,16 @@ public interface RequestHandlerResolver {
      * @return a MessageHandler for the given messageType or Optional.Empty if no Handler exists
      */
     <R extends Message> Optional<MessageHandler<R>> resolveHandler(Class<R> messageType);
+
+    /**
+     * Find the {@link SupportedMessageType} declaration the handler for the given MessageType was registered with.
+     * Its bulkhead settings are enforced by the {@link MessageDispatcher}.
+     *
+     * @param messageType class of the RequestMessage subtype the declaration should be found for
+     * @param <R> some subtype of RequestMessage
+     * @return the declaration or Optional.Empty if no Handler exists or the resolver does not provide declarations
+     */
+    default <R extends Message> Optional<SupportedMessageType> resolveDeclaration(final Class<R> messageType) {
+        return Optional.empty();
+    }
 }
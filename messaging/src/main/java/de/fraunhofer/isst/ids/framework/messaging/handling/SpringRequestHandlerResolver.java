@@ -1,31 +1,100 @@
 package de.fraunhofer.isst.ids.framework.messaging.handling;
 
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.fraunhofer.iais.eis.Message;
 import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessageHandler;
 import de.fraunhofer.isst.ids.framework.messaging.model.messages.SupportedMessageType;
-import lombok.Data;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.stereotype.Service;
 
 /**
  * Resolver that uses the Spring dependency injection mechanism to find the matching message handler.
+ * All handlers annotated with {@link SupportedMessageType} are indexed once when the application context is refreshed,
+ * lookups for concrete message classes (e.g. the *Impl classes of the infomodel) are resolved along their type hierarchy
+ * and memoized afterwards.
  */
+@Slf4j
 @Service
-@RequiredArgsConstructor(onConstructor = @__(@Autowired))
 public class SpringRequestHandlerResolver implements RequestHandlerResolver {
 
     private final ApplicationContext appContext;
 
-    @Data
-    @RequiredArgsConstructor
-    private static class Tuple<K, V> {
-        final K key;
-        final V value;
+    /**
+     * Immutable index from annotated message type to handler and its declaration, built on context refresh.
+     */
+    private volatile Map<Class<?>, IndexEntry> handlerIndex;
+
+    /**
+     * Memoized resolutions (hits and misses) for the concrete message classes seen at runtime.
+     */
+    private final Map<Class<?>, Optional<IndexEntry>> resolvedEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Create a resolver working on the given {@link ApplicationContext}.
+     *
+     * @param appContext the context in which the {@link MessageHandler} beans are registered
+     */
+    @Autowired
+    public SpringRequestHandlerResolver(final ApplicationContext appContext) {
+        this.appContext = appContext;
+    }
+
+    /**
+     * Rebuild the handler index when the application context is (re)freshed.
+     *
+     * @param event the refresh event of the application context
+     */
+    @EventListener
+    public void onContextRefreshed(final ContextRefreshedEvent event) {
+        if (event.getApplicationContext() == appContext) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Scan all beans annotated with {@link SupportedMessageType} and build a new immutable handler index.
+     * Previously memoized resolutions are discarded.
+     */
+    public synchronized void rebuildIndex() {
+        final var index = new HashMap<Class<?>, IndexEntry>();
+
+        for (final var beanName : appContext.getBeanNamesForAnnotation(SupportedMessageType.class)) {
+            final var bean = appContext.getBean(beanName);
+            if (!(bean instanceof MessageHandler)) {
+                if (log.isWarnEnabled()) {
+                    log.warn(String.format("Bean %s is annotated with SupportedMessageType but is no MessageHandler, ignoring it!", beanName));
+                }
+                continue;
+            }
+
+            final var annotations = AnnotatedElementUtils
+                    .findMergedRepeatableAnnotations(AopUtils.getTargetClass(bean), SupportedMessageType.class);
+            for (final var annotation : annotations) {
+                final var previous = index.putIfAbsent(annotation.value(), new IndexEntry((MessageHandler<?>) bean, annotation));
+                if (previous != null && previous.handler != bean && log.isWarnEnabled()) {
+                    log.warn(String.format("Multiple handlers found for %s, using the first one!", annotation.value()));
+                }
+            }
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Indexed %d message handlers", index.size()));
+        }
+
+        this.handlerIndex = Map.copyOf(index);
+        this.resolvedEntries.clear();
     }
 
     /**
@@ -38,12 +107,75 @@ public class SpringRequestHandlerResolver implements RequestHandlerResolver {
     @SuppressWarnings("unchecked")
     @Override
     public <R extends Message> Optional<MessageHandler<R>> resolveHandler(final Class<R> messageType) {
-        //TODO: check if still one handler can support multiple message tpyes (SupportedMessageType)
-        return Arrays.stream(appContext.getBeanNamesForAnnotation(SupportedMessageType.class))
-                .flatMap(s -> Optional.ofNullable(appContext.findAnnotationOnBean(s, SupportedMessageType.class)).stream().map(msg -> new Tuple<>(s, msg)))
-                .filter(t -> t.value.value().equals(messageType))
-                .<MessageHandler<R>>map(t -> appContext.getBean(t.key, MessageHandler.class))
-                .findFirst();
+        return resolveEntry(messageType).map(entry -> (MessageHandler<R>) entry.handler);
+    }
+
+    /**
+     * Resolve the {@link SupportedMessageType} declaration of the handler for the given messageType.
+     *
+     * @param messageType type of the message to handle
+     * @param <R> generic constraint to get a subtype of RequestMessage
+     * @return optionally found declaration of the matching handler
+     */
+    @Override
+    public <R extends Message> Optional<SupportedMessageType> resolveDeclaration(final Class<R> messageType) {
+        return resolveEntry(messageType).map(entry -> entry.declaration);
+    }
+
+    private Optional<IndexEntry> resolveEntry(final Class<?> messageType) {
+        if (handlerIndex == null) {
+            //resolver was used before the context was refreshed
+            rebuildIndex();
+        }
+
+        return resolvedEntries.computeIfAbsent(messageType, this::lookupHierarchy);
     }
 
+    /**
+     * Find the handler registered for the most specific type in the hierarchy of the given class
+     * (the class itself, then its superclasses and interfaces, level by level).
+     *
+     * @param messageType the concrete class of an incoming message
+     * @return the matching index entry or Optional.empty if no handler is registered for any type in the hierarchy
+     */
+    private Optional<IndexEntry> lookupHierarchy(final Class<?> messageType) {
+        final var index = handlerIndex;
+        final var visited = new LinkedHashSet<Class<?>>();
+        final var queue = new ArrayDeque<Class<?>>();
+        queue.add(messageType);
+
+        while (!queue.isEmpty()) {
+            final var current = queue.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+
+            final var entry = index.get(current);
+            if (entry != null) {
+                return Optional.of(entry);
+            }
+
+            if (current.getSuperclass() != null) {
+                queue.add(current.getSuperclass());
+            }
+            for (final var iface : current.getInterfaces()) {
+                queue.add(iface);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * A registered handler together with the declaration it was registered with.
+     */
+    private static class IndexEntry {
+        private final MessageHandler<?> handler;
+        private final SupportedMessageType declaration;
+
+        IndexEntry(final MessageHandler<?> handler, final SupportedMessageType declaration) {
+            this.handler = handler;
+            this.declaration = declaration;
+        }
+    }
 }
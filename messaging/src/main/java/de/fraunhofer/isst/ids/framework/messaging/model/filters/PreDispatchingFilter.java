@@ -17,4 +17,15 @@ public interface PreDispatchingFilter {
      * @throws PreProcessingException if an error occurs while processing the message
      */
     PreDispatchingFilterResult process(Message in) throws PreProcessingException;
+
+    /**
+     * Declare whether the filter is independent of all other filters (it neither relies on their results
+     * nor has side effects they rely on). Consecutive independent filters may be applied concurrently by the
+     * MessageDispatcher, the first rejection short-circuits the remaining ones.
+     *
+     * @return true if the filter can be applied concurrently to other independent filters
+     */
+    default boolean isIndependent() {
+        return false;
+    }
 }
@@ -0,0 +1,60 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.filters;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Snapshot of the runtime metrics of a registered {@link PreDispatchingFilter}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class PreDispatchingFilterStatistics {
+
+    /**
+     * Name of the filter (its class name).
+     */
+    String filterName;
+    /**
+     * Explicit order the filter was registered with.
+     */
+    int order;
+    /**
+     * Number of messages the filter was applied to.
+     */
+    long invocations;
+    /**
+     * Number of messages the filter rejected.
+     */
+    long rejections;
+    /**
+     * Number of times the filter threw an exception.
+     */
+    long errors;
+    /**
+     * Accumulated processing time of the filter in nanoseconds.
+     */
+    long totalNanos;
+
+    /**
+     * Average processing time of the filter.
+     *
+     * @return average processing time per invocation in nanoseconds (0 if the filter was not invoked yet)
+     */
+    public double getAverageNanos() {
+        return invocations == 0 ? 0 : (double) totalNanos / invocations;
+    }
+
+    /**
+     * Share of rejected messages.
+     *
+     * @return rejections per invocation (0 if the filter was not invoked yet)
+     */
+    public double getRejectionRate() {
+        return invocations == 0 ? 0 : (double) rejections / invocations;
+    }
+}
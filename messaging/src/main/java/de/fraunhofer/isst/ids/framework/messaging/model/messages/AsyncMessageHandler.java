@@ -0,0 +1,46 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.messages;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.MessageResponse;
+
+/**
+ * A {@link MessageHandler} which handles messages asynchronously. The MessageDispatcher composes the returned
+ * {@link CompletionStage} without blocking a thread while the handler waits for databases or other connectors.
+ *
+ * @param <T> subtype of message supported by the message handler
+ */
+public interface AsyncMessageHandler<T extends Message> extends MessageHandler<T> {
+
+    /**
+     * Handle an incoming Message of type T asynchronously.
+     * A stage completing exceptionally is treated like a {@link MessageHandlingException} of a synchronous handler.
+     *
+     * @param queryHeader header part of the incoming Message (an instance of RequestMessage)
+     * @param payload payload of the Message (as MessagePayload, access with getUnderlyingInputStream())
+     * @return a stage completing with a MessageResponse (BodyResponse, ErrorResponse,...)
+     */
+    CompletionStage<MessageResponse> handleMessageAsync(T queryHeader, MessagePayload payload);
+
+    /**
+     * Handle an incoming Message synchronously, by waiting for the result of {@link #handleMessageAsync(Message, MessagePayload)}.
+     *
+     * @param queryHeader header part of the incoming Message (an instance of RequestMessage)
+     * @param payload payload of the Message (as MessagePayload, access with getUnderlyingInputStream())
+     * @return an instance of MessageResponse (BodyResponse, ErrorResponse,...)
+     * @throws MessageHandlingException if the asynchronous handling completed exceptionally or was interrupted
+     */
+    @Override
+    default MessageResponse handleMessage(final T queryHeader, final MessagePayload payload) throws MessageHandlingException {
+        try {
+            return handleMessageAsync(queryHeader, payload).toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageHandlingException(e);
+        } catch (ExecutionException e) {
+            throw new MessageHandlingException(e.getCause());
+        }
+    }
+}
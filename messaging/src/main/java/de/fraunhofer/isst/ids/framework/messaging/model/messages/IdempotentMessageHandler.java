@@ -0,0 +1,47 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.messages;
+
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.BodyResponse;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.MessageResponse;
+
+/**
+ * A {@link MessageHandler} whose response payload is a pure function of the message type and the requested element
+ * (e.g. the self-description for a DescriptionRequestMessage). If the response cache of the MessageDispatcher is
+ * enabled, the payload for DescriptionRequestMessages is only created once per message type, requested element and
+ * self-description, the header is created for every message. Payloads for other message types are not cached.
+ *
+ * @param <T> subtype of message supported by the message handler
+ */
+public interface IdempotentMessageHandler<T extends Message> extends MessageHandler<T> {
+
+    /**
+     * Create the response header for an incoming message (e.g. with its id as correlationMessage).
+     *
+     * @param queryHeader header part of the incoming Message
+     * @return the header of the response (ResponseMessage or NotificationMessage)
+     * @throws MessageHandlingException if the header cannot be created
+     */
+    Message createResponseHeader(T queryHeader) throws MessageHandlingException;
+
+    /**
+     * Create the response payload, must only depend on the message type and the requested element of the message.
+     *
+     * @param queryHeader header part of the incoming Message
+     * @return the payload of the response (usually the serialized requested element)
+     * @throws MessageHandlingException if the payload cannot be created
+     */
+    Object createResponsePayload(T queryHeader) throws MessageHandlingException;
+
+    /**
+     * Handle an incoming Message by creating response header and payload.
+     *
+     * @param queryHeader header part of the incoming Message (an instance of RequestMessage)
+     * @param payload payload of the Message (ignored)
+     * @return a BodyResponse with the created header and payload
+     * @throws MessageHandlingException if header or payload cannot be created
+     */
+    @Override
+    default MessageResponse handleMessage(final T queryHeader, final MessagePayload payload) throws MessageHandlingException {
+        return BodyResponse.create(createResponseHeader(queryHeader), createResponsePayload(queryHeader));
+    }
+}
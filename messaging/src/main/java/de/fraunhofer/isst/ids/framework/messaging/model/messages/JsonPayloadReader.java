@@ -0,0 +1,163 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.messages;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Streaming JSON parsing of payload InputStreams, used by the default methods of {@link MessagePayload}.
+ */
+@UtilityClass
+class JsonPayloadReader {
+
+    /**
+     * ObjectMapper used by MessagePayloads which do not provide their own.
+     */
+    static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
+
+    /**
+     * Iterate over the elements of a top-level JSON array.
+     *
+     * @param input the payload
+     * @param objectMapper mapper used for parsing the elements
+     * @param elementType type of the array elements
+     * @param <T> type of the parsed elements
+     * @return iterator over the parsed elements
+     * @throws IOException if the payload is no JSON array
+     */
+    static <T> Iterator<T> iterateArray(final InputStream input, final ObjectMapper objectMapper,
+                                        final Class<? extends T> elementType) throws IOException {
+        return new JsonArrayIterator<>(arrayParser(input, objectMapper), objectMapper.readerFor(elementType));
+    }
+
+    /**
+     * Stream the elements of a top-level JSON array, closing the stream closes the parser.
+     *
+     * @param input the payload
+     * @param objectMapper mapper used for parsing the elements
+     * @param elementType type of the array elements
+     * @param <T> type of the parsed elements
+     * @return sequential stream of the parsed elements
+     * @throws IOException if the payload is no JSON array
+     */
+    static <T> Stream<T> streamArray(final InputStream input, final ObjectMapper objectMapper,
+                                     final Class<? extends T> elementType) throws IOException {
+        final var iterator = new JsonArrayIterator<T>(arrayParser(input, objectMapper), objectMapper.readerFor(elementType));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(iterator::close);
+    }
+
+    /**
+     * Hand every token of the payload to the visitor, until the visitor returns false or the payload ends.
+     *
+     * @param input the payload
+     * @param objectMapper mapper providing the parser
+     * @param visitor the visitor for the tokens
+     * @throws IOException if the payload cannot be parsed or the visitor fails
+     */
+    static void visit(final InputStream input, final ObjectMapper objectMapper, final JsonTokenVisitor visitor) throws IOException {
+        try (var parser = objectMapper.getFactory().createParser(input)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (!visitor.visit(token, parser)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a parser for the payload, positioned on the start of the top-level array.
+     *
+     * @param input the payload
+     * @param objectMapper mapper providing the parser
+     * @return the parser
+     * @throws IOException if the payload is no JSON array
+     */
+    private static JsonParser arrayParser(final InputStream input, final ObjectMapper objectMapper) throws IOException {
+        final var parser = objectMapper.getFactory().createParser(input);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            final var exception = new JsonParseException(parser, "Payload is no JSON array!");
+            parser.close();
+            throw exception;
+        }
+        return parser;
+    }
+
+    /**
+     * Iterator reading the elements of a JSON array one by one, the parser is closed when the array ends.
+     *
+     * @param <T> type of the elements
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static final class JsonArrayIterator<T> implements Iterator<T> {
+        final JsonParser parser;
+        final ObjectReader reader;
+        T next;
+        boolean ready;
+        boolean done;
+
+        JsonArrayIterator(final JsonParser parser, final ObjectReader reader) {
+            this.parser = parser;
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ready) {
+                return true;
+            }
+            if (done) {
+                return false;
+            }
+            try {
+                final var token = parser.nextToken();
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    close();
+                    return false;
+                }
+                next = reader.readValue(parser);
+                ready = true;
+                return true;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            final var element = next;
+            next = null;
+            return element;
+        }
+
+        void close() {
+            done = true;
+            try {
+                parser.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.messages;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Visitor for the tokens of a JSON payload, see {@link MessagePayload#visitJSON(JsonTokenVisitor)}.
+ */
+@FunctionalInterface
+public interface JsonTokenVisitor {
+
+    /**
+     * Visit the next token of the payload. The parser is positioned on the token, so its value can be read
+     * (e.g. with getText()), or a whole subtree can be read with readValueAs() or skipped with skipChildren().
+     *
+     * @param token the current token
+     * @param parser the parser positioned on the token
+     * @return true to continue with the next token, false to stop parsing
+     * @throws IOException if the token cannot be processed
+     */
+    boolean visit(JsonToken token, JsonParser parser) throws IOException;
+}
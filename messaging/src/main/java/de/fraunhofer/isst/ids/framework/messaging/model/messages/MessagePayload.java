@@ -2,6 +2,8 @@ package de.fraunhofer.isst.ids.framework.messaging.model.messages;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 /**
  * Wrapper for payloads of incoming Messages. Implementation can be found in {@link MessagePayloadImpl}.
@@ -22,4 +24,43 @@ public interface MessagePayload {
      * @throws IOException if underlying input stream cannot be parsed
      */
     <T> T readFromJSON(Class<? extends T> targetType) throws IOException;
+
+    /**
+     * Iterate over the elements of a payload consisting of a top-level JSON array, elements are parsed one at a time
+     * while iterating, so the payload is never held in memory completely.
+     * Errors while parsing an element are thrown as (unchecked) UncheckedIOException by the iterator.
+     * The default implementation parses {@link #getUnderlyingInputStream()} with a default ObjectMapper.
+     *
+     * @param elementType type of the array elements
+     * @param <T> type of the parsed elements
+     * @return iterator over the parsed elements
+     * @throws IOException if the payload is no JSON array
+     */
+    default <T> Iterator<T> iterateJSONArray(final Class<? extends T> elementType) throws IOException {
+        return JsonPayloadReader.iterateArray(getUnderlyingInputStream(), JsonPayloadReader.DEFAULT_MAPPER, elementType);
+    }
+
+    /**
+     * Stream the elements of a payload consisting of a top-level JSON array, see {@link #iterateJSONArray(Class)}.
+     * The stream should be closed after use (e.g. with try-with-resources), to release the underlying parser.
+     *
+     * @param elementType type of the array elements
+     * @param <T> type of the parsed elements
+     * @return sequential stream of the parsed elements
+     * @throws IOException if the payload is no JSON array
+     */
+    default <T> Stream<T> streamJSONArray(final Class<? extends T> elementType) throws IOException {
+        return JsonPayloadReader.streamArray(getUnderlyingInputStream(), JsonPayloadReader.DEFAULT_MAPPER, elementType);
+    }
+
+    /**
+     * Parse the payload as JSON token by token and hand every token to the visitor, until the visitor returns false
+     * or the payload ends. The default implementation parses {@link #getUnderlyingInputStream()}.
+     *
+     * @param visitor the visitor for the tokens
+     * @throws IOException if the payload cannot be parsed or the visitor fails
+     */
+    default void visitJSON(final JsonTokenVisitor visitor) throws IOException {
+        JsonPayloadReader.visit(getUnderlyingInputStream(), JsonPayloadReader.DEFAULT_MAPPER, visitor);
+    }
 }
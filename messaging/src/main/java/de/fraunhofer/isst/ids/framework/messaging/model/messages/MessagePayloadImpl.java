@@ -2,6 +2,8 @@ package de.fraunhofer.isst.ids.framework.messaging.model.messages;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AccessLevel;
@@ -27,4 +29,19 @@ public class MessagePayloadImpl implements MessagePayload {
     public <T> T readFromJSON(final Class<? extends T> targetType) throws IOException {
         return this.objectMapper.readValue(underlyingInputStream, targetType);
     }
+
+    @Override
+    public <T> Iterator<T> iterateJSONArray(final Class<? extends T> elementType) throws IOException {
+        return JsonPayloadReader.iterateArray(underlyingInputStream, objectMapper, elementType);
+    }
+
+    @Override
+    public <T> Stream<T> streamJSONArray(final Class<? extends T> elementType) throws IOException {
+        return JsonPayloadReader.streamArray(underlyingInputStream, objectMapper, elementType);
+    }
+
+    @Override
+    public void visitJSON(final JsonTokenVisitor visitor) throws IOException {
+        JsonPayloadReader.visit(underlyingInputStream, objectMapper, visitor);
+    }
 }
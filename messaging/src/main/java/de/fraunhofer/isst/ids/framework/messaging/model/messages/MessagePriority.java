@@ -0,0 +1,20 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.messages;
+
+/**
+ * Priority class of a message type, used by the MessageDispatcher to decide which waiting message is handled next
+ * when its global concurrency limit is reached.
+ */
+public enum MessagePriority {
+    /**
+     * Handled before all other waiting messages (e.g. notifications).
+     */
+    HIGH,
+    /**
+     * Default priority.
+     */
+    NORMAL,
+    /**
+     * Only handled when no message with higher priority is waiting (e.g. bulk artifact transfers).
+     */
+    LOW
+}
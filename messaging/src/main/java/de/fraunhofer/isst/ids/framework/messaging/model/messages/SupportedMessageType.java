@@ -10,10 +10,34 @@ import de.fraunhofer.iais.eis.Message;
 
 /**
  * This annotation specifies which Type of RequestMessage can be handled by a specific MessageHandler implementation.
+ * Optionally it declares a bulkhead for the type: a limit of concurrently handled messages, a bound for messages waiting
+ * for a free slot and a priority class. Messages exceeding the bulkhead are rejected with TEMPORARILY_NOT_AVAILABLE.
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 @Repeatable(value = SupportedMessageTypes.class)
 public @interface SupportedMessageType {
     Class<? extends Message> value();
+
+    /**
+     * Maximum number of messages of this type which are handled concurrently, values below 1 disable the limit.
+     *
+     * @return the concurrency limit of the type
+     */
+    int maxConcurrentRequests() default 0;
+
+    /**
+     * Maximum number of messages of this type waiting for a free slot when the concurrency limit is reached,
+     * further messages are rejected immediately.
+     *
+     * @return the queue bound of the type
+     */
+    int maxQueuedRequests() default 0;
+
+    /**
+     * Priority of this type when the global concurrency limit of the MessageDispatcher is reached.
+     *
+     * @return the priority class of the type
+     */
+    MessagePriority priority() default MessagePriority.NORMAL;
 }
@@ -17,6 +17,7 @@ import org.springframework.http.MediaType;
 
 /**
  * Utility class for returning files using Base64 encoding.
+ * The whole file and its encoding are held in memory, use {@link StreamingBase64FileBodyResponse} for large files.
  * @param <T> a subclass of ResponseMessage or NotificationMessage
  */
 @FieldDefaults(makeFinal = true)
@@ -0,0 +1,109 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.responses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * InputStream which Base64 encodes another stream on the fly. The source is read in chunks of a multiple of
+ * three bytes, so only the last chunk is padded and the result equals the encoding of the whole stream.
+ * Memory usage is bounded by the chunk size, independent of the length of the source.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+class Base64EncodingInputStream extends InputStream {
+
+    static final int CHUNK_SIZE = 3 * 8192;
+
+    final InputStream source;
+    final Base64.Encoder encoder = Base64.getEncoder();
+    final byte[] chunk = new byte[CHUNK_SIZE];
+    final byte[] encoded = new byte[CHUNK_SIZE / 3 * 4];
+    int encodedLength;
+    int position;
+    boolean sourceExhausted;
+
+    /**
+     * @param source the stream to encode
+     */
+    Base64EncodingInputStream(final InputStream source) {
+        this.source = source;
+    }
+
+    /**
+     * Length of the Base64 encoding of a given number of bytes (with padding).
+     *
+     * @param length number of raw bytes
+     * @return number of encoded bytes
+     */
+    static long encodedLength(final long length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return encoded[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        final var count = Math.min(length, encodedLength - position);
+        System.arraycopy(encoded, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return encodedLength - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    /**
+     * Make sure encoded bytes are available, encode the next chunk of the source if necessary.
+     *
+     * @return false if the source is exhausted and all encoded bytes were read
+     * @throws IOException if the source cannot be read
+     */
+    private boolean fill() throws IOException {
+        if (position < encodedLength) {
+            return true;
+        }
+        if (sourceExhausted) {
+            return false;
+        }
+
+        var filled = 0;
+        while (filled < CHUNK_SIZE) {
+            final var read = source.read(chunk, filled, CHUNK_SIZE - filled);
+            if (read < 0) {
+                sourceExhausted = true;
+                break;
+            }
+            filled += read;
+        }
+        if (filled == 0) {
+            return false;
+        }
+
+        encodedLength = encoder.encode(filled == CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, filled), encoded);
+        position = 0;
+        return true;
+    }
+}
@@ -12,6 +12,12 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 
 /**
+ * Response with a header and some payload. Besides objects which are converted by Spring, the payload can be an
+ * {@link java.io.InputStream}, {@link org.springframework.core.io.Resource},
+ * {@link org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody} or
+ * {@link java.util.concurrent.Flow.Publisher} of {@link java.nio.ByteBuffer}s, these payloads are written incrementally
+ * while the response is sent.
+ *
  * @param <T> a subtype of ResponseMessage or NotificationMessage (will throw IllegalStateException if used with ResponseMessage)
  */
 @Data
@@ -51,7 +57,18 @@ public class BodyResponse<T extends Message> implements MessageResponse {
     public Map<String, Object> createMultipartMap(final Serializer serializer) throws IOException {
         final var multiMap = new LinkedHashMap<String, Object>();
         multiMap.put("header", serializer.serialize(header));
-        multiMap.put("payload", payload);
+        multiMap.put("payload", StreamingPayloads.toPart(payload));
         return multiMap;
     }
+
+    /**
+     * Check if a payload is consumed when it is written (InputStreams, StreamingResponseBodies, Publishers and
+     * open Resources), such payloads can only be sent once.
+     *
+     * @param payload the payload of a response
+     * @return true if the payload can only be written once
+     */
+    public static boolean isStreamingPayload(final Object payload) {
+        return StreamingPayloads.isStreaming(payload);
+    }
 }
@@ -11,7 +11,7 @@ import de.fraunhofer.iais.eis.RejectionMessageBuilder;
 import de.fraunhofer.iais.eis.RejectionReason;
 import de.fraunhofer.iais.eis.TokenFormat;
 import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
-import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import de.fraunhofer.isst.ids.framework.util.TimeService;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -67,7 +67,7 @@ public class ErrorResponse implements MessageResponse {
                 ._issuerConnector_(connectorId)
                 ._modelVersion_(modelVersion)
                 ._rejectionReason_(rejectionReason)
-                ._issued_(IDSUtils.getGregorianNow())
+                ._issued_(TimeService.now())
                 .build();
         return new ErrorResponse(rejectionMessage, errorMessage);
     }
@@ -0,0 +1,258 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.responses;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RequestMessage;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+
+/**
+ * MessageResponse returning a file as binary payload (without Base64 encoding). The file is read through a
+ * {@link FileChannel} with a fixed size buffer while the response is written, so it is never held in memory.
+ * If the request contains an {@link #RANGE_HEADER} http header with a single byte range (same syntax as the http Range
+ * header, e.g. <code>bytes=1024-</code>), only this range of the file is returned and the payload part gets a
+ * <code>Content-Range</code> part header, so interrupted downloads can be resumed. A separate header is used because
+ * the http Range header applies to the whole multipart response.
+ * The file must not be deleted or modified before the response was sent.
+ * Note that the IDSHttpService of this framework decodes received parts as Strings, binary payloads are only
+ * preserved by clients reading the payload part as bytes.
+ *
+ * @param <T> a subclass of ResponseMessage or NotificationMessage
+ */
+@Slf4j
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class FileBodyResponse<T extends Message> implements MessageResponse {
+
+    /**
+     * Http header of a request selecting a byte range of the payload of a FileBodyResponse.
+     */
+    public static final String RANGE_HEADER = "IDS-Payload-Range";
+
+    @Getter
+    T header;
+    File file;
+    MediaType mediaType;
+    long start;
+    long length;
+    boolean partial;
+
+    /**
+     * Create a MessageResponse with the given file as binary payload.
+     *
+     * @param header header of the response (ResponseMessage or NotificationMessage)
+     * @param file file that should be returned
+     * @param mediaType mediatype of the file
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public FileBodyResponse(final T header, final File file, final MediaType mediaType) throws IOException {
+        this(header, file, mediaType, 0, file.length(), false);
+        if (!file.isFile() || !file.canRead()) {
+            throw new FileNotFoundException(String.format("File %s cannot be read!", file.getAbsolutePath()));
+        }
+    }
+
+    private FileBodyResponse(final T header, final File file, final MediaType mediaType,
+                             final long start, final long length, final boolean partial) {
+        if (header instanceof RequestMessage) {
+            throw new IllegalStateException("Responses are only allowed using instances of ResponseMessage or NotificationMessage!");
+        }
+        this.header = header;
+        this.file = file;
+        this.mediaType = mediaType;
+        this.start = start;
+        this.length = length;
+        this.partial = partial;
+    }
+
+    /**
+     * Create a MessageResponse with the given file as binary payload.
+     *
+     * @param header header of the response (ResponseMessage or NotificationMessage)
+     * @param file file that should be returned
+     * @param mediaType mediatype of the file
+     * @param <T> subtype of Message (ResponseMessage or NotificationMessage)
+     * @return instance of FileBodyResponse using given parameters
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public static <T extends Message> FileBodyResponse<T> create(final T header,
+                                                                 final File file,
+                                                                 final MediaType mediaType) throws IOException {
+        return new FileBodyResponse<>(header, file, mediaType);
+    }
+
+    /**
+     * Restrict the payload to the range requested by a {@link #RANGE_HEADER}. Only single byte ranges are supported,
+     * the whole file is returned for missing, multiple or unsatisfiable ranges (like for http Range requests, RFC 7233).
+     *
+     * @param rangeHeader value of the {@link #RANGE_HEADER} of the request (may be null)
+     * @return a response containing only the requested range, or this response
+     */
+    public FileBodyResponse<T> withRange(final String rangeHeader) {
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return this;
+        }
+        try {
+            final var ranges = HttpRange.parseRanges(rangeHeader);
+            final var fileLength = file.length();
+            if (ranges.size() != 1 || fileLength == 0) {
+                return this;
+            }
+            final var rangeStart = ranges.get(0).getRangeStart(fileLength);
+            final var rangeEnd = ranges.get(0).getRangeEnd(fileLength);
+            if (rangeStart >= fileLength || rangeEnd < rangeStart) {
+                return this;
+            }
+            return new FileBodyResponse<>(header, file, mediaType, rangeStart, rangeEnd - rangeStart + 1, true);
+        } catch (IllegalArgumentException e) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Ignoring invalid range %s: %s", rangeHeader, e.getMessage()));
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Check if the payload only contains a range of the file.
+     *
+     * @return true if a range was applied
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**{@inheritDoc}*/
+    @Override
+    public Map<String, Object> createMultipartMap(final Serializer serializer) throws IOException {
+        final var headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+        if (partial) {
+            headers.set(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, start + length - 1, file.length()));
+        }
+
+        final var multiMap = new LinkedHashMap<String, Object>();
+        multiMap.put("header", serializer.serialize(header));
+        multiMap.put("payload", new HttpEntity<Resource>(new FileRegionResource(file, start, length), headers));
+        return multiMap;
+    }
+
+    /**
+     * Resource providing a region of a file.
+     */
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    static class FileRegionResource extends AbstractResource {
+        File file;
+        long start;
+        long length;
+
+        FileRegionResource(final File file, final long start, final long length) {
+            this.file = file;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            final var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            channel.position(start);
+            return new FileRegionInputStream(channel, length);
+        }
+
+        @Override
+        public boolean exists() {
+            return file.exists();
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public long lastModified() {
+            return file.lastModified();
+        }
+
+        @Override
+        public String getFilename() {
+            return file.getName();
+        }
+
+        @Override
+        public String getDescription() {
+            return String.format("bytes %d-%d of file [%s]", start, start + length - 1, file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * InputStream reading a limited number of bytes from a FileChannel.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    static class FileRegionInputStream extends InputStream {
+        final FileChannel channel;
+        long remaining;
+
+        FileRegionInputStream(final FileChannel channel, final long remaining) {
+            this.channel = channel;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final var single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            final var read = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(count, remaining)));
+            if (read < 0) {
+                remaining = 0;
+                return -1;
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(final long count) throws IOException {
+            final var skipped = Math.max(0, Math.min(count, remaining));
+            channel.position(channel.position() + skipped);
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.responses;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.RequestMessage;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+/**
+ * Utility class for returning files using Base64 encoding, like {@link Base64EncodedFileBodyResponse}.
+ * The file is not loaded into memory, it is Base64 encoded while it is written to the response, using buffers
+ * of bounded size. The file must not be deleted or modified before the response was sent.
+ *
+ * @param <T> a subclass of ResponseMessage or NotificationMessage
+ */
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class StreamingBase64FileBodyResponse<T extends Message> implements MessageResponse {
+
+    T header;
+    HttpEntity<Resource> payload;
+
+    /**
+     * Create a MessageResponse with a Payload containing a Base64 encoded File.
+     *
+     * @param header header of the response (ResponseMessage or NotificationMessage)
+     * @param file file that should be returned
+     * @param mediaType mediatype of the file
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public StreamingBase64FileBodyResponse(final T header,
+                                           final File file,
+                                           final MediaType mediaType) throws IOException {
+        if (header instanceof RequestMessage) {
+            throw new IllegalStateException("Responses are only allowed using instances of ResponseMessage or NotificationMessage!");
+        }
+        if (!file.isFile() || !file.canRead()) {
+            throw new FileNotFoundException(String.format("File %s cannot be read!", file.getAbsolutePath()));
+        }
+        this.header = header;
+        final var headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+        this.payload = new HttpEntity<>(new Base64FileResource(file), headers);
+    }
+
+    /**
+     * Create a MessageResponse with a Payload containing a Base64 encoded File, which is encoded while it is sent.
+     *
+     * @param header header of the response (ResponseMessage or NotificationMessage)
+     * @param file file that should be returned
+     * @param mediaType mediatype of the file
+     * @param <T> subtype of Message (ResponseMessage or NotificationMessage)
+     * @return instance of StreamingBase64FileBodyResponse using given parameters
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    public static <T extends Message> StreamingBase64FileBodyResponse<T> create(final T header,
+                                                                                final File file,
+                                                                                final MediaType mediaType) throws IOException {
+        return new StreamingBase64FileBodyResponse<>(header, file, mediaType);
+    }
+
+    /**{@inheritDoc}*/
+    @Override
+    public Map<String, Object> createMultipartMap(final Serializer serializer) throws IOException {
+        final var multiMap = new LinkedHashMap<String, Object>();
+        multiMap.put("header", serializer.serialize(header));
+        multiMap.put("payload", payload);
+        return multiMap;
+    }
+
+    /**
+     * Resource providing the Base64 encoding of a file. It has no filename, so the payload is sent as form field
+     * (like the byte array of {@link Base64EncodedFileBodyResponse}).
+     */
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    static class Base64FileResource extends AbstractResource {
+        File file;
+
+        Base64FileResource(final File file) {
+            this.file = file;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new Base64EncodingInputStream(Files.newInputStream(file.toPath()));
+        }
+
+        @Override
+        public boolean exists() {
+            return file.exists();
+        }
+
+        @Override
+        public long contentLength() {
+            return Base64EncodingInputStream.encodedLength(file.length());
+        }
+
+        @Override
+        public long lastModified() {
+            return file.lastModified();
+        }
+
+        @Override
+        public String getFilename() {
+            return null;
+        }
+
+        @Override
+        public String getDescription() {
+            return String.format("Base64 encoding of file [%s]", file.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.responses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Adapters for payloads which are written incrementally while the multipart response is sent.
+ * InputStreams, StreamingResponseBodies and Publishers of ByteBuffers are converted to an {@link InputStreamResource},
+ * which Spring copies to the response with a fixed size buffer (and without computing the content length in advance).
+ */
+@UtilityClass
+class StreamingPayloads {
+
+    static final int PIPE_SIZE = 64 * 1024;
+    static final int PUBLISHER_PREFETCH = 4;
+
+    private static final AtomicInteger WRITER_COUNT = new AtomicInteger();
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(runnable -> {
+        final var thread = new Thread(runnable, "ids-payload-writer-" + WRITER_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Check if a payload can only be written once.
+     *
+     * @param payload the payload of a response
+     * @return true if the payload is consumed when it is written
+     */
+    static boolean isStreaming(final Object payload) {
+        return payload instanceof InputStream
+                || payload instanceof StreamingResponseBody
+                || payload instanceof Flow.Publisher
+                || payload instanceof Resource && ((Resource) payload).isOpen();
+    }
+
+    /**
+     * Convert a streaming payload to a value Spring can write as multipart part, other payloads are returned unchanged.
+     * The elements of a Publisher are checked while reading, elements other than ByteBuffers fail the payload.
+     *
+     * @param payload the payload of a response
+     * @return the part value for the payload
+     */
+    static Object toPart(final Object payload) {
+        if (payload instanceof InputStream) {
+            return new InputStreamResource((InputStream) payload);
+        } else if (payload instanceof StreamingResponseBody) {
+            return new InputStreamResource(new StreamingResponseBodyInputStream((StreamingResponseBody) payload));
+        } else if (payload instanceof Flow.Publisher) {
+            return new InputStreamResource(new PublisherInputStream((Flow.Publisher<?>) payload));
+        }
+        return payload;
+    }
+
+    /**
+     * InputStream reading the output of a StreamingResponseBody, which is written on a separate thread into a pipe
+     * when the stream is read for the first time. A failure of the writer is thrown at the end of the stream,
+     * closing the stream makes the writer fail with an IOException on its next write.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    static class StreamingResponseBodyInputStream extends InputStream {
+        final StreamingResponseBody body;
+        PipedInputStream pipe;
+        volatile IOException failure;
+
+        StreamingResponseBodyInputStream(final StreamingResponseBody body) {
+            this.body = body;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final var read = pipe().read();
+            return read < 0 ? endOfStream() : read;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final var read = pipe().read(buffer, offset, length);
+            return read < 0 ? endOfStream() : read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (pipe != null) {
+                pipe.close();
+            }
+        }
+
+        private synchronized PipedInputStream pipe() throws IOException {
+            if (pipe == null) {
+                pipe = new PipedInputStream(PIPE_SIZE);
+                final var output = new PipedOutputStream(pipe);
+                WRITERS.execute(() -> {
+                    try {
+                        body.writeTo(output);
+                    } catch (IOException e) {
+                        failure = e;
+                    } catch (RuntimeException e) {
+                        failure = new IOException(e);
+                    } finally {
+                        //close after recording the failure, so the reader sees it when reaching the end of the pipe
+                        closeQuietly(output);
+                    }
+                });
+            }
+            return pipe;
+        }
+
+        private int endOfStream() throws IOException {
+            final var writerFailure = failure;
+            if (writerFailure != null) {
+                throw writerFailure;
+            }
+            return -1;
+        }
+
+        private static void closeQuietly(final PipedOutputStream output) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                //the reader is gone, nothing left to notify
+            }
+        }
+    }
+
+    /**
+     * InputStream subscribing to a Publisher of ByteBuffers. At most {@link #PUBLISHER_PREFETCH} buffers are requested
+     * ahead of the reader, so a fast publisher cannot fill the memory. The element type of a Publisher is not known
+     * at runtime, so every element is checked, the subscription is cancelled on the first element which is no
+     * ByteBuffer and reading fails.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    static class PublisherInputStream extends InputStream implements Flow.Subscriber<Object> {
+        static final ByteBuffer COMPLETE = ByteBuffer.allocate(0);
+
+        final Flow.Publisher<?> publisher;
+        final BlockingQueue<ByteBuffer> buffers = new LinkedBlockingQueue<>();
+        volatile Flow.Subscription subscription;
+        volatile Throwable failure;
+        ByteBuffer current;
+        boolean subscribed;
+        boolean completed;
+
+        PublisherInputStream(final Flow.Publisher<?> publisher) {
+            this.publisher = publisher;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription newSubscription) {
+            this.subscription = newSubscription;
+            newSubscription.request(PUBLISHER_PREFETCH);
+        }
+
+        @Override
+        public void onNext(final Object item) {
+            if (failure != null) {
+                return;
+            }
+            if (item instanceof ByteBuffer) {
+                buffers.offer((ByteBuffer) item);
+            } else {
+                subscription.cancel();
+                onError(new IllegalArgumentException(String.format("Payload publisher emitted %s instead of ByteBuffer!",
+                        item == null ? "null" : item.getClass().getName())));
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            if (failure == null) {
+                failure = throwable;
+                buffers.offer(COMPLETE);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (failure == null) {
+                buffers.offer(COMPLETE);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            final var single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!next()) {
+                return -1;
+            }
+            final var count = Math.min(length, current.remaining());
+            current.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+            final var active = subscription;
+            if (active != null && !completed) {
+                active.cancel();
+            }
+            completed = true;
+        }
+
+        /**
+         * Make sure the current buffer has remaining bytes, wait for the next buffer of the publisher if necessary.
+         *
+         * @return false if the publisher completed
+         * @throws IOException if the publisher failed or the reading thread was interrupted
+         */
+        private boolean next() throws IOException {
+            if (!subscribed) {
+                subscribed = true;
+                publisher.subscribe(this);
+            }
+            while (current == null || !current.hasRemaining()) {
+                if (completed) {
+                    return false;
+                }
+                try {
+                    current = buffers.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the payload publisher!");
+                }
+                if (current == COMPLETE) {
+                    completed = true;
+                    if (failure != null) {
+                        throw new IOException("Payload publisher failed!", failure);
+                    }
+                    return false;
+                }
+                subscription.request(1);
+            }
+            return true;
+        }
+    }
+}
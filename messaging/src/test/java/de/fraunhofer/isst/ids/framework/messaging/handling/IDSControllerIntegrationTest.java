@@ -1,8 +1,12 @@
 package de.fraunhofer.isst.ids.framework.messaging.handling;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 import de.fraunhofer.iais.eis.Connector;
 import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
@@ -16,6 +20,7 @@ import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
 import de.fraunhofer.isst.ids.framework.daps.DapsTokenProvider;
 import de.fraunhofer.isst.ids.framework.messaging.handling.model.TestPayload;
 import de.fraunhofer.isst.ids.framework.messaging.model.responses.BodyResponse;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.FileBodyResponse;
 import de.fraunhofer.isst.ids.framework.messaging.util.ResourceIDGenerator;
 import de.fraunhofer.isst.ids.framework.util.IDSUtils;
 import de.fraunhofer.isst.ids.framework.util.MultipartStringParser;
@@ -28,6 +33,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockPart;
 import org.springframework.test.context.ContextConfiguration;
@@ -40,6 +46,9 @@ import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandl
 
 import static de.fraunhofer.isst.ids.framework.messaging.handling.IDSControllerIntegrationTest.TestContextConfiguration;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -182,4 +191,148 @@ public class IDSControllerIntegrationTest {
         assertEquals(msgHeader.getId(), responseHeader.getCorrelationMessage());
     }
 
+
+    /**
+     * Test if IDSController answers every message of a batch in order and rejects batches above the maximum size
+     * or with non-contiguous messages
+     */
+    @Test
+    public void testBatch() throws Exception {
+        final var requestMappingInfo = RequestMappingInfo
+                .paths("/api/ids/batch")
+                .methods(RequestMethod.POST)
+                .consumes(MediaType.MULTIPART_FORM_DATA_VALUE)
+                .produces(MediaType.MULTIPART_FORM_DATA_VALUE)
+                .build();
+        requestMappingHandlerMapping.registerMapping(requestMappingInfo, idsController, IDSController.class.getDeclaredMethod("handleIDSBatch", HttpServletRequest.class));
+
+        Mockito.when(configurationContainer.getConnector()).thenReturn(connector);
+        Mockito.when(connector.getId()).thenReturn(new URL("https://isst.fraunhofer.de/ids/dc967f79-643d-4780-9e8e-3ca4a75ba6a5").toURI());
+        Mockito.when(connector.getOutboundModelVersion()).thenReturn("1.0.3");
+
+        final var token = new DynamicAttributeTokenBuilder()
+                ._tokenFormat_(TokenFormat.JWT)
+                ._tokenValue_("Token")
+                .build();
+        final var msgHeader = new RequestMessageBuilder(ResourceIDGenerator.randomURI(IDSControllerIntegrationTest.class))
+                ._issuerConnector_(connector.getId())
+                ._issued_(IDSUtils.getGregorianNow())
+                ._securityToken_(token)
+                ._senderAgent_(connector.getId())
+                ._modelVersion_(connector.getOutboundModelVersion())
+                .build();
+        final var header = serializer.serialize(msgHeader);
+
+        Mockito.when(messageDispatcher.processAsync(Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            final var payload = new String(invocation.<InputStream>getArgument(1).readAllBytes(), StandardCharsets.UTF_8);
+            final var responseMessage = new ResponseMessageBuilder()
+                    ._correlationMessage_(msgHeader.getId())
+                    ._issuerConnector_(connector.getId())
+                    ._issued_(IDSUtils.getGregorianNow())
+                    ._securityToken_(token)
+                    ._senderAgent_(connector.getId())
+                    ._modelVersion_(connector.getOutboundModelVersion()).build();
+            return CompletableFuture.completedFuture(BodyResponse.create(responseMessage, "response to " + payload));
+        });
+
+        final var requestBuilder = MockMvcRequestBuilders.multipart("/api/ids/batch")
+                .part(new MockPart("header-0", header.getBytes()))
+                .part(new MockPart("payload-0", "first".getBytes()))
+                .part(new MockPart("header-1", header.getBytes()))
+                .part(new MockPart("payload-1", "second".getBytes()))
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .accept(MediaType.MULTIPART_FORM_DATA);
+
+        final var started = mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+        final var result = mockMvc.perform(asyncDispatch(started)).andExpect(status().is(200)).andReturn();
+
+        final var parts = MultipartStringParser.stringToMultipart(result.getResponse().getContentAsString());
+        assertEquals("response to first", parts.get("payload-0"));
+        assertEquals("response to second", parts.get("payload-1"));
+        assertEquals(msgHeader.getId(), serializer.deserialize(parts.get("header-1"), ResponseMessage.class).getCorrelationMessage());
+
+        final var gap = MockMvcRequestBuilders.multipart("/api/ids/batch")
+                .part(new MockPart("header-0", header.getBytes()))
+                .part(new MockPart("header-1", header.getBytes()))
+                .part(new MockPart("header-3", header.getBytes()))
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .accept(MediaType.MULTIPART_FORM_DATA);
+        final var rejectedGap = mockMvc.perform(gap).andExpect(request().asyncStarted()).andReturn();
+        mockMvc.perform(asyncDispatch(rejectedGap)).andExpect(status().is(400));
+
+        idsController.setMaxBatchSize(1);
+        try {
+            final var rejected = mockMvc.perform(requestBuilder).andExpect(request().asyncStarted()).andReturn();
+            mockMvc.perform(asyncDispatch(rejected)).andExpect(status().is(413));
+        } finally {
+            idsController.setMaxBatchSize(IDSController.DEFAULT_MAX_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Test if IDSController restricts a FileBodyResponse to the range of the IDS-Payload-Range header and ignores
+     * the http Range header
+     */
+    @Test
+    public void testPayloadRange() throws Exception {
+        final var requestMappingInfo = RequestMappingInfo
+                .paths("/api/ids/range")
+                .methods(RequestMethod.POST)
+                .consumes(MediaType.MULTIPART_FORM_DATA_VALUE)
+                .produces(MediaType.MULTIPART_FORM_DATA_VALUE)
+                .build();
+        requestMappingHandlerMapping.registerMapping(requestMappingInfo, idsController, IDSController.class.getDeclaredMethod("handleIDSMessage", HttpServletRequest.class));
+
+        Mockito.when(configurationContainer.getConnector()).thenReturn(connector);
+        Mockito.when(connector.getId()).thenReturn(new URL("https://isst.fraunhofer.de/ids/dc967f79-643d-4780-9e8e-3ca4a75ba6a5").toURI());
+        Mockito.when(connector.getOutboundModelVersion()).thenReturn("1.0.3");
+
+        final var token = new DynamicAttributeTokenBuilder()
+                ._tokenFormat_(TokenFormat.JWT)
+                ._tokenValue_("Token")
+                .build();
+        final var msgHeader = new RequestMessageBuilder(ResourceIDGenerator.randomURI(IDSControllerIntegrationTest.class))
+                ._issuerConnector_(connector.getId())
+                ._issued_(IDSUtils.getGregorianNow())
+                ._securityToken_(token)
+                ._senderAgent_(connector.getId())
+                ._modelVersion_(connector.getOutboundModelVersion())
+                .build();
+        final var responseMessage = new ResponseMessageBuilder()
+                ._correlationMessage_(msgHeader.getId())
+                ._issuerConnector_(connector.getId())
+                ._issued_(IDSUtils.getGregorianNow())
+                ._securityToken_(token)
+                ._senderAgent_(connector.getId())
+                ._modelVersion_(connector.getOutboundModelVersion()).build();
+
+        final var file = Files.createTempFile("payload", ".txt");
+        try {
+            Files.writeString(file, "0123456789");
+            Mockito.when(messageDispatcher.process(Mockito.any(), Mockito.any()))
+                    .thenAnswer(invocation -> FileBodyResponse.create(responseMessage, file.toFile(), MediaType.TEXT_PLAIN));
+
+            final var ranged = mockMvc.perform(MockMvcRequestBuilders.multipart("/api/ids/range")
+                    .part(new MockPart("header", serializer.serialize(msgHeader).getBytes()))
+                    .header(FileBodyResponse.RANGE_HEADER, "bytes=2-5")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .accept(MediaType.MULTIPART_FORM_DATA))
+                    .andExpect(status().is(200))
+                    .andReturn().getResponse();
+            assertNull(ranged.getHeader(HttpHeaders.ACCEPT_RANGES));
+            assertEquals("2345", MultipartStringParser.stringToMultipart(ranged.getContentAsString()).get("payload"));
+
+            final var whole = mockMvc.perform(MockMvcRequestBuilders.multipart("/api/ids/range")
+                    .part(new MockPart("header", serializer.serialize(msgHeader).getBytes()))
+                    .header(HttpHeaders.RANGE, "bytes=2-5")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .accept(MediaType.MULTIPART_FORM_DATA))
+                    .andExpect(status().is(200))
+                    .andReturn().getResponse();
+            assertEquals("0123456789", MultipartStringParser.stringToMultipart(whole.getContentAsString()).get("payload"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
 }
@@ -0,0 +1,94 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import de.fraunhofer.iais.eis.DescriptionRequestMessage;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessagePriority;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.SupportedMessageType;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the per message type bulkhead and the global priority limit of the MessageDispatcher.
+ */
+public class MessageBulkheadTest {
+
+    @SupportedMessageType(value = DescriptionRequestMessage.class, maxConcurrentRequests = 1, maxQueuedRequests = 1)
+    static class LimitedHandler {
+    }
+
+    /**
+     * a bulkhead must admit up to its limit, queue up to its queue bound, reject further messages and hand released
+     * slots over to the waiting messages
+     * @throws Exception if waiting for a slot fails
+     */
+    @Test
+    public void testLimitAndQueueOverflow() throws Exception {
+        final var bulkhead = new MessageBulkhead(LimitedHandler.class.getAnnotation(SupportedMessageType.class));
+
+        assertTrue(bulkhead.acquireAsync(10_000).get());
+        final var queued = bulkhead.acquireAsync(10_000);
+        assertFalse(queued.isDone());
+        assertFalse(bulkhead.acquireAsync(10_000).get());
+
+        bulkhead.release();
+        assertTrue(queued.get());
+
+        bulkhead.release();
+        assertTrue(bulkhead.acquire(0));
+        bulkhead.release();
+    }
+
+    /**
+     * a waiting message must give up after the timeout and free its place in the queue
+     * @throws Exception if waiting for a slot fails
+     */
+    @Test
+    public void testTimeout() throws Exception {
+        final var bulkhead = new MessageBulkhead(LimitedHandler.class.getAnnotation(SupportedMessageType.class));
+
+        assertTrue(bulkhead.acquire(0));
+        assertFalse(bulkhead.acquire(50));
+
+        final var queued = bulkhead.acquireAsync(10_000);
+        assertFalse(queued.isDone());
+        bulkhead.release();
+        assertTrue(queued.get());
+    }
+
+    /**
+     * released slots of the global limit must be handed over by priority, and in arrival order within a priority,
+     * waiting messages which timed out must be skipped
+     * @throws Exception if waiting for a slot fails
+     */
+    @Test
+    public void testPriorityOrder() throws Exception {
+        final var limiter = new PriorityLimiter(1);
+        assertTrue(limiter.acquire(MessagePriority.NORMAL, 0));
+
+        final var low = limiter.acquireAsync(MessagePriority.LOW, 10_000);
+        final var firstNormal = limiter.acquireAsync(MessagePriority.NORMAL, 10_000);
+        final var secondNormal = limiter.acquireAsync(MessagePriority.NORMAL, 10_000);
+        final var expiring = limiter.acquireAsync(MessagePriority.HIGH, 10);
+        final var high = limiter.acquireAsync(MessagePriority.HIGH, 10_000);
+        assertFalse(expiring.get());
+
+        limiter.release();
+        assertTrue(high.get());
+        assertFalse(firstNormal.isDone());
+
+        limiter.release();
+        assertTrue(firstNormal.get());
+        assertFalse(secondNormal.isDone());
+
+        limiter.release();
+        assertTrue(secondNormal.get());
+        assertFalse(low.isDone());
+
+        limiter.release();
+        assertTrue(low.get());
+
+        limiter.release();
+        assertTrue(limiter.acquire(MessagePriority.LOW, 0));
+    }
+}
@@ -0,0 +1,176 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.fraunhofer.iais.eis.ConfigurationModel;
+import de.fraunhofer.iais.eis.Connector;
+import de.fraunhofer.iais.eis.ConnectorDeployMode;
+import de.fraunhofer.iais.eis.DescriptionRequestMessage;
+import de.fraunhofer.iais.eis.DescriptionRequestMessageBuilder;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
+import de.fraunhofer.isst.ids.framework.daps.DapsPublicKeyProvider;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilter;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilterResult;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreProcessingException;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.AsyncMessageHandler;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessageHandler;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessagePayload;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.SupportedMessageType;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.ErrorResponse;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.MessageResponse;
+import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test the admission of messages by the MessageDispatcher.
+ */
+public class MessageDispatcherTest {
+
+    @SupportedMessageType(value = DescriptionRequestMessage.class, maxConcurrentRequests = 1, maxQueuedRequests = 1)
+    static class LimitedHandler {
+    }
+
+    private static final SupportedMessageType DECLARATION = LimitedHandler.class.getAnnotation(SupportedMessageType.class);
+
+    /**
+     * the slot of a message must be released when its handler throws
+     * @throws Exception if the message cannot be processed
+     */
+    @Test
+    public void testReleaseOnException() throws Exception {
+        final var calls = new AtomicInteger();
+        final var response = MessageResponse.empty();
+        final MessageHandler<DescriptionRequestMessage> handler = (header, payload) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("handler failed");
+            }
+            return response;
+        };
+        final var dispatcher = dispatcher(handler);
+
+        assertThrows(IllegalStateException.class, () -> dispatcher.process(header(), null));
+        assertSame(response, dispatcher.process(header(), null));
+        assertSame(response, dispatcher.processAsync(header(), null).get(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * processAsync must not block the calling thread while a message waits for a slot, the waiting message is
+     * handled once the slot is released and messages beyond the queue bound are rejected immediately
+     * @throws Exception if the message cannot be processed
+     */
+    @Test
+    public void testAsyncAdmissionDoesNotBlock() throws Exception {
+        final var running = new CompletableFuture<MessageResponse>();
+        final var response = MessageResponse.empty();
+        final var calls = new AtomicInteger();
+        final AsyncMessageHandler<DescriptionRequestMessage> handler = new AsyncMessageHandler<>() {
+            @Override
+            public CompletionStage<MessageResponse> handleMessageAsync(final DescriptionRequestMessage header, final MessagePayload payload) {
+                return calls.incrementAndGet() == 1 ? running : CompletableFuture.completedFuture(response);
+            }
+        };
+        final var dispatcher = dispatcher(handler);
+
+        final var first = dispatcher.processAsync(header(), null);
+        final var waiting = dispatcher.processAsync(header(), null);
+        final var rejected = dispatcher.processAsync(header(), null);
+        assertFalse(first.isDone());
+        assertFalse(waiting.isDone());
+        assertTrue(rejected.get(10, TimeUnit.SECONDS) instanceof ErrorResponse);
+
+        running.complete(response);
+        assertSame(response, first.get(10, TimeUnit.SECONDS));
+        assertSame(response, waiting.get(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * independent filters must not be applied on the executor of the dispatcher, a message processed on a thread
+     * of a saturated dispatcher executor would otherwise wait for filters queued behind itself
+     * @throws Exception if the message cannot be processed
+     */
+    @Test
+    public void testFiltersOnSaturatedExecutor() throws Exception {
+        final var response = MessageResponse.empty();
+        final MessageHandler<DescriptionRequestMessage> handler = (header, payload) -> response;
+        final var dispatcher = dispatcher(handler);
+        dispatcher.registerPreDispatchingAction(new PreDispatchingFilter() {
+            @Override
+            public PreDispatchingFilterResult process(final Message in) {
+                return PreDispatchingFilterResult.successResult();
+            }
+
+            @Override
+            public boolean isIndependent() {
+                return true;
+            }
+        });
+        final var executor = Executors.newSingleThreadExecutor();
+        try {
+            dispatcher.setExecutor(executor);
+            //like a handler sending a loopback message: the only dispatcher thread processes a message
+            final var nested = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return dispatcher.process(header(), null);
+                } catch (PreProcessingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, executor);
+            assertSame(response, nested.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static MessageDispatcher dispatcher(final MessageHandler<?> handler) {
+        final var configModel = Mockito.mock(ConfigurationModel.class);
+        Mockito.when(configModel.getConnectorDeployMode()).thenReturn(ConnectorDeployMode.TEST_DEPLOYMENT);
+        final var connector = Mockito.mock(Connector.class);
+        Mockito.when(connector.getId()).thenReturn(URI.create("https://connector.example.com"));
+        Mockito.when(connector.getOutboundModelVersion()).thenReturn("4.0.0");
+        final var container = Mockito.mock(ConfigurationContainer.class);
+        Mockito.when(container.getConfigModel()).thenReturn(configModel);
+        Mockito.when(container.getConnector()).thenReturn(connector);
+
+        final var resolver = new RequestHandlerResolver() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <R extends Message> Optional<MessageHandler<R>> resolveHandler(final Class<R> messageType) {
+                return Optional.of((MessageHandler<R>) handler);
+            }
+
+            @Override
+            public <R extends Message> Optional<SupportedMessageType> resolveDeclaration(final Class<R> messageType) {
+                return Optional.of(DECLARATION);
+            }
+        };
+        return new MessageDispatcher(null, resolver, Mockito.mock(DapsPublicKeyProvider.class), container);
+    }
+
+    private static DescriptionRequestMessage header() {
+        return new DescriptionRequestMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())
+                ._issuerConnector_(URI.create("https://example.com"))
+                ._senderAgent_(URI.create("https://example.com"))
+                ._modelVersion_("4.0.0")
+                ._securityToken_(new DynamicAttributeTokenBuilder()
+                        ._tokenFormat_(TokenFormat.JWT)
+                        ._tokenValue_("")
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.ArtifactRequestMessageBuilder;
+import de.fraunhofer.iais.eis.DescriptionRequestMessageBuilder;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.Message;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.IdempotentMessageHandler;
+import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Test caching and invalidation of the MessageResponseCache.
+ */
+public class MessageResponseCacheTest {
+
+    private static final URI ELEMENT = URI.create("https://example.com/resource/1");
+    private static final String HASH = "hash-1";
+
+    /**
+     * the payload must only be created once per requested element and again after the cache was invalidated
+     * @throws Exception if the payload cannot be created
+     */
+    @Test
+    public void testCacheHitAndInvalidation() throws Exception {
+        final var cache = new MessageResponseCache();
+        final var handler = new CountingHandler<Message>(null);
+
+        assertEquals("payload-1", cache.getPayload(handler, description(ELEMENT), HASH));
+        assertEquals("payload-1", cache.getPayload(handler, description(ELEMENT), HASH));
+        assertEquals("payload-2", cache.getPayload(handler, description(null), HASH));
+        assertEquals(2, cache.size());
+
+        cache.invalidate();
+        assertEquals(0, cache.size());
+        assertEquals("payload-3", cache.getPayload(handler, description(ELEMENT), HASH));
+        assertEquals(3, handler.calls.get());
+    }
+
+    /**
+     * the payload must be created again when the self-description changed, and not be cached without its hash
+     * @throws Exception if the payload cannot be created
+     */
+    @Test
+    public void testSelfDescriptionChange() throws Exception {
+        final var cache = new MessageResponseCache();
+        final var handler = new CountingHandler<Message>(null);
+
+        assertEquals("payload-1", cache.getPayload(handler, description(ELEMENT), HASH));
+        assertEquals("payload-2", cache.getPayload(handler, description(ELEMENT), "hash-2"));
+        assertEquals("payload-2", cache.getPayload(handler, description(ELEMENT), "hash-2"));
+        assertEquals("payload-3", cache.getPayload(handler, description(ELEMENT), null));
+        assertEquals(2, cache.size());
+    }
+
+    /**
+     * a payload created while the cache was invalidated must not be cached
+     * @throws Exception if the payload cannot be created
+     */
+    @Test
+    public void testInvalidationDuringCreation() throws Exception {
+        final var cache = new MessageResponseCache();
+        final var handler = new CountingHandler<Message>(cache);
+
+        assertEquals("payload-1", cache.getPayload(handler, description(ELEMENT), HASH));
+        assertEquals(0, cache.size());
+        assertEquals("payload-2", cache.getPayload(handler, description(ELEMENT), HASH));
+    }
+
+    /**
+     * only description responses must be cached
+     * @throws Exception if the payload cannot be created
+     */
+    @Test
+    public void testArtifactsAreNotCached() throws Exception {
+        final var cache = new MessageResponseCache();
+        final var handler = new CountingHandler<ArtifactRequestMessage>(null);
+
+        assertEquals("payload-1", cache.getPayload(handler, artifact(), HASH));
+        assertEquals("payload-2", cache.getPayload(handler, artifact(), HASH));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Handler counting the created payloads, optionally invalidating a cache while creating a payload.
+     */
+    private static class CountingHandler<T extends Message> implements IdempotentMessageHandler<T> {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final MessageResponseCache invalidated;
+
+        CountingHandler(final MessageResponseCache invalidated) {
+            this.invalidated = invalidated;
+        }
+
+        @Override
+        public Message createResponseHeader(final T queryHeader) {
+            return queryHeader;
+        }
+
+        @Override
+        public Object createResponsePayload(final T queryHeader) {
+            if (invalidated != null) {
+                invalidated.invalidate();
+            }
+            return "payload-" + calls.incrementAndGet();
+        }
+    }
+
+    private static Message description(final URI requestedElement) {
+        return new DescriptionRequestMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())
+                ._issuerConnector_(URI.create("https://example.com"))
+                ._senderAgent_(URI.create("https://example.com"))
+                ._modelVersion_("4.0.0")
+                ._requestedElement_(requestedElement)
+                ._securityToken_(new DynamicAttributeTokenBuilder()
+                        ._tokenFormat_(TokenFormat.JWT)
+                        ._tokenValue_("")
+                        .build())
+                .build();
+    }
+
+    private static ArtifactRequestMessage artifact() {
+        return new ArtifactRequestMessageBuilder()
+                ._issued_(IDSUtils.getGregorianNow())
+                ._issuerConnector_(URI.create("https://example.com"))
+                ._senderAgent_(URI.create("https://example.com"))
+                ._modelVersion_("4.0.0")
+                ._requestedArtifact_(ELEMENT)
+                ._securityToken_(new DynamicAttributeTokenBuilder()
+                        ._tokenFormat_(TokenFormat.JWT)
+                        ._tokenValue_("")
+                        .build())
+                .build();
+    }
+}
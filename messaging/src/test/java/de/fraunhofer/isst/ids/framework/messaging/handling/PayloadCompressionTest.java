@@ -0,0 +1,88 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import de.fraunhofer.isst.ids.framework.util.PayloadEncoding;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockPart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test decompression of request payloads and compression of response payloads by the IDSController.
+ */
+public class PayloadCompressionTest {
+
+    private static final String TEXT = "id;name;value\n1;\u00e4\u00f6\u00fc;42\n".repeat(200);
+
+    /**
+     * compressed request payloads must be decompressed, reading must fail beyond the decompression limit
+     * @throws IOException if the payload cannot be read
+     */
+    @Test
+    public void testReadPayload() throws IOException {
+        assertNull(PayloadCompression.readPayload(null));
+
+        final var plain = new MockPart("payload", TEXT.getBytes(StandardCharsets.UTF_8));
+        try (var stream = PayloadCompression.readPayload(plain)) {
+            assertEquals(TEXT, new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        for (final var encoding : new PayloadEncoding[]{PayloadEncoding.GZIP, PayloadEncoding.DEFLATE}) {
+            final var part = new MockPart("payload", encoding.compress(TEXT.getBytes(StandardCharsets.UTF_8)));
+            part.getHeaders().set(PayloadEncoding.CONTENT_ENCODING, encoding.getCoding());
+            try (var stream = PayloadCompression.readPayload(part)) {
+                assertEquals(TEXT, new String(stream.readAllBytes(), StandardCharsets.UTF_8), encoding.name());
+            }
+
+            final var previous = PayloadEncoding.getMaxDecompressedSize();
+            PayloadEncoding.setMaxDecompressedSize(TEXT.length() / 2);
+            try (var stream = PayloadCompression.readPayload(part)) {
+                assertThrows(IOException.class, stream::readAllBytes, encoding.name());
+            } finally {
+                PayloadEncoding.setMaxDecompressedSize(previous);
+            }
+        }
+    }
+
+    /**
+     * text resources must be deflated while they are written and inflate to the original payload,
+     * partial and already encoded payloads must be sent unchanged
+     * @throws IOException if the payload cannot be compressed
+     */
+    @Test
+    public void testStreamedDeflate() throws IOException {
+        final var headers = new HttpHeaders();
+        headers.setContentType(MediaType.TEXT_PLAIN);
+        final var bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+
+        for (final Resource resource : new Resource[]{new ByteArrayResource(bytes), new InputStreamResource(new ByteArrayInputStream(bytes))}) {
+            final var compressed = (HttpEntity<?>) PayloadCompression.compress(new HttpEntity<>(resource, headers), "deflate");
+            assertEquals(PayloadEncoding.DEFLATE.getCoding(), compressed.getHeaders().getFirst(PayloadEncoding.CONTENT_ENCODING));
+            assertEquals(-1, ((Resource) compressed.getBody()).contentLength());
+            try (var stream = PayloadEncoding.DEFLATE.decompress(((Resource) compressed.getBody()).getInputStream())) {
+                assertEquals(TEXT, new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        final var gzipOnly = new HttpEntity<>(new ByteArrayResource(bytes), headers);
+        assertSame(gzipOnly, PayloadCompression.compress(gzipOnly, "gzip"));
+
+        final var rangeHeaders = new HttpHeaders();
+        rangeHeaders.putAll(headers);
+        rangeHeaders.set(HttpHeaders.CONTENT_RANGE, "bytes 0-99/1000");
+        final var partial = new HttpEntity<>(new ByteArrayResource(bytes), rangeHeaders);
+        assertSame(partial, PayloadCompression.compress(partial, "deflate"));
+    }
+}
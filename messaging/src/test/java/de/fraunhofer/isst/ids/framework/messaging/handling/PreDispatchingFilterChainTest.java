@@ -0,0 +1,105 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import de.fraunhofer.isst.ids.framework.configuration.ConfigurationContainer;
+import de.fraunhofer.isst.ids.framework.daps.DapsPublicKeyProvider;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilter;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilterResult;
+import de.fraunhofer.isst.ids.framework.messaging.model.filters.PreDispatchingFilterStatistics;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test ordering and metrics of the PreDispatchingFilter chain.
+ */
+public class PreDispatchingFilterChainTest {
+
+    private final PreDispatchingFilter first = in -> PreDispatchingFilterResult.successResult();
+    private final PreDispatchingFilter second = in -> PreDispatchingFilterResult.successResult();
+    private final PreDispatchingFilter third = in -> PreDispatchingFilterResult.successResult();
+
+    /**
+     * filters must be sorted by order and keep their registration order within the same order,
+     * adaptive ordering must only move cheap rejecting filters ahead inside their order group
+     */
+    @Test
+    public void testOrdering() {
+        final var chain = new PreDispatchingFilterChain();
+        chain.register(first, 0);
+        chain.register(second, 0);
+        chain.register(third, -1);
+        assertEquals(List.of(third, first, second), filters(chain));
+
+        //the second filter is cheap and rejects every message, the first one is expensive and accepts everything
+        final var entries = chain.getEntries();
+        for (var i = 0; i < 10; i++) {
+            entries.get(1).record(1_000_000, false);
+            entries.get(2).record(1_000, true);
+            entries.get(0).record(5_000_000, false);
+        }
+        assertEquals(List.of(third, first, second), filters(chain));
+
+        chain.setAdaptiveOrdering(true);
+        assertEquals(List.of(third, second, first), filters(chain));
+
+        chain.setAdaptiveOrdering(false);
+        assertEquals(List.of(third, first, second), filters(chain));
+    }
+
+    /**
+     * the statistics must reflect the recorded invocations, rejections, errors and processing times
+     */
+    @Test
+    public void testStatistics() {
+        final var chain = new PreDispatchingFilterChain();
+        chain.register(first, 3);
+        final var entry = chain.getEntries().get(0);
+        entry.record(100, false);
+        entry.record(300, true);
+        entry.recordError(200);
+
+        final var statistics = chain.getStatistics().get(0);
+        assertEquals(first.getClass().getName(), statistics.getFilterName());
+        assertEquals(3, statistics.getOrder());
+        assertEquals(3, statistics.getInvocations());
+        assertEquals(1, statistics.getRejections());
+        assertEquals(1, statistics.getErrors());
+        assertEquals(600, statistics.getTotalNanos());
+        assertEquals(200.0, statistics.getAverageNanos());
+        assertEquals(1.0 / 3, statistics.getRejectionRate());
+
+        final var unused = new PreDispatchingFilterStatistics("unused", 0, 0, 0, 0, 0);
+        assertEquals(0.0, unused.getAverageNanos());
+        assertEquals(0.0, unused.getRejectionRate());
+    }
+
+    /**
+     * the DAT verification of the MessageDispatcher must stay the first filter, even if adaptive ordering is enabled
+     * and other filters are cheaper, and its order must not be available to other filters
+     */
+    @Test
+    public void testDatVerificationStaysFirst() {
+        final var dispatcher = new MessageDispatcher(null, null, Mockito.mock(DapsPublicKeyProvider.class),
+                Mockito.mock(ConfigurationContainer.class));
+        dispatcher.registerPreDispatchingAction(first);
+        dispatcher.registerPreDispatchingAction(second, Integer.MIN_VALUE + 1);
+        dispatcher.setAdaptiveFilterOrdering(true);
+
+        final var orders = dispatcher.getPreDispatchingFilterStatistics().stream()
+                .map(PreDispatchingFilterStatistics::getOrder)
+                .collect(Collectors.toList());
+        assertEquals(List.of(MessageDispatcher.DAT_VERIFICATION_ORDER, Integer.MIN_VALUE + 1, 0), orders);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> dispatcher.registerPreDispatchingAction(third, MessageDispatcher.DAT_VERIFICATION_ORDER));
+    }
+
+    private static List<PreDispatchingFilter> filters(final PreDispatchingFilterChain chain) {
+        return chain.getEntries().stream().map(PreDispatchingFilterChain.FilterEntry::getFilter).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,65 @@
+package de.fraunhofer.isst.ids.framework.messaging.handling;
+
+import java.net.URI;
+
+import de.fraunhofer.iais.eis.ArtifactRequestMessage;
+import de.fraunhofer.iais.eis.DescriptionRequestMessage;
+import de.fraunhofer.iais.eis.DescriptionRequestMessageBuilder;
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessageHandler;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.MessagePayload;
+import de.fraunhofer.isst.ids.framework.messaging.model.messages.SupportedMessageType;
+import de.fraunhofer.isst.ids.framework.messaging.model.responses.MessageResponse;
+import de.fraunhofer.isst.ids.framework.util.IDSUtils;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test resolving MessageHandlers using the precomputed handler index.
+ */
+public class SpringRequestHandlerResolverTest {
+
+    @SupportedMessageType(DescriptionRequestMessage.class)
+    static class DescriptionHandler implements MessageHandler<DescriptionRequestMessage> {
+        @Override
+        public MessageResponse handleMessage(final DescriptionRequestMessage queryHeader, final MessagePayload payload) {
+            return MessageResponse.empty();
+        }
+    }
+
+    /**
+     * A handler registered for an infomodel interface must be found for the implementation class of an incoming message,
+     * unknown message types must resolve to Optional.empty.
+     */
+    @Test
+    public void testResolveHandlerForImplementationClass() {
+        try (var context = new AnnotationConfigApplicationContext(SpringRequestHandlerResolver.class, DescriptionHandler.class)) {
+            final var resolver = context.getBean(SpringRequestHandlerResolver.class);
+            final var handler = context.getBean(DescriptionHandler.class);
+
+            final var header = new DescriptionRequestMessageBuilder()
+                    ._issued_(IDSUtils.getGregorianNow())
+                    ._issuerConnector_(URI.create("https://example.com"))
+                    ._senderAgent_(URI.create("https://example.com"))
+                    ._modelVersion_("4.0.0")
+                    ._securityToken_(new DynamicAttributeTokenBuilder()
+                            ._tokenFormat_(TokenFormat.JWT)
+                            ._tokenValue_("")
+                            .build())
+                    .build();
+
+            final var resolved = resolver.resolveHandler(header.getClass());
+            assertTrue(resolved.isPresent());
+            assertSame(handler, resolved.get());
+
+            //second lookup is served from the memoized resolutions
+            assertSame(handler, resolver.resolveHandler(header.getClass()).get());
+
+            assertTrue(resolver.resolveHandler(ArtifactRequestMessage.class).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.messages;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test the streaming JSON API of the MessagePayload.
+ */
+public class MessagePayloadImplTest {
+
+    private static MessagePayload payload(final String json) {
+        return new MessagePayloadImpl(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), new ObjectMapper());
+    }
+
+    /**
+     * elements of a top-level array must be returned one by one, in order
+     * @throws IOException if the payload cannot be parsed
+     */
+    @Test
+    public void testStreamJSONArray() throws IOException {
+        try (Stream<Map> stream = payload("[{\"x\":1},{\"x\":2},{\"x\":3}]").streamJSONArray(Map.class)) {
+            assertEquals(List.of(1, 2, 3), stream.map(element -> element.get("x")).collect(Collectors.toList()));
+        }
+        assertFalse(payload("[]").iterateJSONArray(Map.class).hasNext());
+        assertThrows(IOException.class, () -> payload("{\"x\":1}").iterateJSONArray(Map.class));
+    }
+
+    /**
+     * the visitor must receive all tokens until it stops parsing
+     * @throws IOException if the payload cannot be parsed
+     */
+    @Test
+    public void testVisitJSON() throws IOException {
+        final var tokens = new ArrayList<JsonToken>();
+        payload("{\"a\":[1,2],\"b\":true}").visitJSON((token, parser) -> {
+            tokens.add(token);
+            return token != JsonToken.END_ARRAY;
+        });
+        assertEquals(List.of(JsonToken.START_OBJECT, JsonToken.FIELD_NAME, JsonToken.START_ARRAY,
+                JsonToken.VALUE_NUMBER_INT, JsonToken.VALUE_NUMBER_INT, JsonToken.END_ARRAY), tokens);
+    }
+
+    /**
+     * other MessagePayload implementations must get the streaming API from their underlying InputStream
+     * @throws IOException if the payload cannot be parsed
+     */
+    @Test
+    public void testDefaultMethods() throws IOException {
+        try (Stream<Map> stream = customPayload("[{\"x\":1},{\"x\":2}]").streamJSONArray(Map.class)) {
+            assertEquals(List.of(1, 2), stream.map(element -> element.get("x")).collect(Collectors.toList()));
+        }
+        final var iterator = customPayload("[\"a\"]").iterateJSONArray(String.class);
+        assertEquals("a", iterator.next());
+        assertFalse(iterator.hasNext());
+
+        final var tokens = new ArrayList<JsonToken>();
+        customPayload("[true]").visitJSON((token, parser) -> tokens.add(token));
+        assertEquals(List.of(JsonToken.START_ARRAY, JsonToken.VALUE_TRUE, JsonToken.END_ARRAY), tokens);
+    }
+
+    private static MessagePayload customPayload(final String json) {
+        final var input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        return new MessagePayload() {
+            @Override
+            public InputStream getUnderlyingInputStream() {
+                return input;
+            }
+
+            @Override
+            public <T> T readFromJSON(final Class<? extends T> targetType) throws IOException {
+                return new ObjectMapper().readValue(input, targetType);
+            }
+        };
+    }
+}
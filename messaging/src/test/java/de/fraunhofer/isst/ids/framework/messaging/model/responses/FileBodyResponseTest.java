@@ -0,0 +1,81 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.responses;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import de.fraunhofer.iais.eis.DynamicAttributeTokenBuilder;
+import de.fraunhofer.iais.eis.ResponseMessage;
+import de.fraunhofer.iais.eis.ResponseMessageBuilder;
+import de.fraunhofer.iais.eis.TokenFormat;
+import de.fraunhofer.iais.eis.ids.jsonld.Serializer;
+import de.fraunhofer.isst.ids.framework.util.TimeService;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test returning (ranges of) files as binary payload.
+ */
+public class FileBodyResponseTest {
+
+    /**
+     * a single byte range must return exactly the requested bytes, invalid ranges must return the whole file
+     * @throws IOException if the test file cannot be written or read
+     */
+    @Test
+    public void testRange() throws IOException {
+        final var file = Files.createTempFile("payload", ".txt");
+        try {
+            Files.writeString(file, "0123456789");
+            final var response = FileBodyResponse.create(header(), file.toFile(), MediaType.TEXT_PLAIN);
+
+            final var ranged = response.withRange("bytes=2-5");
+            assertTrue(ranged.isPartial());
+            assertEquals("2345", read(ranged));
+            assertEquals("bytes 2-5/10", payload(ranged).getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+
+            assertEquals("789", read(response.withRange("bytes=-3")));
+
+            final var invalid = response.withRange("bytes=20-30");
+            assertFalse(invalid.isPartial());
+            assertEquals("0123456789", read(invalid));
+            assertNull(payload(invalid).getHeaders().getFirst(HttpHeaders.CONTENT_RANGE));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String read(final FileBodyResponse<?> response) throws IOException {
+        try (var stream = payload(response).getBody().getInputStream()) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpEntity<Resource> payload(final FileBodyResponse<?> response) throws IOException {
+        return (HttpEntity<Resource>) response.createMultipartMap(new Serializer()).get("payload");
+    }
+
+    private static ResponseMessage header() {
+        return new ResponseMessageBuilder()
+                ._issued_(TimeService.now())
+                ._issuerConnector_(URI.create("https://example.com"))
+                ._senderAgent_(URI.create("https://example.com"))
+                ._modelVersion_("4.0.0")
+                ._correlationMessage_(URI.create("https://example.com/request"))
+                ._securityToken_(new DynamicAttributeTokenBuilder()
+                        ._tokenFormat_(TokenFormat.JWT)
+                        ._tokenValue_("")
+                        .build())
+                .build();
+    }
+}
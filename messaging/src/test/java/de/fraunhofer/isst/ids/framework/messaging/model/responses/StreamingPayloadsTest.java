@@ -0,0 +1,152 @@
+package de.fraunhofer.isst.ids.framework.messaging.model.responses;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test reading streaming payloads (StreamingResponseBody and Flow.Publisher) as InputStream.
+ */
+public class StreamingPayloadsTest {
+
+    private static final String LINE = "0123456789abcdef\n";
+
+    /**
+     * the whole output of a StreamingResponseBody must be read, also if it is larger than the pipe
+     * @throws IOException if the payload cannot be read
+     */
+    @Test
+    public void testStreamingResponseBodyCompletion() throws IOException {
+        final var repetitions = 2 * StreamingPayloads.PIPE_SIZE / LINE.length();
+        final StreamingResponseBody body = output -> {
+            for (var i = 0; i < repetitions; i++) {
+                output.write(LINE.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        try (var input = stream(body)) {
+            assertEquals(LINE.repeat(repetitions), new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * a failing StreamingResponseBody must make the reader fail instead of ending the stream normally
+     * @throws IOException if the stream cannot be closed
+     */
+    @Test
+    public void testStreamingResponseBodyFailure() throws IOException {
+        final var failure = new IOException("writer failed");
+        final StreamingResponseBody body = output -> {
+            output.write(LINE.getBytes(StandardCharsets.UTF_8));
+            throw failure;
+        };
+        for (var i = 0; i < 20; i++) {
+            try (var input = stream(body)) {
+                assertSame(failure, assertThrows(IOException.class, input::readAllBytes));
+            }
+        }
+    }
+
+    /**
+     * closing the stream must stop an endless StreamingResponseBody
+     * @throws Exception if the writer does not stop
+     */
+    @Test
+    public void testStreamingResponseBodyCancellation() throws Exception {
+        final var stopped = new CompletableFuture<Throwable>();
+        final StreamingResponseBody body = output -> {
+            try {
+                while (true) {
+                    output.write(LINE.getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IOException | RuntimeException e) {
+                stopped.complete(e);
+                throw e;
+            }
+        };
+        final var input = stream(body);
+        assertEquals(LINE.length(), input.readNBytes(LINE.length()).length);
+        input.close();
+        assertTrue(stopped.get(10, TimeUnit.SECONDS) instanceof IOException);
+    }
+
+    /**
+     * all buffers of a publisher must be read in order, reading must fail for elements other than ByteBuffers
+     * and closing the stream must cancel the subscription
+     * @throws IOException if the payload cannot be read
+     */
+    @Test
+    public void testPublisher() throws IOException {
+        final var buffers = new ListPublisher(List.of(ByteBuffer.wrap("ab".getBytes(StandardCharsets.UTF_8)),
+                ByteBuffer.wrap("cd".getBytes(StandardCharsets.UTF_8))));
+        try (var input = stream(buffers)) {
+            assertEquals("abcd", new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        final var strings = new ListPublisher(List.of("ab"));
+        try (var input = stream(strings)) {
+            assertThrows(IOException.class, input::readAllBytes);
+        }
+        assertTrue(strings.cancelled.get());
+
+        final var partial = new ListPublisher(List.of(ByteBuffer.wrap("ab".getBytes(StandardCharsets.UTF_8))));
+        final var input = stream(partial);
+        assertEquals(1, input.read(new byte[1]));
+        input.close();
+        assertTrue(partial.cancelled.get());
+    }
+
+    private static InputStream stream(final Object payload) throws IOException {
+        return ((Resource) StreamingPayloads.toPart(payload)).getInputStream();
+    }
+
+    /**
+     * Publisher emitting the given elements synchronously on request, followed by onComplete.
+     */
+    private static class ListPublisher implements Flow.Publisher<Object> {
+        private final List<?> elements;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        ListPublisher(final List<?> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public void subscribe(final Flow.Subscriber<? super Object> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private int next;
+
+                @Override
+                public void request(final long count) {
+                    for (var i = 0; i < count && !cancelled.get() && next <= elements.size(); i++) {
+                        if (next == elements.size()) {
+                            next++;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(elements.get(next++));
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled.set(true);
+                }
+            });
+        }
+    }
+}